@@ -0,0 +1,71 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks whole EPLiteClient calls against an in-process {@link EtherpadStub}, for each transport.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ClientBenchmark {
+    @Param({ "urlconnection", "pooled" })
+    public String transport;
+
+    @Param({ "64", "65536" })
+    public int textLength;
+
+    private EtherpadStub stub;
+    private PooledTransport pooledTransport;
+    private EPLiteClient client;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.stub = new EtherpadStub(8);
+        this.stub.respond("getText", "{\"text\":\"" + HandleResponseBenchmark.text(this.textLength) + "\"}");
+        if ("pooled".equals(this.transport)) {
+            this.pooledTransport = new PooledTransport();
+            this.client = new EPLiteClient(this.stub.getUrl(), "apikey", this.pooledTransport);
+        } else {
+            this.client = new EPLiteClient(this.stub.getUrl(), "apikey");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.pooledTransport != null) {
+            this.pooledTransport.close();
+        }
+        this.stub.close();
+    }
+
+    @Benchmark
+    public Map getText() {
+        return this.client.getText("g.s8oes9dhwrvt0zif$my_pad");
+    }
+
+    @Benchmark
+    public void setText() {
+        this.client.setText("g.s8oes9dhwrvt0zif$my_pad", "Hello world\n");
+    }
+}
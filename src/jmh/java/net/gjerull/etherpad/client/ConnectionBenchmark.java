@@ -0,0 +1,65 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks building the request of an API call: path, query string and URL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectionBenchmark {
+    private EPLiteConnection connection;
+    private Map<String, Object> args;
+    private String path;
+    private String query;
+
+    @Setup
+    public void setUp() {
+        this.connection = new EPLiteConnection("http://localhost:9001", "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58",
+                "1.2.13", "UTF-8");
+        this.args = new HashMap<>();
+        this.args.put("padID", "g.s8oes9dhwrvt0zif$my pad");
+        this.args.put("text", "Hello world, with some & special = characters\n");
+        this.args.put("rev", 42L);
+        this.path = this.connection.apiPath("setText");
+        this.query = this.connection.queryString(this.args, false);
+    }
+
+    @Benchmark
+    public String apiPath() {
+        return this.connection.apiPath("setText");
+    }
+
+    @Benchmark
+    public String queryString() {
+        return this.connection.queryString(this.args, false);
+    }
+
+    @Benchmark
+    public String queryStringEncoded() {
+        return this.connection.queryString(this.args, true);
+    }
+
+    @Benchmark
+    public URL apiUrl() {
+        return this.connection.apiUrl(this.path, this.query);
+    }
+}
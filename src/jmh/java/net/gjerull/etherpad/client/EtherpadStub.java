@@ -0,0 +1,166 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An in-process HTTP server speaking the Etherpad Lite <code>/api/&lt;version&gt;/&lt;method&gt;</code> JSON protocol,
+ * answering every call with a fixed response per method.<br />
+ * <br />
+ * Responses can be delayed, and a share of them can be replaced by error codes. Delayed responses are sent from
+ * a scheduler, so slow responses do not hold a server thread. It uses the JDK's HTTP server rather than MockServer,
+ * so that the stub costs little compared to the client being measured.
+ */
+public class EtherpadStub implements Closeable {
+    private static final byte[] OK_NULL = "{\"code\":0,\"message\":\"ok\",\"data\":null}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final Map<Integer, Double> errorRates = new ConcurrentHashMap<>();
+    private volatile long latencyMicros;
+    private volatile long jitterMicros;
+
+    /**
+     * Starts a stub on a free port of the loopback interface.
+     *
+     * @param threads the number of threads handling requests
+     */
+    public EtherpadStub(int threads) throws IOException {
+        // The server writes headers and body separately; without this, Nagle's algorithm and delayed ACKs
+        // add about 40ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/api/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return the url to pass to the client
+     */
+    public String getUrl() {
+        return "http://" + this.server.getAddress().getHostString() + ":" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the successful response of an API method. Methods without a response return null data.
+     *
+     * @param apiMethod the API method
+     * @param data the JSON data of the response
+     */
+    public void respond(String apiMethod, String data) {
+        this.responses.put(apiMethod, ("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Delays every response.
+     *
+     * @param latency the minimum delay
+     * @param jitter the maximum random delay added to it
+     * @param unit the unit of latency and jitter
+     */
+    public void setLatency(long latency, long jitter, TimeUnit unit) {
+        this.latencyMicros = unit.toMicros(latency);
+        this.jitterMicros = unit.toMicros(jitter);
+    }
+
+    /**
+     * Answers a share of all calls with an error code instead of their response.
+     *
+     * @param code the Etherpad Lite response code, e.g. 1 for invalid parameters
+     * @param rate the share of calls, from 0 to 1
+     */
+    public void setErrorRate(int code, double rate) {
+        this.errorRates.put(code, rate);
+    }
+
+    /**
+     * Answers an exchange. Subclasses may override it to vary responses.
+     *
+     * @param apiMethod the API method called
+     * @param exchange the exchange
+     */
+    protected void handle(String apiMethod, HttpExchange exchange) throws IOException {
+        byte[] response = this.error();
+        if (response == null) {
+            response = this.responses.get(apiMethod);
+        }
+        final byte[] body = response != null ? response : OK_NULL;
+        long delay = this.latencyMicros;
+        if (this.jitterMicros > 0) {
+            delay += ThreadLocalRandom.current().nextLong(this.jitterMicros + 1);
+        }
+        if (delay <= 0) {
+            this.send(exchange, body);
+            return;
+        }
+        this.scheduler.schedule(() -> {
+            try {
+                this.send(exchange, body);
+            } catch (IOException e) {
+                exchange.close();
+            }
+        }, delay, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * Sends a complete JSON response.
+     */
+    protected void send(HttpExchange exchange, byte[] response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+
+    public void close() {
+        this.server.stop(0);
+        this.scheduler.shutdownNow();
+        this.executor.shutdownNow();
+    }
+
+    private byte[] error() {
+        if (this.errorRates.isEmpty()) {
+            return null;
+        }
+        double draw = ThreadLocalRandom.current().nextDouble();
+        for (Map.Entry<Integer, Double> rate : this.errorRates.entrySet()) {
+            draw -= rate.getValue();
+            if (draw < 0) {
+                return ("{\"code\":" + rate.getKey() + ",\"message\":\"stub error " + rate.getKey()
+                        + "\",\"data\":null}").getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] discard = new byte[4096];
+            while (in.read(discard) != -1) {
+                continue;
+            }
+        }
+        String path = exchange.getRequestURI().getPath();
+        this.handle(path.substring(path.lastIndexOf('/') + 1), exchange);
+    }
+}
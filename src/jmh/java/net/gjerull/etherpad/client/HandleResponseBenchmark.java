@@ -0,0 +1,70 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing responses, from a small Map to a multi-megabyte getText payload.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandleResponseBenchmark {
+    /**
+     * The length of the pad text in the response
+     */
+    @Param({ "64", "65536", "4194304" })
+    public int textLength;
+
+    private EPLiteConnection connection;
+    private String response;
+
+    @Setup
+    public void setUp() {
+        this.connection = new EPLiteConnection("http://localhost:9001", "apikey", "1.2.13", "UTF-8");
+        this.response = "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"" + text(this.textLength) + "\"}}";
+    }
+
+    @Benchmark
+    public Object handleString() {
+        return this.connection.handleResponse(this.response);
+    }
+
+    @Benchmark
+    public Object handleReader() throws IOException {
+        return this.connection.handleResponse(new StringReader(this.response));
+    }
+
+    /**
+     * Returns lines of words, with the escapes a real pad text has.
+     */
+    static String text(int length) {
+        String line = "The quick brown fox jumps over the lazy dog, \\\"quoted\\\" and tab\\tseparated\\n";
+        StringBuilder text = new StringBuilder(length + line.length());
+        while (text.length() < length) {
+            text.append(line);
+        }
+        text.setLength(length);
+        // Do not end inside an escape sequence
+        while (text.charAt(text.length() - 1) == '\\') {
+            text.setLength(text.length() - 1);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,260 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives an {@link EPLiteClient} with a mix of calls from many threads and reports throughput, latency
+ * percentiles and errors.<br />
+ * <br />
+ * Without a url setting, the calls go to an in-process {@link EtherpadStub} with the configured latency, error rates
+ * and payload size. With a rate setting, each thread sends on a fixed schedule and latency is measured from the
+ * time a call was due, so a stalled client shows up in the percentiles instead of just lowering the rate.<br />
+ * <br />
+ * <code>
+ * mvn -Pbenchmark clean test-compile exec:exec -Dbenchmark.main=net.gjerull.etherpad.client.LoadHarness<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;-Dbenchmark.args="transport=pooled concurrency=64 rate=5000 duration=30 latency=2 errors=1:0.01"
+ * </code>
+ */
+public class LoadHarness {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("apikey", "apikey");
+        DEFAULTS.put("transport", "pooled");
+        DEFAULTS.put("maxConnections", "64");
+        DEFAULTS.put("concurrency", "32");
+        DEFAULTS.put("rate", "0");
+        DEFAULTS.put("duration", "20");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("mix", "getText:60,padUsersCount:20,setText:10,getReadOnlyID:10");
+        DEFAULTS.put("pads", "1000");
+        DEFAULTS.put("textLength", "2048");
+        DEFAULTS.put("latency", "1");
+        DEFAULTS.put("jitter", "1");
+        DEFAULTS.put("errors", "");
+        DEFAULTS.put("serverThreads", "16");
+    }
+
+    private final Map<String, String> settings;
+    private final String[] mixMethods;
+    private final int[] mixWeights;
+    private final int mixTotal;
+
+    /**
+     * @param settings the settings overriding the defaults, see {@link #main(String[])}
+     */
+    public LoadHarness(Map<String, String> settings) {
+        this.settings = new LinkedHashMap<>(DEFAULTS);
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (!DEFAULTS.containsKey(setting.getKey())) {
+                throw new IllegalArgumentException("Unknown setting " + setting.getKey() + ", expected one of " + DEFAULTS.keySet());
+            }
+            this.settings.put(setting.getKey(), setting.getValue());
+        }
+        String[] mix = this.settings.get("mix").split(",");
+        this.mixMethods = new String[mix.length];
+        this.mixWeights = new int[mix.length];
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            String[] entry = mix[i].split(":");
+            this.mixMethods[i] = entry[0].trim();
+            total += entry.length > 1 ? Integer.parseInt(entry[1].trim()) : 1;
+            this.mixWeights[i] = total;
+        }
+        this.mixTotal = total;
+    }
+
+    /**
+     * Runs the harness with key=value settings:<br />
+     * url (a real instance instead of the stub), apikey, transport (pooled or urlconnection), maxConnections,
+     * concurrency, rate (calls per second in total, 0 for as fast as possible), duration and warmup (seconds),
+     * mix (method:weight,...), pads, and for the stub textLength, latency and jitter (milliseconds),
+     * errors (code:rate,...) and serverThreads.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            settings.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        LoadHarness harness = new LoadHarness(settings);
+        System.out.println("Settings: " + harness.settings);
+        System.out.println(harness.run());
+    }
+
+    /**
+     * Warms up, then runs the configured load.
+     *
+     * @return the report of the measured run
+     */
+    public LoadReport run() throws IOException, InterruptedException {
+        EtherpadStub stub = null;
+        PooledTransport pooledTransport = null;
+        try {
+            String url = this.settings.get("url");
+            if (url.isEmpty()) {
+                stub = this.startStub();
+                url = stub.getUrl();
+            }
+            EPLiteClient client;
+            if ("pooled".equals(this.settings.get("transport"))) {
+                int maxConnections = this.integer("maxConnections");
+                pooledTransport = new PooledTransport(maxConnections, maxConnections, 4000L, 300000L);
+                client = new EPLiteClient(url, this.settings.get("apikey"), pooledTransport);
+            } else {
+                client = new EPLiteClient(url, this.settings.get("apikey"), new URLConnectionTransport());
+            }
+            if (this.integer("warmup") > 0) {
+                this.drive(client, this.integer("warmup"));
+                client.getMetrics().reset();
+            }
+            LoadReport report = this.drive(client, this.integer("duration"));
+            if (pooledTransport != null) {
+                report.setPoolStats(pooledTransport.getPoolStats());
+            }
+            return report;
+        } finally {
+            if (pooledTransport != null) {
+                pooledTransport.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    private EtherpadStub startStub() throws IOException {
+        EtherpadStub stub = new EtherpadStub(this.integer("serverThreads"));
+        String text = HandleResponseBenchmark.text(this.integer("textLength"));
+        stub.respond("getText", "{\"text\":\"" + text + "\"}");
+        stub.respond("getHTML", "{\"html\":\"<p>" + text + "</p>\"}");
+        stub.respond("padUsersCount", "{\"padUsersCount\":3}");
+        stub.respond("getReadOnlyID", "{\"readOnlyID\":\"r.s8oes9dhwrvt0zif\"}");
+        stub.respond("getRevisionsCount", "{\"revisions\":42}");
+        stub.respond("getLastEdited", "{\"lastEdited\":1359199533759}");
+        stub.setLatency(this.integer("latency"), this.integer("jitter"), TimeUnit.MILLISECONDS);
+        String errors = this.settings.get("errors");
+        if (!errors.isEmpty()) {
+            for (String error : errors.split(",")) {
+                String[] entry = error.split(":");
+                stub.setErrorRate(Integer.parseInt(entry[0].trim()), Double.parseDouble(entry[1].trim()));
+            }
+        }
+        return stub;
+    }
+
+    private LoadReport drive(final EPLiteClient client, int seconds) throws InterruptedException {
+        final int concurrency = this.integer("concurrency");
+        final int rate = this.integer("rate");
+        final long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * concurrency / rate : 0L;
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder calls = new LongAdder();
+        final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < concurrency; t++) {
+            // Spread the threads' schedules over one interval
+            final long offset = intervalNanos * t / concurrency;
+            Thread thread = new Thread(() -> {
+                long due = start + offset;
+                while (true) {
+                    long now = System.nanoTime();
+                    if (intervalNanos > 0) {
+                        if (due > now) {
+                            sleepNanos(due - now);
+                        }
+                    } else {
+                        due = now;
+                    }
+                    if (due >= end) {
+                        break;
+                    }
+                    try {
+                        this.call(client);
+                    } catch (EPLiteException e) {
+                        errors.computeIfAbsent(e.getCode(), code -> new LongAdder()).increment();
+                    }
+                    latency.record(System.nanoTime() - due);
+                    calls.increment();
+                    due += intervalNanos;
+                }
+            }, "etherpad-load-" + t);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Map<Integer, Long> errorCounts = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : errors.entrySet()) {
+            errorCounts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return new LoadReport(calls.sum(), errorCounts, latency, System.nanoTime() - start, client.getMetrics());
+    }
+
+    private void call(EPLiteClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String padId = "pad-" + random.nextInt(this.integer("pads"));
+        int draw = random.nextInt(this.mixTotal);
+        int i = 0;
+        while (draw >= this.mixWeights[i]) {
+            i++;
+        }
+        switch (this.mixMethods[i]) {
+            case "getText":
+                client.getText(padId);
+                break;
+            case "getHTML":
+                client.getHTML(padId);
+                break;
+            case "setText":
+                client.setText(padId, "Hello world\n");
+                break;
+            case "appendText":
+                client.appendText(padId, "Hello world\n");
+                break;
+            case "padUsersCount":
+                client.padUsersCount(padId);
+                break;
+            case "getReadOnlyID":
+                client.getReadOnlyID(padId);
+                break;
+            case "getRevisionsCount":
+                client.getRevisionsCount(padId);
+                break;
+            case "getLastEdited":
+                client.getLastEdited(padId);
+                break;
+            case "checkToken":
+                client.checkToken();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported method in mix: " + this.mixMethods[i]);
+        }
+    }
+
+    private int integer(String setting) {
+        return Integer.parseInt(this.settings.get(setting));
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
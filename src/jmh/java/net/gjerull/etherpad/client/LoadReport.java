@@ -0,0 +1,70 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of a {@link LoadHarness} run.
+ */
+public class LoadReport {
+    private final long calls;
+    private final Map<Integer, Long> errors;
+    private final LatencyHistogram latency;
+    private final long elapsedNanos;
+    private final ApiMetrics metrics;
+    private PoolStats poolStats;
+
+    LoadReport(long calls, Map<Integer, Long> errors, LatencyHistogram latency, long elapsedNanos, ApiMetrics metrics) {
+        this.calls = calls;
+        this.errors = errors;
+        this.latency = latency;
+        this.elapsedNanos = elapsedNanos;
+        this.metrics = metrics;
+    }
+
+    void setPoolStats(PoolStats poolStats) {
+        this.poolStats = poolStats;
+    }
+
+    public long getCalls() {
+        return this.calls;
+    }
+
+    /**
+     * @return the number of failed calls by Etherpad Lite response code, {@link EPLiteException#NO_CODE} for
+     *         connection failures
+     */
+    public Map<Integer, Long> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * @return the latencies of all calls, measured from the time each call was due
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * @return the number of calls completed per second
+     */
+    public double getThroughput() {
+        return this.elapsedNanos > 0 ? this.calls * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Calls: %d in %.1fs, %.0f/s%n", this.calls,
+                this.elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1), this.getThroughput()));
+        out.append(String.format("Latency: p50=%dus p99=%dus p999=%dus max=%dus mean=%.0fus%n",
+                this.latency.getPercentile(50) / 1000, this.latency.getPercentile(99) / 1000,
+                this.latency.getPercentile(99.9) / 1000, this.latency.getMax() / 1000, this.latency.getMean() / 1000));
+        out.append("Errors by code: ").append(this.errors).append('\n');
+        if (this.poolStats != null) {
+            out.append("Pool: ").append(this.poolStats).append('\n');
+        }
+        out.append("Per method:\n").append(this.metrics);
+        return out.toString();
+    }
+}
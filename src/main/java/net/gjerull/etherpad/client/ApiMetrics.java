@@ -0,0 +1,74 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of the calls made through an {@link EPLiteConnection}, per API method.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * MethodMetrics getText = client.getMetrics().get("getText");<br />
+ * long p99 = getText.getLatency().getPercentile(99);
+ * </code>
+ */
+public final class ApiMetrics {
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Records a completed call.
+     *
+     * @param apiMethod the API method
+     * @param nanos the time taken
+     * @param requestBytes the size of the request target and body
+     * @param responseChars the number of characters of the response body read
+     * @param error the error, or null if the call succeeded
+     */
+    void record(String apiMethod, long nanos, long requestBytes, long responseChars, EPLiteException error) {
+        MethodMetrics metrics = this.methods.get(apiMethod);
+        if (metrics == null) {
+            metrics = this.methods.computeIfAbsent(apiMethod, MethodMetrics::new);
+        }
+        metrics.record(nanos, requestBytes, responseChars, error);
+    }
+
+    /**
+     * @param apiMethod the API method
+     * @return the metrics of the method, or null if it has not been called
+     */
+    public MethodMetrics get(String apiMethod) {
+        return this.methods.get(apiMethod);
+    }
+
+    /**
+     * @return the metrics of every method called so far, sorted by method name
+     */
+    public List<MethodMetrics> getAll() {
+        List<MethodMetrics> all = new ArrayList<>(this.methods.values());
+        Collections.sort(all, (a, b) -> a.getApiMethod().compareTo(b.getApiMethod()));
+        return all;
+    }
+
+    /**
+     * Forgets all recorded calls.
+     */
+    public void reset() {
+        this.methods.clear();
+    }
+
+    /**
+     * @return one line per method
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (MethodMetrics metrics : this.getAll()) {
+            out.append(metrics).append('\n');
+        }
+        return out.toString();
+    }
+}
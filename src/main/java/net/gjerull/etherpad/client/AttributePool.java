@@ -0,0 +1,66 @@
+package net.gjerull.etherpad.client;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The attribute pool of a pad, mapping the attribute numbers referenced by {@link Changeset} ops to
+ * their key and value, e.g. <code>["author", "a.s8oes9dhwrvt0zif"]</code> or <code>["bold", "true"]</code>.<br />
+ * <br />
+ * <code>
+ * AttributePool pool = new AttributePool(client.getAttributePool(padId));
+ * </code>
+ */
+public final class AttributePool {
+    private final String[] keys;
+    private final String[] values;
+
+    /**
+     * Reads the pool from the response of getAttributePool.
+     *
+     * @param attributePool the Map returned by getAttributePool, or its "pool" entry
+     */
+    public AttributePool(Map attributePool) {
+        Map pool = attributePool.get("pool") instanceof Map ? (Map) attributePool.get("pool") : attributePool;
+        Map numToAttrib = pool.get("numToAttrib") instanceof Map ? (Map) pool.get("numToAttrib") : null;
+        if (numToAttrib == null) {
+            throw new EPLiteException("An unexpected attribute pool: " + attributePool);
+        }
+        int size = 0;
+        for (Object num : numToAttrib.keySet()) {
+            size = Math.max(size, Integer.parseInt(num.toString()) + 1);
+        }
+        this.keys = new String[size];
+        this.values = new String[size];
+        for (Object o : numToAttrib.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            int num = Integer.parseInt(entry.getKey().toString());
+            List attribute = (List) entry.getValue();
+            this.keys[num] = String.valueOf(attribute.get(0));
+            this.values[num] = String.valueOf(attribute.get(1));
+        }
+    }
+
+    /**
+     * @return one more than the highest attribute number in the pool
+     */
+    public int size() {
+        return this.keys.length;
+    }
+
+    /**
+     * @param num the attribute number
+     * @return the attribute's key, or null if the number is not in the pool
+     */
+    public String getKey(int num) {
+        return num >= 0 && num < this.keys.length ? this.keys[num] : null;
+    }
+
+    /**
+     * @param num the attribute number
+     * @return the attribute's value, or null if the number is not in the pool
+     */
+    public String getValue(int num) {
+        return num >= 0 && num < this.values.length ? this.values[num] : null;
+    }
+}
@@ -0,0 +1,289 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * An Etherpad changeset, as returned by getRevisionChangeset.<br />
+ * <br />
+ * A changeset has the form <code>Z:&lt;oldLen&gt;&gt;&lt;diff&gt;&lt;ops&gt;$&lt;charBank&gt;</code>, with numbers in
+ * base 36. Each op is an optional list of attribute references (<code>*n</code>), an optional newline count
+ * (<code>|n</code>) and a keep (<code>=</code>), delete (<code>-</code>) or insert (<code>+</code>) of a number of
+ * characters. Inserted characters are taken from the char bank, and text after the last op is kept.<br />
+ * <br />
+ * Parsing only records offsets into the changeset string; ops are decoded while the changeset is applied or
+ * iterated, so replaying many revisions allocates little more than the resulting text.<br />
+ * <br />
+ * <code>
+ * String text = (String) client.getText(padId, rev).get("text");<br />
+ * text = Changeset.parse(client.getRevisionChangeset(padId, rev + 1)).applyTo(text);
+ * </code>
+ */
+public final class Changeset {
+    private static final int RADIX = 36;
+
+    private final String source;
+    private final int oldLength;
+    private final int newLength;
+    private final int opsStart;
+    private final int opsEnd;
+    private final int charBankStart;
+
+    private Changeset(String source, int oldLength, int newLength, int opsStart, int opsEnd, int charBankStart) {
+        this.source = source;
+        this.oldLength = oldLength;
+        this.newLength = newLength;
+        this.opsStart = opsStart;
+        this.opsEnd = opsEnd;
+        this.charBankStart = charBankStart;
+    }
+
+    /**
+     * Parses the header of a changeset and locates its ops and char bank.
+     *
+     * @param changeset the encoded changeset
+     * @return Changeset
+     */
+    public static Changeset parse(String changeset) {
+        if (changeset == null || !changeset.startsWith("Z:")) {
+            throw invalid(changeset, "missing Z: header");
+        }
+        int i = 2;
+        int start = i;
+        int oldLength = 0;
+        while (i < changeset.length() && Character.digit(changeset.charAt(i), RADIX) >= 0) {
+            oldLength = oldLength * RADIX + Character.digit(changeset.charAt(i++), RADIX);
+        }
+        if (i == start || i == changeset.length()) {
+            throw invalid(changeset, "missing length");
+        }
+        char sign = changeset.charAt(i++);
+        if (sign != '>' && sign != '<') {
+            throw invalid(changeset, "missing length change");
+        }
+        start = i;
+        int diff = 0;
+        while (i < changeset.length() && Character.digit(changeset.charAt(i), RADIX) >= 0) {
+            diff = diff * RADIX + Character.digit(changeset.charAt(i++), RADIX);
+        }
+        if (i == start) {
+            throw invalid(changeset, "missing length change");
+        }
+        int newLength = sign == '>' ? oldLength + diff : oldLength - diff;
+        if (newLength < 0) {
+            throw invalid(changeset, "negative length");
+        }
+        int dollar = changeset.indexOf('$', i);
+        int opsEnd = dollar >= 0 ? dollar : changeset.length();
+        int charBankStart = dollar >= 0 ? dollar + 1 : changeset.length();
+        return new Changeset(changeset, oldLength, newLength, i, opsEnd, charBankStart);
+    }
+
+    /**
+     * @return the length of the text the changeset applies to
+     */
+    public int getOldLength() {
+        return this.oldLength;
+    }
+
+    /**
+     * @return the length of the text after the changeset is applied
+     */
+    public int getNewLength() {
+        return this.newLength;
+    }
+
+    /**
+     * @return the characters inserted by the changeset, in order
+     */
+    public String getCharBank() {
+        return this.source.substring(this.charBankStart);
+    }
+
+    /**
+     * @return a new iterator over the ops of the changeset
+     */
+    public OpIterator ops() {
+        return new OpIterator();
+    }
+
+    /**
+     * Applies the changeset to a text.
+     *
+     * @param text the text, which must have the changeset's old length
+     * @return the new text
+     */
+    public String applyTo(CharSequence text) {
+        StringBuilder out = new StringBuilder(this.newLength);
+        this.applyTo(text, out);
+        return out.toString();
+    }
+
+    /**
+     * Applies the changeset to a text, appending the new text to a builder. When replaying many changesets,
+     * two builders can be swapped between calls so that no intermediate Strings are created.
+     *
+     * @param text the text, which must have the changeset's old length
+     * @param out the builder the new text is appended to
+     */
+    public void applyTo(CharSequence text, StringBuilder out) {
+        if (text.length() != this.oldLength) {
+            throw new ChangesetException("Changeset applies to a text of length " + this.oldLength
+                    + ", not " + text.length() + ": " + this.source);
+        }
+        int start = out.length();
+        int position = 0;
+        int bank = this.charBankStart;
+        OpIterator op = new OpIterator();
+        while (op.next()) {
+            int chars = op.chars;
+            switch (op.opcode) {
+                case '=':
+                    if (position + chars > this.oldLength) {
+                        throw invalid(this.source, "keeps past the end of the text");
+                    }
+                    out.append(text, position, position + chars);
+                    position += chars;
+                    break;
+                case '-':
+                    if (position + chars > this.oldLength) {
+                        throw invalid(this.source, "deletes past the end of the text");
+                    }
+                    position += chars;
+                    break;
+                default:
+                    if (bank + chars > this.source.length()) {
+                        throw invalid(this.source, "inserts past the end of the char bank");
+                    }
+                    out.append(this.source, bank, bank + chars);
+                    bank += chars;
+                    break;
+            }
+        }
+        out.append(text, position, this.oldLength);
+        if (out.length() - start != this.newLength) {
+            throw invalid(this.source, "results in length " + (out.length() - start));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+    private static ChangesetException invalid(String changeset, String reason) {
+        return new ChangesetException("Invalid changeset (" + reason + "): " + changeset);
+    }
+
+    /**
+     * Iterates the ops of a changeset. The iterator itself holds the current op, so no object is created per op.<br />
+     * <br />
+     * <code>
+     * Changeset.OpIterator op = changeset.ops();<br />
+     * while (op.next()) {<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;for (int i = 0; i &lt; op.getAttributeCount(); i++) {<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;String key = pool.getKey(op.getAttribute(i));<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;}<br />
+     * }
+     * </code>
+     */
+    public final class OpIterator {
+        private int index = opsStart;
+        private char opcode;
+        private int chars;
+        private int lines;
+        private int attributesStart;
+        private int attributeCount;
+
+        private OpIterator() {
+        }
+
+        /**
+         * Moves to the next op.
+         *
+         * @return false if there are no more ops
+         */
+        public boolean next() {
+            if (this.index >= opsEnd) {
+                return false;
+            }
+            this.lines = 0;
+            this.attributeCount = 0;
+            this.attributesStart = this.index;
+            while (this.index < opsEnd && source.charAt(this.index) == '*') {
+                this.index = this.skipNumber(this.index + 1);
+                this.attributeCount++;
+            }
+            if (this.index < opsEnd && source.charAt(this.index) == '|') {
+                int end = this.skipNumber(this.index + 1);
+                this.lines = Integer.parseInt(source, this.index + 1, end, RADIX);
+                this.index = end;
+            }
+            if (this.index >= opsEnd) {
+                throw invalid(source, "op without opcode");
+            }
+            char c = source.charAt(this.index);
+            if (c != '=' && c != '-' && c != '+') {
+                throw invalid(source, "unknown opcode '" + c + "'");
+            }
+            this.opcode = c;
+            int end = this.skipNumber(this.index + 1);
+            this.chars = Integer.parseInt(source, this.index + 1, end, RADIX);
+            this.index = end;
+            return true;
+        }
+
+        /**
+         * @return '=' for keep, '-' for delete or '+' for insert
+         */
+        public char getOpcode() {
+            return this.opcode;
+        }
+
+        /**
+         * @return the number of characters kept, deleted or inserted
+         */
+        public int getChars() {
+            return this.chars;
+        }
+
+        /**
+         * @return the number of newlines among those characters
+         */
+        public int getLines() {
+            return this.lines;
+        }
+
+        /**
+         * @return the number of attributes referenced by the op
+         */
+        public int getAttributeCount() {
+            return this.attributeCount;
+        }
+
+        /**
+         * Returns an attribute number, to be looked up in the pad's {@link AttributePool}.
+         *
+         * @param i the index of the attribute, from 0 to getAttributeCount() - 1
+         * @return the attribute number
+         */
+        public int getAttribute(int i) {
+            if (i < 0 || i >= this.attributeCount) {
+                throw new IndexOutOfBoundsException("Attribute " + i + " of " + this.attributeCount);
+            }
+            int position = this.attributesStart;
+            for (int n = 0; n < i; n++) {
+                position = this.skipNumber(position + 1);
+            }
+            return Integer.parseInt(source, position + 1, this.skipNumber(position + 1), RADIX);
+        }
+
+        private int skipNumber(int from) {
+            int end = from;
+            while (end < opsEnd && Character.digit(source.charAt(end), RADIX) >= 0) {
+                end++;
+            }
+            if (end == from) {
+                throw invalid(source, "missing number at " + from);
+            }
+            return end;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Thrown when a changeset is malformed or does not apply to the given text.
+ */
+public class ChangesetException extends EPLiteException {
+    public ChangesetException(String message) {
+        super(message);
+    }
+}
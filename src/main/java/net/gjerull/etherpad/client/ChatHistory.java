@@ -0,0 +1,51 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The chat messages of a pad, as returned by {@link EPLiteClient#getChatMessages(String)}.
+ */
+public final class ChatHistory {
+    static final Set<String> FIELDS = Collections.singleton("messages");
+
+    private final List<ChatMessage> messages;
+
+    ChatHistory(List<ChatMessage> messages) {
+        this.messages = Collections.unmodifiableList(messages);
+    }
+
+    static ChatHistory from(Object data) {
+        Object messages = ResultFields.object(data).get("messages");
+        if (messages == null) {
+            return new ChatHistory(Collections.<ChatMessage>emptyList());
+        }
+        if (!(messages instanceof List)) {
+            throw new EPLiteException("Expected a list in \"messages\", got " + messages);
+        }
+        List<?> values = (List<?>) messages;
+        List<ChatMessage> history = new ArrayList<>(values.size());
+        for (Object value : values) {
+            history.add(ChatMessage.from(value));
+        }
+        return new ChatHistory(history);
+    }
+
+    /**
+     * @return the unmodifiable list of messages, oldest first
+     */
+    public List<ChatMessage> getMessages() {
+        return this.messages;
+    }
+
+    public int size() {
+        return this.messages.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ChatHistory{" + this.messages.size() + " messages}";
+    }
+}
@@ -0,0 +1,56 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+
+/**
+ * One message of a {@link ChatHistory}.
+ */
+public final class ChatMessage {
+    private final String text;
+    private final String userId;
+    private final long time;
+    private final String userName;
+
+    ChatMessage(String text, String userId, long time, String userName) {
+        this.text = text;
+        this.userId = userId;
+        this.time = time;
+        this.userName = userName;
+    }
+
+    static ChatMessage from(Object message) {
+        Map<?, ?> fields = ResultFields.object(message);
+        return new ChatMessage(ResultFields.string(fields, "text"), ResultFields.string(fields, "userId"),
+                ResultFields.number(fields, "time", 0L), ResultFields.string(fields, "userName"));
+    }
+
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * @return the author id of the sender
+     */
+    public String getUserId() {
+        return this.userId;
+    }
+
+    /**
+     * @return the time the message was sent, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return the name of the sender, or null if the author has none
+     */
+    public String getUserName() {
+        return this.userName;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatMessage{" + this.userName + " (" + this.userId + ") at " + this.time + ": " + this.text + "}";
+    }
+}
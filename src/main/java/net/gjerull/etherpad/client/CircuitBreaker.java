@@ -0,0 +1,306 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calling an endpoint, or one API method of it, while most of the recent calls failed.<br />
+ * <br />
+ * Each circuit counts the outcomes of its last calls. Calls that got no response, timed out or got an internal
+ * error are failures; error responses such as invalid parameters are not. Once enough calls were made and the share
+ * of failures reaches the threshold, the circuit opens: calls fail at once with an
+ * {@link EPLiteCircuitOpenException}. After the open time, the circuit is half open and lets a few calls through.
+ * If they all succeed it closes, and if one fails it opens again.<br />
+ * <br />
+ * By default there is one circuit per endpoint. With {@link #setPerMethod(boolean)}, each API method of an endpoint
+ * has its own circuit, so that e.g. failing createDiffHTML calls do not stop getText calls.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * CircuitBreaker breaker = new CircuitBreaker();<br />
+ * breaker.addListener((circuit, from, to) -&gt; log.warn(circuit + " is " + to));<br />
+ * client.setCircuitBreaker(breaker);
+ * </code>
+ */
+public final class CircuitBreaker {
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 10;
+    public static final long DEFAULT_OPEN_MILLIS = 5000L;
+    public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+    /**
+     * The states of a circuit
+     */
+    public enum State {
+        /** Calls go through */
+        CLOSED,
+        /** Calls fail at once */
+        OPEN,
+        /** A few calls go through to find out whether the endpoint recovered */
+        HALF_OPEN
+    }
+
+    /**
+     * Receives the state changes of circuits, on the thread of the call that caused them.
+     */
+    public interface Listener {
+        /**
+         * @param circuit the name of the circuit: the endpoint, followed by the API method for per-method circuits
+         * @param from the previous state
+         * @param to the new state
+         */
+        void stateChanged(String circuit, State from, State to);
+    }
+
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean perMethod;
+
+    /**
+     * Creates a circuit breaker with the default settings: circuits open when half of the last 20 calls failed,
+     * after at least 10 calls, and stay open for 5 seconds before letting 3 calls through.
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_OPEN_MILLIS,
+                DEFAULT_HALF_OPEN_CALLS);
+    }
+
+    /**
+     * @param failureRateThreshold the share of failed calls, from 0 to 1, at which a circuit opens
+     * @param windowSize the number of recent calls counted
+     * @param minimumCalls the number of calls counted before a circuit may open
+     * @param openMillis how long a circuit stays open before letting calls through again
+     * @param halfOpenCalls the number of calls let through while half open, which must all succeed to close
+     */
+    public CircuitBreaker(double failureRateThreshold, int windowSize, int minimumCalls, long openMillis, int halfOpenCalls) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be above 0 and at most 1");
+        }
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1 || openMillis < 0) {
+            throw new IllegalArgumentException("Invalid circuit breaker settings");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * Gives each API method of an endpoint its own circuit. Set it before the first call.
+     *
+     * @param perMethod true for a circuit per endpoint and API method, false for one per endpoint
+     */
+    public void setPerMethod(boolean perMethod) {
+        this.perMethod = perMethod;
+    }
+
+    /**
+     * @return true if each API method of an endpoint has its own circuit
+     */
+    public boolean isPerMethod() {
+        return this.perMethod;
+    }
+
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Returns the state of the circuit of an endpoint, or of an API method of it for per-method circuits.
+     *
+     * @param endpoint the url of the endpoint, as given to the connection
+     * @param apiMethod the API method, ignored unless circuits are per method
+     * @return the state, CLOSED for a circuit without calls
+     */
+    public State getState(String endpoint, String apiMethod) {
+        Circuit circuit = this.circuits.get(this.name(endpoint, apiMethod));
+        return circuit != null ? circuit.state() : State.CLOSED;
+    }
+
+    /**
+     * @return the state of every circuit that had calls, by name
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<>();
+        for (Circuit circuit : this.circuits.values()) {
+            states.put(circuit.name, circuit.state());
+        }
+        return states;
+    }
+
+    /**
+     * @return the number of calls that failed at once because their circuit was open
+     */
+    public long getRejectedCount() {
+        long rejected = 0L;
+        for (Circuit circuit : this.circuits.values()) {
+            rejected += circuit.rejected();
+        }
+        return rejected;
+    }
+
+    /**
+     * Lets a call through, or throws if its circuit is open. The caller must record the outcome on the circuit.
+     *
+     * @param endpoint the url of the endpoint
+     * @param apiMethod the API method called
+     * @return the circuit of the call
+     * @throws EPLiteCircuitOpenException if the circuit is open
+     */
+    Circuit acquire(String endpoint, String apiMethod) {
+        String name = this.name(endpoint, apiMethod);
+        Circuit circuit = this.circuits.computeIfAbsent(name, Circuit::new);
+        circuit.acquire();
+        return circuit;
+    }
+
+    private String name(String endpoint, String apiMethod) {
+        return this.perMethod ? endpoint + " " + apiMethod : endpoint;
+    }
+
+    private void fire(String circuit, State from, State to) {
+        for (Listener listener : this.listeners) {
+            try {
+                listener.stateChanged(circuit, from, to);
+            } catch (RuntimeException e) {
+                // A failing listener must not fail the call
+            }
+        }
+    }
+
+    /**
+     * The state and recent outcomes of one endpoint, or one API method of it.
+     */
+    final class Circuit {
+        final String name;
+        private final boolean[] outcomes = new boolean[CircuitBreaker.this.windowSize];
+        private int next;
+        private int calls;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private int halfOpenPermits;
+        private int halfOpenSuccesses;
+        private long rejected;
+
+        Circuit(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @throws EPLiteCircuitOpenException if the call may not go through
+         */
+        void acquire() {
+            boolean halfOpened = false;
+            synchronized (this) {
+                if (this.state == State.OPEN) {
+                    long remaining = this.openedAt + CircuitBreaker.this.openNanos - System.nanoTime();
+                    if (remaining > 0) {
+                        this.rejected++;
+                        throw new EPLiteCircuitOpenException("The circuit of " + this.name + " is open for another "
+                                + TimeUnit.NANOSECONDS.toMillis(remaining) + " ms", this.name);
+                    }
+                    this.state = State.HALF_OPEN;
+                    this.halfOpenPermits = CircuitBreaker.this.halfOpenCalls;
+                    this.halfOpenSuccesses = 0;
+                    halfOpened = true;
+                }
+                if (this.state == State.HALF_OPEN) {
+                    if (this.halfOpenPermits == 0) {
+                        this.rejected++;
+                        throw new EPLiteCircuitOpenException("The circuit of " + this.name
+                                + " is half open and waiting for its trial calls", this.name);
+                    }
+                    this.halfOpenPermits--;
+                }
+            }
+            if (halfOpened) {
+                CircuitBreaker.this.fire(this.name, State.OPEN, State.HALF_OPEN);
+            }
+        }
+
+        /**
+         * Records the outcome of a call let through by {@link #acquire()}.
+         *
+         * @param failed true if the call got no response, timed out or got an internal error
+         */
+        void record(boolean failed) {
+            State from;
+            State to;
+            synchronized (this) {
+                from = this.state;
+                if (this.state == State.HALF_OPEN) {
+                    if (failed) {
+                        this.open();
+                    } else if (++this.halfOpenSuccesses >= CircuitBreaker.this.halfOpenCalls) {
+                        this.state = State.CLOSED;
+                        this.next = 0;
+                        this.calls = 0;
+                        this.failures = 0;
+                    }
+                } else if (this.state == State.CLOSED) {
+                    if (this.calls == this.outcomes.length) {
+                        if (this.outcomes[this.next]) {
+                            this.failures--;
+                        }
+                    } else {
+                        this.calls++;
+                    }
+                    this.outcomes[this.next] = failed;
+                    this.next = (this.next + 1) % this.outcomes.length;
+                    if (failed) {
+                        this.failures++;
+                    }
+                    if (this.calls >= CircuitBreaker.this.minimumCalls
+                            && this.failures >= CircuitBreaker.this.failureRateThreshold * this.calls) {
+                        this.open();
+                    }
+                }
+                // Outcomes of calls let through before the circuit opened are not counted
+                to = this.state;
+            }
+            if (from != to) {
+                CircuitBreaker.this.fire(this.name, from, to);
+            }
+        }
+
+        /**
+         * Records a call let through by {@link #acquire()} whose outcome says nothing about the endpoint, e.g. one
+         * whose caller ran out of time. A trial call of a half open circuit is given back.
+         */
+        synchronized void ignore() {
+            if (this.state == State.HALF_OPEN && this.halfOpenPermits < CircuitBreaker.this.halfOpenCalls) {
+                this.halfOpenPermits++;
+            }
+        }
+
+        synchronized State state() {
+            return this.state;
+        }
+
+        synchronized long rejected() {
+            return this.rejected;
+        }
+
+        private void open() {
+            this.state = State.OPEN;
+            this.openedAt = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of calls in flight to an Etherpad Lite instance, adapting the limit to how the instance copes.
+ * <br />
+ * <br />
+ * The limit follows additive increase, multiplicative decrease (AIMD): a call that succeeds within the latency
+ * threshold while the limit is in use raises the limit by 1/limit, about one per round of calls; a call that
+ * fails to get a response, times out, gets an internal error or takes longer than the threshold cuts the limit by
+ * 10%. The limit is cut once per congestion event: calls that started before the last cut do not cut it again,
+ * as TCP backs off once per round trip. Etherpad Lite runs on a single Node.js thread, so more concurrency past its
+ * capacity only adds latency.<br />
+ * <br />
+ * Calls over the limit wait in a FIFO queue, for at most the maximum wait and never past the {@link Deadline} of
+ * the call. Calls that find the queue full, or wait too long, fail with an {@link EPLiteRejectedException}.
+ * A limiter belongs to one instance; set one per connection.<br />
+ * <br />
+ * Calls are scheduled by their {@link Priority}: interactive calls wait before batch calls, and a share of the
+ * limit is reserved for them, so batch calls only use the capacity left over. The time calls wait for room is
+ * measured per priority class.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 64, 500L);<br />
+ * client.setConcurrencyLimiter(limiter);<br />
+ * ...<br />
+ * limiter.getLimit(); limiter.getInFlight(); limiter.getQueueDepth();<br />
+ * limiter.getWaitTime(Priority.INTERACTIVE).getPercentile(99);
+ * </code>
+ */
+public final class ConcurrencyLimiter {
+    public static final int DEFAULT_INITIAL_LIMIT = 10;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 100;
+    public static final long DEFAULT_LATENCY_THRESHOLD_MILLIS = 1000L;
+    public static final int DEFAULT_MAX_QUEUE = 100;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 5000L;
+    public static final double DEFAULT_RESERVED_SHARE = 0.2;
+
+    /**
+     * The factor applied to the limit when the instance struggles
+     */
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private volatile int maxQueue = DEFAULT_MAX_QUEUE;
+    private volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+    private volatile double reservedShare = DEFAULT_RESERVED_SHARE;
+    private final Map<Priority, LatencyHistogram> waitTimes = new EnumMap<>(Priority.class);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, Deque<Waiter>> queues = new EnumMap<>(Priority.class);
+    private int queued;
+    private double limit;
+    /** When the limit was last cut */
+    private long backoffAt = System.nanoTime() - 1L;
+    private int inFlight;
+    private long rejected;
+
+    /**
+     * Creates a limiter with the default limits: starting at 10 calls, between 1 and 100, with a latency threshold
+     * of one second.
+     */
+    public ConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_LATENCY_THRESHOLD_MILLIS);
+    }
+
+    /**
+     * @param initialLimit the number of calls allowed in flight at first
+     * @param minLimit the lowest the limit goes
+     * @param maxLimit the highest the limit goes
+     * @param latencyThresholdMillis calls slower than this lower the limit
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long latencyThresholdMillis) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("The limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.limit = initialLimit;
+        for (Priority priority : Priority.values()) {
+            this.queues.put(priority, new ArrayDeque<>());
+            this.waitTimes.put(priority, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Sets the number of calls that may wait for room. The default is 100; 0 rejects calls over the limit at once.
+     *
+     * @param maxQueue the queue size
+     */
+    public void setMaxQueue(int maxQueue) {
+        if (maxQueue < 0) {
+            throw new IllegalArgumentException("maxQueue cannot be negative");
+        }
+        this.maxQueue = maxQueue;
+    }
+
+    /**
+     * Sets how long a call may wait for room. The default is 5 seconds.
+     *
+     * @param maxWaitMillis the time in milliseconds
+     */
+    public void setMaxWait(long maxWaitMillis) {
+        if (maxWaitMillis < 0) {
+            throw new IllegalArgumentException("maxWaitMillis cannot be negative");
+        }
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Sets the share of the limit reserved for interactive calls. The default is 0.2, e.g. 2 of a limit of 10 calls.
+     * Batch calls always keep at least one call of the limit.
+     *
+     * @param reservedShare the share, from 0 to 1
+     */
+    public void setReservedShare(double reservedShare) {
+        if (reservedShare < 0 || reservedShare > 1) {
+            throw new IllegalArgumentException("reservedShare must be between 0 and 1");
+        }
+        this.reservedShare = reservedShare;
+    }
+
+    /**
+     * @return the number of calls currently allowed in flight
+     */
+    public int getLimit() {
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls in flight
+     */
+    public int getInFlight() {
+        this.lock.lock();
+        try {
+            return this.inFlight;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of calls waiting for room
+     */
+    public int getQueueDepth() {
+        this.lock.lock();
+        try {
+            return this.queued;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @param priority the priority class
+     * @return the number of calls of the class waiting for room
+     */
+    public int getQueueDepth(Priority priority) {
+        this.lock.lock();
+        try {
+            return this.queues.get(priority).size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the times the calls of a priority class waited for room, in nanoseconds. Calls let through at once
+     * count as waiting 0; calls rejected are not counted.
+     *
+     * @param priority the priority class
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getWaitTime(Priority priority) {
+        return this.waitTimes.get(priority);
+    }
+
+    /**
+     * @return the number of calls rejected because the queue was full or they waited too long
+     */
+    public long getRejectedCount() {
+        this.lock.lock();
+        try {
+            return this.rejected;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return a new limiter with the same settings, for another instance
+     */
+    ConcurrencyLimiter copy() {
+        ConcurrencyLimiter copy = new ConcurrencyLimiter(this.initialLimit, this.minLimit, this.maxLimit,
+                TimeUnit.NANOSECONDS.toMillis(this.latencyThresholdNanos));
+        copy.maxQueue = this.maxQueue;
+        copy.maxWaitMillis = this.maxWaitMillis;
+        copy.reservedShare = this.reservedShare;
+        return copy;
+    }
+
+    /**
+     * Waits for room for a call on the current thread.
+     *
+     * @param priority the priority class of the call
+     * @return the permit of the call, to release once it completes
+     * @throws EPLiteRejectedException if the queue is full or the call waited too long
+     * @throws EPLiteTimeoutException if the deadline of the call expired while waiting
+     */
+    Permit acquire(Priority priority) {
+        Waiter permit = this.enqueue(priority);
+        if (permit.isDone()) {
+            try {
+                return permit.join();
+            } catch (CompletionException e) {
+                throw (EPLiteException) e.getCause();
+            }
+        }
+        long wait = this.maxWaitMillis;
+        Deadline deadline = Deadline.current();
+        boolean bounded = deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) < wait;
+        if (bounded) {
+            wait = Math.max(0L, deadline.remaining(TimeUnit.MILLISECONDS));
+        }
+        try {
+            return permit.get(wait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            this.abandon(permit);
+            throw bounded ? new EPLiteTimeoutException("The deadline of the call expired while waiting for room")
+                    : new EPLiteRejectedException("No room for the call after waiting " + wait + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.abandon(permit);
+            throw new EPLiteRejectedException("Interrupted while waiting for room for the call");
+        } catch (ExecutionException e) {
+            throw (EPLiteException) e.getCause();
+        }
+    }
+
+    /**
+     * Returns a future completed with a permit once there is room for a call, without blocking.
+     *
+     * @param priority the priority class of the call
+     * @return the future permit; it fails with an EPLiteRejectedException or an EPLiteTimeoutException
+     */
+    CompletableFuture<Permit> acquireAsync(Priority priority) {
+        final Waiter permit = this.enqueue(priority);
+        if (permit.isDone()) {
+            return permit;
+        }
+        long wait = this.maxWaitMillis;
+        Deadline deadline = Deadline.current();
+        final boolean bounded = deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) < wait;
+        if (bounded) {
+            wait = Math.max(0L, deadline.remaining(TimeUnit.MILLISECONDS));
+        }
+        final long waited = wait;
+        CompletableFuture.delayedExecutor(wait, TimeUnit.MILLISECONDS).execute(() -> {
+            if (this.remove(permit)) {
+                permit.completeExceptionally(bounded
+                        ? new EPLiteTimeoutException("The deadline of the call expired while waiting for room")
+                        : new EPLiteRejectedException("No room for the call after waiting " + waited + " ms"));
+            }
+        });
+        return permit;
+    }
+
+    /**
+     * Takes room for a call or queues for it. A full queue gives a failed future.
+     */
+    private Waiter enqueue(Priority priority) {
+        Waiter waiter = new Waiter(priority);
+        this.lock.lock();
+        try {
+            Deque<Waiter> interactive = this.queues.get(Priority.INTERACTIVE);
+            boolean room = priority == Priority.INTERACTIVE
+                    ? interactive.isEmpty() && this.inFlight < (int) this.limit
+                    : interactive.isEmpty() && this.queues.get(Priority.BATCH).isEmpty()
+                            && this.inFlight < this.batchLimit();
+            if (room) {
+                this.inFlight++;
+                waiter.grant(this.inFlight);
+            } else if (this.queued < this.maxQueue) {
+                this.queues.get(priority).addLast(waiter);
+                this.queued++;
+            } else {
+                this.rejected++;
+                waiter.completeExceptionally(new EPLiteRejectedException("Too many calls: " + this.inFlight
+                        + " in flight with a limit of " + (int) this.limit + " and " + this.queued + " waiting"));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return waiter;
+    }
+
+    /**
+     * @return the number of calls allowed in flight once batch calls leave the reserved share to interactive calls
+     */
+    private int batchLimit() {
+        int limit = (int) this.limit;
+        return limit - Math.min(limit - 1, (int) Math.ceil(limit * this.reservedShare));
+    }
+
+    /**
+     * Gives up waiting, releasing the room if it was granted meanwhile.
+     */
+    private void abandon(Waiter waiter) {
+        if (!this.remove(waiter)) {
+            Permit granted = waiter.getNow(null);
+            if (granted != null) {
+                granted.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return true if the waiting call was still queued, and counts as rejected
+     */
+    private boolean remove(Waiter waiter) {
+        this.lock.lock();
+        try {
+            if (this.queues.get(waiter.priority).remove(waiter)) {
+                this.queued--;
+                this.rejected++;
+                return true;
+            }
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void release(int inFlightAtStart, long start, boolean dropped, boolean counted) {
+        List<Waiter> granted = new ArrayList<>();
+        long now = System.nanoTime();
+        this.lock.lock();
+        try {
+            this.inFlight--;
+            if (counted) {
+                if (dropped || now - start > this.latencyThresholdNanos) {
+                    // Calls sent before the last cut saw the same congestion
+                    if (start - this.backoffAt > 0) {
+                        this.limit = Math.max(this.minLimit, this.limit * BACKOFF_RATIO);
+                        this.backoffAt = now;
+                    }
+                } else if (inFlightAtStart * 2 >= this.limit) {
+                    // Only a limit in use is raised, so that it does not grow without bounds while idle
+                    this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+                }
+            }
+            // Interactive calls first, then batch calls in the room left over
+            Deque<Waiter> interactive = this.queues.get(Priority.INTERACTIVE);
+            Deque<Waiter> batch = this.queues.get(Priority.BATCH);
+            while (!interactive.isEmpty() && this.inFlight < (int) this.limit) {
+                granted.add(interactive.pollFirst());
+                this.inFlight++;
+                granted.get(granted.size() - 1).inFlightAtStart = this.inFlight;
+            }
+            while (interactive.isEmpty() && !batch.isEmpty() && this.inFlight < this.batchLimit()) {
+                granted.add(batch.pollFirst());
+                this.inFlight++;
+                granted.get(granted.size() - 1).inFlightAtStart = this.inFlight;
+            }
+            this.queued -= granted.size();
+        } finally {
+            this.lock.unlock();
+        }
+        // Granted outside the lock, since asynchronous calls continue on this thread
+        for (Waiter next : granted) {
+            next.grant(next.inFlightAtStart);
+        }
+    }
+
+    /**
+     * A call waiting for room, completed with its permit once granted.
+     */
+    private final class Waiter extends CompletableFuture<Permit> {
+        final Priority priority;
+        final long since = System.nanoTime();
+        int inFlightAtStart;
+
+        Waiter(Priority priority) {
+            this.priority = priority;
+        }
+
+        void grant(int inFlightAtStart) {
+            ConcurrencyLimiter.this.waitTimes.get(this.priority).record(System.nanoTime() - this.since);
+            if (!this.complete(new Permit(inFlightAtStart))) {
+                ConcurrencyLimiter.this.release(0, System.nanoTime(), false, false);
+            }
+        }
+    }
+
+    /**
+     * The room taken by one call, released once with its outcome.
+     */
+    final class Permit {
+        private final int inFlightAtStart;
+        private final long start = System.nanoTime();
+        private boolean released;
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /**
+         * Releases the room, adapting the limit to the outcome.
+         *
+         * @param dropped true if the call got no response, timed out or got an internal error
+         */
+        void release(boolean dropped) {
+            this.release(dropped, true);
+        }
+
+        /**
+         * Releases the room of a call that was not sent, without adapting the limit.
+         */
+        void cancel() {
+            this.release(false, false);
+        }
+
+        private void release(boolean dropped, boolean counted) {
+            synchronized (this) {
+                if (this.released) {
+                    return;
+                }
+                this.released = true;
+            }
+            ConcurrencyLimiter.this.release(this.inFlightAtStart, this.start, dropped, counted);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of persistent connections, kept per {@link Route}.<br />
+ * <br />
+ * Idle connections are reused most-recently-used first, so that surplus connections age out.
+ * Connections that have been idle longer than the idle timeout, or that have outlived their
+ * maximum lifetime, are evicted when they are next looked at and by a periodic sweep. While
+ * connections are idle, a background sweep is also scheduled for when the first of them expires,
+ * so that an application that stops calling does not keep sockets open that the server has closed.
+ */
+final class ConnectionPool {
+    /**
+     * Opens new connections on behalf of the pool.
+     */
+    interface Connector {
+        PooledConnection connect(Route route) throws IOException;
+    }
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    /** Sweeps the idle connections of every pool in the background */
+    private static final ScheduledThreadPoolExecutor SWEEPER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "etherpad-pool-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SWEEPER.setRemoveOnCancelPolicy(true);
+    }
+
+    private static final class RoutePool {
+        final Deque<PooledConnection> idle = new ArrayDeque<>();
+        int leased;
+    }
+
+    private final Connector connector;
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = this.lock.newCondition();
+    private final Map<Route, RoutePool> routes = new HashMap<>();
+    private int leased;
+    private int idle;
+    private int pending;
+    private long created;
+    private long evicted;
+    private long lastSweep;
+    private ScheduledFuture<?> sweepTask;
+    private long sweepAt = Long.MAX_VALUE;
+    private boolean closed;
+
+    ConnectionPool(Connector connector, int maxTotal, int maxPerRoute, long idleTimeoutMillis, long maxLifetimeMillis) {
+        if (maxTotal < 1 || maxPerRoute < 1) {
+            throw new IllegalArgumentException("The pool must allow at least one connection");
+        }
+        this.connector = connector;
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * Leases a connection to the given route, reusing an idle one if possible.
+     *
+     * @param route the route to connect to
+     * @param maxWaitMillis how long to wait for a free connection, or 0 to wait indefinitely
+     * @return PooledConnection
+     * @throws TimeoutException if no connection became available in time
+     */
+    PooledConnection lease(Route route, long maxWaitMillis)
+            throws IOException, InterruptedException, TimeoutException {
+        long deadline = maxWaitMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis) : 0L;
+        while (true) {
+            List<PooledConnection> toClose = new ArrayList<>();
+            PooledConnection connection;
+            try {
+                connection = this.acquire(route, deadline, toClose);
+            } finally {
+                closeAll(toClose);
+            }
+
+            if (connection == null) {
+                // A slot was reserved for a new connection
+                try {
+                    connection = this.connector.connect(route);
+                } catch (IOException | RuntimeException e) {
+                    this.release(route, null, false);
+                    throw e;
+                }
+                this.lock.lock();
+                try {
+                    this.created++;
+                } finally {
+                    this.lock.unlock();
+                }
+                connection.markLeased();
+                return connection;
+            }
+
+            if (!connection.isStale(System.currentTimeMillis())) {
+                connection.markLeased();
+                return connection;
+            }
+            this.lock.lock();
+            try {
+                this.evicted++;
+            } finally {
+                this.lock.unlock();
+            }
+            this.release(route, connection, false);
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool.
+     *
+     * @param connection the connection
+     * @param reusable false if the connection must be closed
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        this.release(connection.route, connection, reusable);
+    }
+
+    /**
+     * Closes all idle connections. Leased connections are closed as they are released.
+     */
+    void close() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        this.lock.lock();
+        try {
+            this.closed = true;
+            for (RoutePool routePool : this.routes.values()) {
+                toClose.addAll(routePool.idle);
+                routePool.idle.clear();
+            }
+            this.idle = 0;
+            if (this.sweepTask != null) {
+                this.sweepTask.cancel(false);
+                this.sweepTask = null;
+                this.sweepAt = Long.MAX_VALUE;
+            }
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * Closes idle connections that have expired, without waiting for the next periodic sweep.
+     */
+    void evictExpired() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        this.lock.lock();
+        try {
+            this.sweep(System.currentTimeMillis(), toClose);
+        } finally {
+            this.lock.unlock();
+        }
+        closeAll(toClose);
+    }
+
+    PoolStats stats() {
+        this.lock.lock();
+        try {
+            return new PoolStats(this.leased, this.idle, this.pending, this.created, this.evicted,
+                    this.maxTotal, this.maxPerRoute);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Takes an idle connection or reserves a slot for a new one (signalled by returning null),
+     * waiting for a connection to be released if the pool is exhausted.
+     */
+    private PooledConnection acquire(Route route, long deadline, List<PooledConnection> toClose)
+            throws InterruptedException, TimeoutException {
+        this.lock.lock();
+        try {
+            this.pending++;
+            try {
+                while (true) {
+                    if (this.closed) {
+                        throw new IllegalStateException("Connection pool has been closed");
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - this.lastSweep >= SWEEP_INTERVAL_MILLIS) {
+                        this.sweep(now, toClose);
+                    }
+
+                    RoutePool routePool = this.routes.get(route);
+                    if (routePool == null) {
+                        routePool = new RoutePool();
+                        this.routes.put(route, routePool);
+                    }
+                    PooledConnection connection;
+                    while ((connection = routePool.idle.pollFirst()) != null) {
+                        this.idle--;
+                        if (connection.isExpired(now, this.idleTimeoutMillis, this.maxLifetimeMillis)) {
+                            this.evicted++;
+                            toClose.add(connection);
+                            continue;
+                        }
+                        routePool.leased++;
+                        this.leased++;
+                        return connection;
+                    }
+
+                    if (routePool.leased < this.maxPerRoute) {
+                        if (this.leased + this.idle >= this.maxTotal) {
+                            // Make room by closing the oldest idle connection of another route
+                            this.evictOldestIdle(toClose);
+                        }
+                        if (this.leased + this.idle < this.maxTotal) {
+                            routePool.leased++;
+                            this.leased++;
+                            return null;
+                        }
+                    }
+
+                    if (deadline == 0L) {
+                        this.available.await();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0L) {
+                            throw new TimeoutException("Timeout waiting for a connection to " + route);
+                        }
+                        this.available.awaitNanos(remaining);
+                    }
+                }
+            } finally {
+                this.pending--;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void release(Route route, PooledConnection connection, boolean reusable) {
+        boolean keep = false;
+        this.lock.lock();
+        try {
+            RoutePool routePool = this.routes.get(route);
+            routePool.leased--;
+            this.leased--;
+            if (connection != null && reusable && !this.closed) {
+                long now = System.currentTimeMillis();
+                connection.markReleased(now);
+                if (connection.isExpired(now, this.idleTimeoutMillis, this.maxLifetimeMillis)) {
+                    this.evicted++;
+                } else {
+                    routePool.idle.addFirst(connection);
+                    this.idle++;
+                    keep = true;
+                    this.scheduleSweep(now, connection.expiresAt(this.idleTimeoutMillis, this.maxLifetimeMillis));
+                }
+            }
+            this.available.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        if (connection != null && !keep) {
+            connection.close();
+        }
+    }
+
+    private void sweep(long now, List<PooledConnection> toClose) {
+        this.lastSweep = now;
+        Iterator<RoutePool> routePools = this.routes.values().iterator();
+        while (routePools.hasNext()) {
+            RoutePool routePool = routePools.next();
+            Iterator<PooledConnection> connections = routePool.idle.iterator();
+            while (connections.hasNext()) {
+                PooledConnection connection = connections.next();
+                if (connection.isExpired(now, this.idleTimeoutMillis, this.maxLifetimeMillis)) {
+                    connections.remove();
+                    this.idle--;
+                    this.evicted++;
+                    toClose.add(connection);
+                }
+            }
+            if (routePool.idle.isEmpty() && routePool.leased == 0) {
+                routePools.remove();
+            }
+        }
+    }
+
+    /**
+     * Makes sure a background sweep runs by the given expiry time. Called with the lock held.
+     */
+    private void scheduleSweep(long now, long expiresAt) {
+        if (this.closed || expiresAt >= this.sweepAt || expiresAt == Long.MAX_VALUE) {
+            return;
+        }
+        if (this.sweepTask != null) {
+            this.sweepTask.cancel(false);
+        }
+        this.sweepAt = expiresAt;
+        this.sweepTask = SWEEPER.schedule(this::sweepInBackground, Math.max(1L, expiresAt - now + 1L),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void sweepInBackground() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        this.lock.lock();
+        try {
+            this.sweepTask = null;
+            this.sweepAt = Long.MAX_VALUE;
+            long now = System.currentTimeMillis();
+            this.sweep(now, toClose);
+            long next = Long.MAX_VALUE;
+            for (RoutePool routePool : this.routes.values()) {
+                for (PooledConnection connection : routePool.idle) {
+                    next = Math.min(next, connection.expiresAt(this.idleTimeoutMillis, this.maxLifetimeMillis));
+                }
+            }
+            this.scheduleSweep(now, next);
+        } finally {
+            this.lock.unlock();
+        }
+        closeAll(toClose);
+    }
+
+    private void evictOldestIdle(List<PooledConnection> toClose) {
+        for (RoutePool routePool : this.routes.values()) {
+            PooledConnection connection = routePool.idle.pollLast();
+            if (connection != null) {
+                this.idle--;
+                this.evicted++;
+                toClose.add(connection);
+                return;
+            }
+        }
+    }
+
+    private static void closeAll(List<PooledConnection> connections) {
+        for (PooledConnection connection : connections) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which the calls made on the current thread must complete, including the time spent
+ * waiting for a pooled connection, connecting, reading the response and trying other endpoints.<br />
+ * <br />
+ * A deadline applies from its creation until it is closed. A deadline started inside another one cannot
+ * extend it: the earlier of the two applies. Calls that run out of time throw an {@link EPLiteTimeoutException}.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * try (Deadline deadline = Deadline.after(2, TimeUnit.SECONDS)) {<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;client.getText("my_pad");<br />
+ * }
+ * </code>
+ */
+public final class Deadline implements AutoCloseable {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAt;
+    private final Deadline previous;
+    private final Thread thread;
+
+    private Deadline(long expiresAt, Deadline previous) {
+        this.expiresAt = expiresAt;
+        this.previous = previous;
+        this.thread = Thread.currentThread();
+    }
+
+    /**
+     * Starts a deadline for the calls made on the current thread until it is closed.
+     *
+     * @param timeout the time allowed
+     * @param unit the unit of timeout
+     * @return Deadline
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        Deadline previous = CURRENT.get();
+        long expiresAt = System.nanoTime() + unit.toNanos(timeout);
+        if (previous != null && previous.expiresAt - expiresAt < 0) {
+            expiresAt = previous.expiresAt;
+        }
+        Deadline deadline = new Deadline(expiresAt, previous);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Applies the deadline of another thread, e.g. one that handed its work to this thread, until it is closed.
+     *
+     * @param deadline the deadline, may be null
+     * @return a Deadline to close, or null if none was given
+     */
+    static Deadline resume(Deadline deadline) {
+        if (deadline == null) {
+            return null;
+        }
+        Deadline previous = CURRENT.get();
+        Deadline resumed = new Deadline(previous != null && previous.expiresAt - deadline.expiresAt < 0
+                ? previous.expiresAt : deadline.expiresAt, previous);
+        CURRENT.set(resumed);
+        return resumed;
+    }
+
+    /**
+     * @return the deadline of the current thread, or null if none applies
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param unit the unit of the result
+     * @return the time left, negative once expired
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(this.expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the time is up
+     */
+    public boolean isExpired() {
+        return this.expiresAt - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Ends the deadline, restoring the one it was started in.
+     */
+    public void close() {
+        if (Thread.currentThread() == this.thread && CURRENT.get() == this) {
+            if (this.previous != null) {
+                CURRENT.set(this.previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Throws an EPLiteTimeoutException if the deadline of the current thread has expired.
+     */
+    static void check() {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new EPLiteTimeoutException("The deadline of the call expired");
+        }
+    }
+
+    /**
+     * Returns the timeout to use for one blocking step, e.g. connecting, bounded by the deadline of the current thread.
+     *
+     * @param timeoutMillis the configured timeout, or 0 for none
+     * @return the timeout in milliseconds, at least 1, or 0 for none
+     * @throws EPLiteTimeoutException if the deadline has expired
+     */
+    static int timeoutMillis(int timeoutMillis) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return timeoutMillis;
+        }
+        long remaining = deadline.remaining(TimeUnit.MILLISECONDS);
+        if (remaining <= 0) {
+            throw new EPLiteTimeoutException("The deadline of the call expired");
+        }
+        if (timeoutMillis > 0 && timeoutMillis < remaining) {
+            return timeoutMillis;
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+}
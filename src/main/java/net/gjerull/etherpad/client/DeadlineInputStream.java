@@ -0,0 +1,47 @@
+package net.gjerull.etherpad.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+/**
+ * A response body that stops being readable once the {@link Deadline} it was opened under has expired.<br />
+ * <br />
+ * The read timeout bounds each wait for data; this bounds a body that keeps arriving too slowly.
+ */
+final class DeadlineInputStream extends FilterInputStream {
+    private final Deadline deadline;
+
+    private DeadlineInputStream(InputStream in, Deadline deadline) {
+        super(in);
+        this.deadline = deadline;
+    }
+
+    /**
+     * @param in the response body
+     * @return the body bounded by the deadline of the current thread, or the body itself if none applies
+     */
+    static InputStream of(InputStream in) {
+        Deadline deadline = Deadline.current();
+        return deadline != null ? new DeadlineInputStream(in, deadline) : in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        this.check();
+        return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        this.check();
+        return super.read(b, off, len);
+    }
+
+    private void check() throws SocketTimeoutException {
+        if (this.deadline.isExpired()) {
+            throw new SocketTimeoutException("The deadline of the call expired while reading the response");
+        }
+    }
+}
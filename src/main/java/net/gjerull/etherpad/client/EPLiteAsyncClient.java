@@ -0,0 +1,1033 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A non-blocking client for talking to Etherpad Lite's HTTP JSON API.<br />
+ * <br />
+ * Every method of {@link EPLiteClient} has a twin here returning a {@link CompletableFuture}. Requests are
+ * sent through {@link java.net.http.HttpClient}, so no thread is parked while a call is in flight. Failed
+ * futures complete with an {@link EPLiteException}.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * EPLiteAsyncClient api = new EPLiteAsyncClient("http://etherpad.mysite.com", "FJ7jksalksdfj83jsdflkj");<br />
+ * api.getText("my_pad").thenAccept(pad -&gt; System.out.println(pad.get("text")));
+ * </code>
+ */
+public class EPLiteAsyncClient {
+    private final EPLiteConnection connection;
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteAsyncClient object.
+     * The default Etherpad Lite API version (in EPLiteClient.DEFAULT_API_VERSION) will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     */
+    public EPLiteAsyncClient(String url, String apiKey) {
+        this.connection = new EPLiteConnection(url, apiKey, EPLiteClient.DEFAULT_API_VERSION,
+                EPLiteClient.DEFAULT_ENCODING);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteAsyncClient object.
+     * The specified Etherpad Lite API version will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     */
+    public EPLiteAsyncClient(String url, String apiKey, String apiVersion, String encoding) {
+        this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteAsyncClient object taking the connect and read timeouts
+     * and the TLS settings from the given transport.
+     * The default Etherpad Lite API version (in EPLiteClient.DEFAULT_API_VERSION) will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param transport the transport whose settings the requests use
+     */
+    public EPLiteAsyncClient(String url, String apiKey, Transport transport) {
+        this.connection = new EPLiteConnection(url, apiKey, EPLiteClient.DEFAULT_API_VERSION,
+                EPLiteClient.DEFAULT_ENCODING, transport);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteAsyncClient object taking the connect and read timeouts
+     * and the TLS settings from the given transport.
+     * The specified Etherpad Lite API version will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     * @param transport the transport whose settings the requests use
+     */
+    public EPLiteAsyncClient(String url, String apiKey, String apiVersion, String encoding, Transport transport) {
+        this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding, transport);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteAsyncClient object on top of an existing connection.
+     *
+     * @param connection the connection to the Etherpad Lite instance
+     */
+    public EPLiteAsyncClient(EPLiteConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Sets the policy deciding which failed calls are sent again. Retries wait without blocking a thread.
+     * See {@link RetryPolicy}.
+     *
+     * @param retryPolicy the policy, or null to not retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.connection.setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * Sets the circuit breaker failing calls at once while the instance keeps failing. See {@link CircuitBreaker}.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.connection.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Sets the limiter bounding the calls in flight to the instance. See {@link ConcurrencyLimiter}.
+     *
+     * @param concurrencyLimiter the limiter, or null for no limit
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.connection.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Returns per API method call counts, errors, sizes and latency histograms.
+     *
+     * @return ApiMetrics
+     */
+    public ApiMetrics getMetrics() {
+        return this.connection.getMetrics();
+    }
+
+    // Groups
+    // Pads may belong to a group. These pads are not considered "public", and won't be available through the Web UI without a session.
+
+    /**
+     * Creates a new Group. The group id is returned in "groupID" in the Map.
+     * 
+     * @return Map with groupID
+     */
+    public CompletableFuture<Map> createGroup() {
+        return this.connection.postAsync("createGroup", new HashMap<String, Object>());
+    }
+
+    /**
+     * Creates a new Group for groupMapper if one doesn't already exist. Helps you map your application's groups to Etherpad Lite's groups.
+     * The group id is returned in "groupID" in the Map.
+     * 
+     * @param groupMapper your group mapper string
+     * @return Map with groupID
+     */
+    public CompletableFuture<Map> createGroupIfNotExistsFor(String groupMapper) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupMapper", groupMapper);
+        return this.connection.postAsync("createGroupIfNotExistsFor", args);
+    }
+
+    /**
+     * Delete group.
+     *
+     * @param groupID string
+     */
+    public CompletableFuture<Void> deleteGroup(String groupID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return discard(this.connection.postAsync("deleteGroup", args));
+    }
+
+    /**
+     * List all the padIDs in a group. They will be in an array inside "padIDs".
+     * 
+     * @param groupID string
+     * @return Map
+     */
+    public CompletableFuture<Map> listPads(String groupID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return this.connection.getAsync("listPads", args);
+    }
+
+    /**
+     * Create a pad in this group.
+     * 
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     */
+    public CompletableFuture<Map> createGroupPad(String groupID, String padName) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        args.put("padName", padName);
+        return this.connection.postAsync("createGroupPad", args);
+    }
+
+    /**
+     * Create a pad in this group, with initial text.
+     * 
+     * @param groupID the group the pad belongs to
+     * @param padName name of the pad
+     * @param text Initial text in the pad
+     */
+    public CompletableFuture<Map> createGroupPad(String groupID, String padName, String text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        args.put("padName", padName);
+        args.put("text", text);
+        return this.connection.postAsync("createGroupPad", args);
+    }
+    
+    /**
+     * Lists all existing groups. The group ids are returned in "groupIDs".
+     * 
+     * @return Map with list of groupIDs
+     */
+    public CompletableFuture<Map> listAllGroups() {
+    	return this.connection.getAsync("listAllGroups", new HashMap<String, Object>());
+    }
+
+    // Authors
+    // These authors are bound to the attributes the users choose (color and name).
+    // The author id is returned in "authorID".
+
+    /**
+     * Create a new author.
+     * 
+     * @return Map with authorID
+     */
+    public CompletableFuture<Map> createAuthor() {
+        return this.connection.getAsync("createAuthor", new HashMap<String, Object>());
+    }
+
+    /**
+     * Create a new author with the given name. The author id is returned in "authorID".
+     * 
+     * @param name string
+     * @return Map with authorID
+     */
+    public CompletableFuture<Map> createAuthor(String name) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("name", name);
+        return this.connection.postAsync("createAuthor", args);
+    }
+
+    /**
+     * Creates a new Author for authorMapper if one doesn't already exist.
+     * Helps you map your application's authors to Etherpad Lite's authors.
+     * The author id is returned in "authorID".
+     * 
+     * @param authorMapper string
+     * @return Map with authorID
+     */
+    public CompletableFuture<Map> createAuthorIfNotExistsFor(String authorMapper) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("authorMapper", authorMapper);
+        return this.connection.postAsync("createAuthorIfNotExistsFor", args);
+    }
+
+    /**
+     * Creates a new Author for authorMapper if one doesn't already exist.
+     * Helps you map your application's authors to Etherpad Lite's authors.
+     * The author id is returned in "authorID".
+     * 
+     * @param authorMapper string
+     * @param name string
+     * @return Map with authorID
+     */
+    public CompletableFuture<Map> createAuthorIfNotExistsFor(String authorMapper, String name) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("authorMapper", authorMapper);
+        args.put("name", name);
+        return this.connection.postAsync("createAuthorIfNotExistsFor", args);
+    }
+
+    /**
+     * List the ids of pads the author has edited. They will be in an array inside "padIDs".
+     * 
+     * @param authorId the authors's id string
+     * @return Map
+     */
+    public CompletableFuture<Map> listPadsOfAuthor(String authorId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("authorID", authorId);
+        return this.connection.getAsync("listPadsOfAuthor", args);
+    }
+    
+    /**
+     * Returns the Author Name of the author.
+     * 
+     * @param authorId the author's id string
+     * @return authorName
+     */
+    public CompletableFuture<String> getAuthorName(String authorId) {
+    	Map<String,Object> args = new HashMap<>();
+    	args.put("authorID", authorId);
+    	return this.connection.getObjectAsync("getAuthorName", args).thenApply(String.class::cast);
+    }
+
+    // Sessions
+    // Sessions can be created between a group and an author, see EPLiteClient.
+
+    /**
+     * Create a new session for the given author in the given group, valid until the given UNIX time.
+     *
+     * @param groupID string
+     * @param authorID string
+     * @param validUntil long UNIX timestamp <strong>in seconds</strong>
+     * @return Map with sessionID
+     */
+    public CompletableFuture<Map> createSession(String groupID, String authorID, long validUntil) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        args.put("authorID", authorID);
+        args.put("validUntil", String.valueOf(validUntil));
+        return this.connection.postAsync("createSession", args);
+    }
+
+    /**
+     * Create a new session for the given author in the given group valid for the given number of hours.
+     *
+     * @param groupID string
+     * @param authorID string
+     * @param sessionDuration int duration of session in hours
+     * @return Map with sessionID
+     */
+    public CompletableFuture<Map> createSession(String groupID, String authorID, int sessionDuration) {
+        long inNHours = ((new Date()).getTime() + ((long)sessionDuration * 60L * 60L * 1000L)) / 1000L;
+        return this.createSession(groupID, authorID, inNHours);
+    }
+
+    /**
+     * Create a new session for the given author in the given group, valid until the given datetime.
+     *
+     * @param groupID string
+     * @param authorID string
+     * @param validUntil Date
+     * @return Map with sessionID
+     */
+    public CompletableFuture<Map> createSession(String groupID, String authorID, Date validUntil) {
+        long seconds = validUntil.getTime() / 1000L;
+        return this.createSession(groupID, authorID, seconds);
+    }
+
+    /**
+     * Grants an author access to a group, and to a pad of it, in two round-trips instead of four: the group and
+     * the author are resolved concurrently, then the session is created while the group pad is.<br />
+     * <br />
+     * A pad that already exists is kept. If the pad cannot be created, the session is deleted and the future fails,
+     * a failure to delete the session being added to it as suppressed.<br />
+     * <br />
+     * The mappers are resolved through the API on every call; {@link EPLiteClient#grantPadAccess(String, String,
+     * String, String, long)} resolves them through a {@link MapperCache}.<br />
+     * <br />
+     * Example:<br />
+     * <br />
+     * <code>
+     * long in1Hour = System.currentTimeMillis() / 1000L + 3600L;<br />
+     * api.grantPadAccess("team-42", "user-7", "Alice", "notes", in1Hour)<br />
+     * &nbsp;&nbsp;&nbsp;&nbsp;.thenAccept(grant -&gt; setCookie("sessionID", grant.getSessionID()));
+     * </code>
+     *
+     * @param groupMapper your group mapper string
+     * @param authorMapper your author mapper string
+     * @param authorName the author's name, or null
+     * @param padName the name of the group pad to create if missing, or null for no pad
+     * @param validUntil long UNIX timestamp <strong>in seconds</strong>
+     * @return a future completed with the session, group, author and pad ids
+     */
+    public CompletableFuture<PadAccessGrant> grantPadAccess(String groupMapper, String authorMapper, String authorName,
+            final String padName, final long validUntil) {
+        final CompletableFuture<String> group = this.createGroupIfNotExistsFor(groupMapper)
+                .thenApply(response -> ResultFields.string(response, "groupID"));
+        final CompletableFuture<String> author = (authorName != null
+                ? this.createAuthorIfNotExistsFor(authorMapper, authorName)
+                : this.createAuthorIfNotExistsFor(authorMapper))
+                .thenApply(response -> ResultFields.string(response, "authorID"));
+        CompletableFuture<String> session = group.thenCompose(groupID -> author.thenCompose(authorID ->
+                this.createSession(groupID, authorID, validUntil)))
+                .thenApply(response -> ResultFields.string(response, "sessionID"));
+        final CompletableFuture<String> pad = padName == null ? CompletableFuture.completedFuture(null)
+                : group.thenCompose(groupID -> this.createGroupPad(groupID, padName).handle((response, failure) -> {
+                    if (failure != null && !padExists(failure)) {
+                        throw failure instanceof CompletionException
+                                ? (CompletionException) failure : new CompletionException(failure);
+                    }
+                    return groupID + "$" + padName;
+                }));
+        return session.thenCompose(sessionID -> pad.handle((padID, failure) -> {
+            if (failure == null) {
+                return CompletableFuture.completedFuture(new PadAccessGrant(sessionID, group.join(), author.join(),
+                        padID, validUntil));
+            }
+            final Throwable cause = unwrap(failure);
+            return this.deleteSession(sessionID).<PadAccessGrant>handle((deleted, cleanup) -> {
+                if (cleanup != null) {
+                    cause.addSuppressed(unwrap(cleanup));
+                }
+                throw new CompletionException(cause);
+            });
+        }).thenCompose(grant -> grant));
+    }
+
+    /**
+     * @return true if createGroupPad failed because the pad exists
+     */
+    private static boolean padExists(Throwable failure) {
+        return EPLiteClient.padExists(unwrap(failure));
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Delete a session.
+     * 
+     * @param sessionID string
+     */
+    public CompletableFuture<Void> deleteSession(String sessionID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("sessionID", sessionID);
+        return discard(this.connection.postAsync("deleteSession", args));
+    }
+
+    /**
+     * Returns information about a session: authorID, groupID and validUntil.
+     * 
+     * @param sessionID string
+     * @return Map
+     */
+    public CompletableFuture<Map> getSessionInfo(String sessionID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("sessionID", sessionID);
+        return this.connection.getAsync("getSessionInfo", args);
+    }
+
+    /**
+     * List all the sessions IDs in a group. Returned as a Map of sessionIDs keys, with values of Maps containing
+     * groupID, authorID, and validUntil.
+     * 
+     * @param groupID string
+     * @return Map
+     */
+    public CompletableFuture<Map> listSessionsOfGroup(String groupID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return this.connection.getAsync("listSessionsOfGroup", args);
+    }
+
+    /**
+     * List all the sessions IDs belonging to an author. Returned as a Map of sessionIDs keys, with values of Maps containing
+     * groupID, authorID, and validUntil.
+     * 
+     * @param authorID string
+     * @return Map
+     */
+    public CompletableFuture<Map> listSessionsOfAuthor(String authorID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("authorID", authorID);
+        return this.connection.getAsync("listSessionsOfAuthor", args);
+    }
+
+    // Pad content
+
+    /**
+     * Returns a Map containing the latest revision of the pad's text.
+     * The text is stored under "text".
+     * 
+     * @param padId the pad's id string
+     * @return a Map with the text content of pad
+     */
+    public CompletableFuture<Map> getText(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getText", args);
+    }
+
+    /**
+     * Returns a Map containing the a specific revision of the pad's text.
+     * The text is stored under "text".
+     * 
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @return a Map with the text content of pad in given revision
+     */
+    public CompletableFuture<Map> getText(String padId, long rev) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return this.connection.getAsync("getText", args);
+    }
+
+    /**
+     * Creates a new revision with the given text.
+     * 
+     * @param padId the pad's id string
+     * @param text the pad's new text
+     */
+    public CompletableFuture<Void> setText(String padId, String text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("text", text);
+        return discard(this.connection.postAsync("setText", args));
+    }
+
+    /**
+     * Creates a new revision with the given text appended to the existing text.
+     *
+     * API >= 1.2.13
+     *
+     * @param padId the pad's id string
+     * @param text the pad's new text
+     */
+    public CompletableFuture<Void> appendText(String padId, String text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("text", text);
+        return discard(this.connection.postAsync("appendText", args));
+    }
+
+    /**
+     * Returns a Map containing the current revision of the pad's text as HTML.
+     * The html is stored under "html".
+     * 
+     * @param padId the pad's id string
+     * @return a Map with the HTML content of pad
+     */
+    public CompletableFuture<Map> getHTML(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getHTML", args);
+    }
+
+    /**
+     * Returns a Map containing the a specific revision of the pad's text as HTML.
+     * The html is stored under "html".
+     * 
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @return a Map with the HTML content of pad in given revision
+     */
+    public CompletableFuture<Map> getHTML(String padId, long rev) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return this.connection.getAsync("getHTML", args);
+    }
+
+    /**
+     * Creates a new revision with the given html.
+     * 
+     * @param padId the pad's id string
+     * @param html the pad's new html text
+     */
+    public CompletableFuture<Void> setHTML(String padId, String html) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("html", html);
+        return discard(this.connection.postAsync("setHTML", args));
+    }
+
+    /**
+     * Returns the attribute pool of a pad
+     *
+     * API >= 1.2.8
+     *
+     * @param padId the pad's id string
+     * @return a Map with the attribute pool of a pad
+     */
+    public CompletableFuture<Map> getAttributePool(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getAttributePool", args);
+    }
+
+    /**
+     * Get the changeset at the last revision.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId the pad's id string
+     * @return the changeset at the last revision.
+     */
+    public CompletableFuture<String> getRevisionChangeset(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getObjectAsync("getRevisionChangeset", args).thenApply(String.class::cast);
+    }
+
+    /**
+     * Get the changeset at a given revision.
+     *
+     * API >= 1.2.8
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @return the changeset at a given revision.
+     */
+    public CompletableFuture<String> getRevisionChangeset(String padId, long rev) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return this.connection.getObjectAsync("getRevisionChangeset", args).thenApply(String.class::cast);
+    }
+
+    /**
+     * Returns an object of diffs from 2 points in a pad
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @param startRev the start revision number
+     * @param endRev the end revision number
+     * @return a Map of diffs from 2 points in a pad
+     */
+    public CompletableFuture<Map> createDiffHTML(String padId, long startRev, long endRev) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("startRev", startRev);
+        args.put("endRev", endRev);
+        return this.connection.getAsync("createDiffHTML", args);
+    }
+
+    // Chat
+
+    /**
+     * Returns the complete chat history of pad
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @return the whole chat histroy
+     */
+    public CompletableFuture<Map> getChatHistory(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getChatHistory", args);
+    }
+
+    /**
+     * Returns the chat history of pad with index between start and end
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @param start the start index
+     * @param end the end index
+     * @return a part of the chat history, between start and end
+     */
+    public CompletableFuture<Map> getChatHistory(String padId, long start, long end) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("start", start);
+        args.put("end", end);
+        return this.connection.getAsync("getChatHistory", args);
+    }
+
+    /**
+     * Returns the chatHead (last number of the last chat-message) of the pad
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @return the last number of the last chat-message
+     */
+    public CompletableFuture<Map> getChatHead(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getChatHead", args);
+    }
+
+    /**
+     * Creates a chat message, saves it to the database and sends it to all
+     * connected clients of this pad, using the current time as timestamp.
+     *
+     * API >= 1.2.12
+     *
+     * @param padId the pad's id string
+     * @param text  the text of this chat entry
+     * @param authorId the author of this chat entry
+     */
+    public CompletableFuture<Map> appendChatMessage(String padId, String text, String authorId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("text", text);
+        args.put("authorID", authorId);
+        return this.connection.postAsync("appendChatMessage", args);
+    }
+
+    /**
+     * Creates a chat message, saves it to the database and sends it to all
+     * connected clients of this pad.
+     *
+     * API >= 1.2.12
+     *
+     * @param padId the pad's id string
+     * @param text  the text of this chat entry
+     * @param authorId the author of this chat entry
+     * @param time the timestamp of this chat entry
+     */
+    public CompletableFuture<Map> appendChatMessage(String padId, String text, String authorId,  long time) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("text", text);
+        args.put("authorID", authorId);
+        args.put("time", time);
+        return this.connection.postAsync("appendChatMessage", args);
+    }
+
+    // Pads
+    // Group pads are normal pads, but with the name schema GROUPID$PADNAME. A security manager controls access of them and its 
+    // forbidden for normal pads to include a $ in the name.
+
+    /**
+     * Returns a list of all pads.
+     *
+     * @return a Map with list of pad id's
+     */
+    public CompletableFuture<Map> listAllPads() {
+        return this.connection.getAsync("listAllPads", new HashMap<String, Object>());
+    }
+
+    /**
+     * Create a new pad.
+     * 
+     * @param padId the pad's id string
+     */
+    public CompletableFuture<Void> createPad(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return discard(this.connection.postAsync("createPad", args));
+    }
+
+    /**
+     * Create a new pad with the given initial text.
+     * 
+     * @param padId the pad's id string
+     * @param text the initial text string
+     */
+    public CompletableFuture<Void> createPad(String padId, String text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("text", text);
+        return discard(this.connection.postAsync("createPad", args));
+    }
+
+    /**
+     * Returns the number of revisions of this pad. The number is in "revisions".
+     * 
+     * @param padId the pad's id string
+     * @return a Map with the number of revisions
+     */
+    public CompletableFuture<Map> getRevisionsCount(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getRevisionsCount", args);
+    }
+
+    /**
+     * Returns the number of saved revisions of this pad
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     * @return a Map with number of saved revisions
+     */
+    public CompletableFuture<Map> getSavedRevisionsCount(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getSavedRevisionsCount", args);
+    }
+
+    /**
+     * returns the list of saved revisions of this pad
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     * @return a Map with the list of saved revision numbers
+     */
+    public CompletableFuture<Map> listSavedRevisions(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("listSavedRevisions", args);
+    }
+
+    /**
+     * Saves the latest revision
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     */
+    public CompletableFuture<Void> saveRevision(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return discard(this.connection.postAsync("saveRevision", args));
+    }
+
+    /**
+     * Saves the given revision
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     * @param rev the revision to be saved
+     */
+    public CompletableFuture<Void> saveRevision(String padId, long rev) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return discard(this.connection.postAsync("saveRevision", args));
+    }
+
+    /**
+     * Get the number of users currently editing a pad.
+     *
+     * @param padId the pad's id string
+     * @return a Map with the padUsersCount
+     */
+    public CompletableFuture<Map> padUsersCount(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("padUsersCount", args);
+    }
+
+    /**
+     * Returns the list of users that are currently editing this pad.
+     * A padUser has the values: "colorId", "name" and "timestamp".
+     *
+     * @param padId the pad's id string
+     * @return a Map with a List of pad user maps
+     */
+    public CompletableFuture<Map> padUsers(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("padUsers", args);
+    }
+
+    /**
+     * Deletes a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public CompletableFuture<Void> deletePad(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return discard(this.connection.postAsync("deletePad", args));
+    }
+
+    /**
+     * Copies a pad with full history and chat. If the destination exists the copy will fail.
+     *
+     * API >= 1.2.8
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     */
+    public CompletableFuture<Void> copyPad(String sourcePadId, String destinationPadId) {
+        return copyPad(sourcePadId, destinationPadId, false);
+    }
+
+    /**
+     * Copies a pad with full history and chat.
+     *
+     * API >= 1.2.8
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public CompletableFuture<Void> copyPad(String sourcePadId, String destinationPadId, boolean force) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("sourceID", sourcePadId);
+        args.put("destinationID", destinationPadId);
+        args.put("force", force);
+        return discard(this.connection.postAsync("copyPad", args));
+    }
+
+    /**
+     * Moves a pad. If the destination exists the copy will fail.
+     *
+     * API >= 1.2.8
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     */
+    public CompletableFuture<Void> movePad(String sourcePadId, String destinationPadId) {
+        return movePad(sourcePadId, destinationPadId, false);
+    }
+
+    /**
+     * Moves a pad.
+     *
+     * API >= 1.2.8
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public CompletableFuture<Void> movePad(String sourcePadId, String destinationPadId, boolean force) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("sourceID", sourcePadId);
+        args.put("destinationID", destinationPadId);
+        args.put("force", force);
+        return discard(this.connection.postAsync("movePad", args));
+    }
+
+    /**
+     * Get the pad's read-only id.
+     *
+     * @param padId the pad's id string
+     * @return a Map with the readOnlyID
+     */
+    public CompletableFuture<Map> getReadOnlyID(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getReadOnlyID", args);
+    }
+
+    /**
+     * Get the pad's id from the read only id
+     *
+     * API >= 1.2.10
+     *
+     * @param readOnlyPadId the pad's read only id string
+     * @return a Map with the padID
+     */
+    public CompletableFuture<Map> getPadID(String readOnlyPadId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("roID", readOnlyPadId);
+        return this.connection.getAsync("getPadID", args);
+    }
+
+    /**
+     * Sets the pad's public status.
+     * This is only applicable to group pads.
+     *
+     * @param padId the pad's id string
+     * @param publicStatus boolean
+     */
+    public CompletableFuture<Void> setPublicStatus(String padId, Boolean publicStatus) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("publicStatus", publicStatus);
+        return discard(this.connection.postAsync("setPublicStatus", args));
+    }
+
+    /**
+     * Gets the pad's public status.
+     *
+     * @param padId the pad's id string
+     * @return a Map with the Boolean publicStatus
+     */
+    public CompletableFuture<Map> getPublicStatus(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getPublicStatus", args);
+    }
+
+    /**
+     * Sets the pad's password. This is only applicable to group pads.
+     *
+     * @param padId the pad's id string
+     * @param password string
+     */
+    public CompletableFuture<Void> setPassword(String padId, String password) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("password", password);
+        return discard(this.connection.postAsync("setPassword", args));
+    }
+
+    /**
+     * Checks whether the pad is password-protected or not.
+     *
+     * @param padId the pad's id string
+     * @return a Map with the Boolean passwordProtection
+     */
+    public CompletableFuture<Map> isPasswordProtected(String padId) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("isPasswordProtected", args);
+    }
+
+    /**
+     * List the ids of authors who have edited a pad.
+     *
+     * @param padId the pad's id string
+     * @return a Map with a List of author ids
+     */
+    public CompletableFuture<Map> listAuthorsOfPad(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("listAuthorsOfPad", args);
+    }
+
+    /**
+     * Get the pad's last edit date.
+     *
+     * @param padId the pad's id string
+     * @return a Map with lastEdited timestamp.
+     */
+    public CompletableFuture<Map> getLastEdited(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return this.connection.getAsync("getLastEdited", args);
+    }
+
+    /**
+     * Sends a custom message of type msg to the pad.
+     * 
+     * @param padId the pad's id string
+     * @param msg the message to send
+     */
+    public CompletableFuture<Void> sendClientsMessage(String padId, String msg) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("msg", msg);
+        return discard(this.connection.postAsync("sendClientsMessage", args));
+    }
+
+    /**
+     * Runs without error if current api token is valid
+     *
+     * API >= 1.2
+     */
+    public CompletableFuture<Void> checkToken() {
+        return discard(this.connection.getAsync("checkToken", new HashMap<String, Object>()));
+    }
+
+    /**
+     * Returns true if the connection is using SSL/TLS, false if not.
+     *
+     * @return boolean
+     */
+    public boolean isSecure() {
+        return (this.connection.uri.getPort() == 443);
+    }
+
+    private static CompletableFuture<Void> discard(CompletableFuture<?> future) {
+        return future.thenApply(result -> (Void) null);
+    }
+}
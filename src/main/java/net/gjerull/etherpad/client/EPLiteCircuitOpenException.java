@@ -0,0 +1,21 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Thrown without contacting Etherpad Lite when the {@link CircuitBreaker} of the endpoint, or of the API method,
+ * is open after too many failures.
+ */
+public class EPLiteCircuitOpenException extends EPLiteException {
+    private final String circuit;
+
+    public EPLiteCircuitOpenException(String message, String circuit) {
+        super(message);
+        this.circuit = circuit;
+    }
+
+    /**
+     * @return the name of the open circuit: the endpoint, followed by the API method for per-method circuits
+     */
+    public String getCircuit() {
+        return this.circuit;
+    }
+}
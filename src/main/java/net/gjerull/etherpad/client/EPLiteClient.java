@@ -1,5 +1,13 @@
 package net.gjerull.etherpad.client;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,9 +24,11 @@ import java.util.Map;
  * </code>
  */
 public class EPLiteClient {
-    private static final String DEFAULT_API_VERSION = "1.2.13";
-    private static final String DEFAULT_ENCODING = "UTF-8";
+    static final String DEFAULT_API_VERSION = "1.2.13";
+    static final String DEFAULT_ENCODING = "UTF-8";
     private final EPLiteConnection connection;
+    private volatile RevisionCache revisionCache;
+    private volatile MapperCache mapperCache;
 
     /**
      * Initializes a new net.gjerull.etherpad.client.EPLiteClient object.
@@ -43,6 +53,129 @@ public class EPLiteClient {
         this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding);
     }
 
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteClient object sending requests through the given transport.
+     * The default Etherpad Lite API version (in DEFAULT_API_VERSION) will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param transport the transport used to send requests, e.g. a {@link PooledTransport}
+     */
+    public EPLiteClient(String url, String apiKey, Transport transport) {
+        this.connection = new EPLiteConnection(url, apiKey, DEFAULT_API_VERSION, DEFAULT_ENCODING, transport);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteClient object sending requests through the given transport.
+     * The specified Etherpad Lite API version will be used.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     * @param transport the transport used to send requests, e.g. a {@link PooledTransport}
+     */
+    public EPLiteClient(String url, String apiKey, String apiVersion, String encoding, Transport transport) {
+        this.connection = new EPLiteConnection(url, apiKey, apiVersion, encoding, transport);
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteClient object on top of an existing connection,
+     * e.g. a {@link FailoverConnection}.
+     *
+     * @param connection the connection to the Etherpad Lite instance
+     */
+    public EPLiteClient(EPLiteConnection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Caches the content of specific revisions returned by getText(padId, rev), getHTML(padId, rev),
+     * getRevisionChangeset(padId, rev) and createDiffHTML. Maps returned from the cache are unmodifiable.
+     *
+     * @param revisionCache the cache, or null to disable caching
+     */
+    public void setRevisionCache(RevisionCache revisionCache) {
+        this.revisionCache = revisionCache;
+    }
+
+    /**
+     * @return the revision cache, or null if caching is disabled
+     */
+    public RevisionCache getRevisionCache() {
+        return this.revisionCache;
+    }
+
+    /**
+     * Caches the ids returned by createAuthorIfNotExistsFor and createGroupIfNotExistsFor, which only change for
+     * a mapper when its group is deleted. deleteGroup drops the group's mappings from the cache.
+     *
+     * @param mapperCache the cache, or null to disable caching
+     */
+    public void setMapperCache(MapperCache mapperCache) {
+        this.mapperCache = mapperCache;
+    }
+
+    /**
+     * @return the mapper cache, or null if caching is disabled
+     */
+    public MapperCache getMapperCache() {
+        return this.mapperCache;
+    }
+
+    /**
+     * Enables or disables sharing of identical read calls, such as getText for the same pad, that are
+     * in flight at the same time. Maps returned by the shared calls are unmodifiable.
+     * See {@link EPLiteConnection#setCoalescing(boolean)}.
+     *
+     * @param coalescing true to share identical read calls
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.connection.setCoalescing(coalescing);
+    }
+
+    /**
+     * @return the number of read calls answered by sharing an identical call in flight
+     */
+    public long getCoalescedCount() {
+        return this.connection.getCoalescedCount();
+    }
+
+    /**
+     * Sets the policy deciding which failed calls are sent again. See {@link RetryPolicy}.
+     *
+     * @param retryPolicy the policy, or null to not retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.connection.setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * Sets the circuit breaker failing calls at once while the instance keeps failing. See {@link CircuitBreaker}.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.connection.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Sets the limiter bounding the calls in flight to the instance. See {@link ConcurrencyLimiter}.
+     *
+     * @param concurrencyLimiter the limiter, or null for no limit
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.connection.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Returns per API method call counts, errors, sizes and latency histograms.
+     *
+     * @return ApiMetrics
+     */
+    public ApiMetrics getMetrics() {
+        return this.connection.getMetrics();
+    }
+
     // Groups
     // Pads may belong to a group. These pads are not considered "public", and won't be available through the Web UI without a session.
 
@@ -65,11 +198,12 @@ public class EPLiteClient {
     public Map createGroupIfNotExistsFor(String groupMapper) {
         Map<String,Object> args = new HashMap<>();
         args.put("groupMapper", groupMapper);
-        return this.connection.post("createGroupIfNotExistsFor", args);
+        return this.mapped(MapperCache.GROUP, groupMapper, "groupID", "createGroupIfNotExistsFor", args);
     }
 
     /**
-     * Delete group.
+     * Delete group. With a {@link MapperCache}, the mappers of the group are dropped from the cache, since
+     * createGroupIfNotExistsFor maps them to a new group afterwards.
      *
      * @param groupID string
      */
@@ -77,6 +211,10 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("groupID", groupID);
         this.connection.post("deleteGroup", args);
+        MapperCache cache = this.mapperCache;
+        if (cache != null) {
+            cache.forget(MapperCache.GROUP, groupID);
+        }
     }
 
     /**
@@ -91,6 +229,18 @@ public class EPLiteClient {
         return this.connection.get("listPads", args);
     }
 
+    /**
+     * List all the padIDs in a group, decoding only the pad ids.
+     *
+     * @param groupID string
+     * @return PadList
+     */
+    public PadList listPadIDs(String groupID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("groupID", groupID);
+        return PadList.from(this.connection.getObject("listPads", args, PadList.FIELDS));
+    }
+
     /**
      * Create a pad in this group.
      * 
@@ -164,13 +314,15 @@ public class EPLiteClient {
     public Map createAuthorIfNotExistsFor(String authorMapper) {
         Map<String,Object> args = new HashMap<>();
         args.put("authorMapper", authorMapper);
-        return this.connection.post("createAuthorIfNotExistsFor", args);
+        return this.mapped(MapperCache.AUTHOR, authorMapper, "authorID", "createAuthorIfNotExistsFor", args);
     }
 
     /**
      * Creates a new Author for authorMapper if one doesn't already exist.
      * Helps you map your application's authors to Etherpad Lite's authors.
-     * The author id is returned in "authorID".
+     * The author id is returned in "authorID". With a {@link MapperCache}, the name is only set when the
+     * author is first resolved, and concurrent calls for the same authorMapper share one call, sending the name
+     * of the first of them only.
      * 
      * @param authorMapper string
      * @param name string
@@ -180,7 +332,7 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("authorMapper", authorMapper);
         args.put("name", name);
-        return this.connection.post("createAuthorIfNotExistsFor", args);
+        return this.mapped(MapperCache.AUTHOR, authorMapper, "authorID", "createAuthorIfNotExistsFor", args);
     }
 
     /**
@@ -194,6 +346,18 @@ public class EPLiteClient {
         args.put("authorID", authorId);
         return this.connection.get("listPadsOfAuthor", args);
     }
+
+    /**
+     * List the ids of pads the author has contributed to, decoding only the pad ids.
+     *
+     * @param authorId the author's id string
+     * @return PadList
+     */
+    public PadList listPadIDsOfAuthor(String authorId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("authorID", authorId);
+        return PadList.from(this.connection.getObject("listPadsOfAuthor", args, PadList.FIELDS));
+    }
     
     /**
      * Returns the Author Name of the author.
@@ -286,6 +450,58 @@ public class EPLiteClient {
         return this.createSession(groupID, authorID, seconds);
     }
 
+    /**
+     * Grants an author access to a group, and to a pad of it. With a {@link MapperCache}, the group and the author
+     * are usually resolved without a call, leaving createGroupPad and createSession.<br />
+     * <br />
+     * A pad that already exists is kept. The pad is created before the session, so no session is left behind if
+     * it cannot be.<br />
+     * <br />
+     * Example:<br />
+     * <br />
+     * <code>
+     * long in1Hour = System.currentTimeMillis() / 1000L + 3600L;<br />
+     * PadAccessGrant grant = api.grantPadAccess("team-42", "user-7", "Alice", "notes", in1Hour);<br />
+     * setCookie("sessionID", grant.getSessionID());
+     * </code>
+     *
+     * @param groupMapper your group mapper string
+     * @param authorMapper your author mapper string
+     * @param authorName the author's name, or null
+     * @param padName the name of the group pad to create if missing, or null for no pad
+     * @param validUntil long UNIX timestamp <strong>in seconds</strong>
+     * @return the session, group, author and pad ids
+     */
+    public PadAccessGrant grantPadAccess(String groupMapper, String authorMapper, String authorName, String padName,
+            long validUntil) {
+        String groupID = ResultFields.string(this.createGroupIfNotExistsFor(groupMapper), "groupID");
+        String authorID = ResultFields.string(authorName != null
+                ? this.createAuthorIfNotExistsFor(authorMapper, authorName)
+                : this.createAuthorIfNotExistsFor(authorMapper), "authorID");
+        String padID = null;
+        if (padName != null) {
+            try {
+                this.createGroupPad(groupID, padName);
+            } catch (EPLiteException e) {
+                if (!padExists(e)) {
+                    throw e;
+                }
+            }
+            padID = groupID + "$" + padName;
+        }
+        String sessionID = ResultFields.string(this.createSession(groupID, authorID, validUntil), "sessionID");
+        return new PadAccessGrant(sessionID, groupID, authorID, padID, validUntil);
+    }
+
+    /**
+     * @return true if createGroupPad failed because the pad exists
+     */
+    static boolean padExists(Throwable failure) {
+        return failure instanceof EPLiteException
+                && ((EPLiteException) failure).getCode() == EPLiteConnection.CODE_INVALID_PARAMETERS
+                && String.valueOf(failure.getMessage()).contains("already exist");
+    }
+
     /**
      * Delete a session.
      * 
@@ -309,6 +525,18 @@ public class EPLiteClient {
         return this.connection.get("getSessionInfo", args);
     }
 
+    /**
+     * Returns information about a session, with validUntil decoded as a number.
+     *
+     * @param sessionID string
+     * @return SessionInfo
+     */
+    public SessionInfo getSession(String sessionID) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("sessionID", sessionID);
+        return SessionInfo.from(sessionID, this.connection.getObject("getSessionInfo", args, SessionInfo.FIELDS));
+    }
+
     /**
      * List all the sessions IDs in a group. Returned as a Map of sessionIDs keys, with values of Maps containing
      * groupID, authorID, and validUntil.
@@ -362,7 +590,92 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return this.connection.get("getText", args);
+        return (Map) this.getRevision("getText", padId, rev, rev, args);
+    }
+
+    /**
+     * Returns the latest revision of the pad's text, decoding only the text.
+     *
+     * @param padId the pad's id string
+     * @return PadText
+     */
+    public PadText getPadText(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return PadText.from(this.connection.getObject("getText", args, PadText.FIELDS));
+    }
+
+    /**
+     * Returns a specific revision of the pad's text, decoding only the text.
+     * Goes through the revision cache, if one is set.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @return PadText
+     */
+    public PadText getPadText(String padId, long rev) {
+        if (this.revisionCache != null) {
+            return PadText.from(this.getText(padId, rev));
+        }
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return PadText.from(this.connection.getObject("getText", args, PadText.FIELDS));
+    }
+
+    /**
+     * Writes the latest revision of the pad's text to a Writer while the response is read, so that the text is
+     * never held in memory as a whole.
+     *
+     * @param padId the pad's id string
+     * @param out the writer receiving the text, not closed
+     * @return the number of characters written
+     */
+    public long getText(String padId, Writer out) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return Math.max(0L, this.connection.getField("getText", args, "text", out));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text to a Writer while the response is read.
+     * The revision cache is not used.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @param out the writer receiving the text, not closed
+     * @return the number of characters written
+     */
+    public long getText(String padId, long rev, Writer out) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return Math.max(0L, this.connection.getField("getText", args, "text", out));
+    }
+
+    /**
+     * Writes the latest revision of the pad's text to a stream as UTF-8, see {@link #getText(String, Writer)}.
+     *
+     * @param padId the pad's id string
+     * @param out the stream receiving the text, flushed but not closed
+     * @return the number of characters written
+     */
+    public long getText(String padId, OutputStream out) {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        return flush(writer, this.getText(padId, writer));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text to a stream as UTF-8, see {@link #getText(String, long, Writer)}.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @param out the stream receiving the text, flushed but not closed
+     * @return the number of characters written
+     */
+    public long getText(String padId, long rev, OutputStream out) {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        return flush(writer, this.getText(padId, rev, writer));
     }
 
     /**
@@ -378,6 +691,29 @@ public class EPLiteClient {
         this.connection.post("setText", args);
     }
 
+    /**
+     * Creates a new revision with the text read from a Reader. The request body is encoded and sent while the text
+     * is read, so the text is never held in memory as a whole.
+     *
+     * @param padId the pad's id string
+     * @param text the text, read to its end but not closed
+     */
+    public void setText(String padId, Reader text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.postObject("setText", args, "text", text);
+    }
+
+    /**
+     * Creates a new revision with the UTF-8 text read from a stream, see {@link #setText(String, Reader)}.
+     *
+     * @param padId the pad's id string
+     * @param text the UTF-8 encoded text, read to its end but not closed
+     */
+    public void setText(String padId, InputStream text) {
+        this.setText(padId, new InputStreamReader(text, StandardCharsets.UTF_8));
+    }
+
     /**
      * Creates a new revision with the given text appended to the existing text.
      *
@@ -393,6 +729,33 @@ public class EPLiteClient {
         this.connection.post("appendText", args);
     }
 
+    /**
+     * Creates a new revision with the text read from a Reader appended to the existing text.
+     * The text is encoded and sent while it is read.
+     *
+     * API >= 1.2.13
+     *
+     * @param padId the pad's id string
+     * @param text the text to append, read to its end but not closed
+     */
+    public void appendText(String padId, Reader text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.postObject("appendText", args, "text", text);
+    }
+
+    /**
+     * Creates a new revision with the UTF-8 text read from a stream appended to the existing text.
+     *
+     * API >= 1.2.13
+     *
+     * @param padId the pad's id string
+     * @param text the UTF-8 encoded text to append, read to its end but not closed
+     */
+    public void appendText(String padId, InputStream text) {
+        this.appendText(padId, new InputStreamReader(text, StandardCharsets.UTF_8));
+    }
+
     /**
      * Returns a Map containing the current revision of the pad's text as HTML.
      * The html is stored under "html".
@@ -418,7 +781,61 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return this.connection.get("getHTML", args);
+        return (Map) this.getRevision("getHTML", padId, rev, rev, args);
+    }
+
+    /**
+     * Writes the current revision of the pad's text as HTML to a Writer while the response is read.
+     *
+     * @param padId the pad's id string
+     * @param out the writer receiving the HTML, not closed
+     * @return the number of characters written
+     */
+    public long getHTML(String padId, Writer out) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return Math.max(0L, this.connection.getField("getHTML", args, "html", out));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text as HTML to a Writer while the response is read.
+     * The revision cache is not used.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @param out the writer receiving the HTML, not closed
+     * @return the number of characters written
+     */
+    public long getHTML(String padId, long rev, Writer out) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("rev", rev);
+        return Math.max(0L, this.connection.getField("getHTML", args, "html", out));
+    }
+
+    /**
+     * Writes the current revision of the pad's text as HTML to a stream as UTF-8.
+     *
+     * @param padId the pad's id string
+     * @param out the stream receiving the HTML, flushed but not closed
+     * @return the number of characters written
+     */
+    public long getHTML(String padId, OutputStream out) {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        return flush(writer, this.getHTML(padId, writer));
+    }
+
+    /**
+     * Writes a specific revision of the pad's text as HTML to a stream as UTF-8.
+     *
+     * @param padId the pad's id string
+     * @param rev the revision number
+     * @param out the stream receiving the HTML, flushed but not closed
+     * @return the number of characters written
+     */
+    public long getHTML(String padId, long rev, OutputStream out) {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        return flush(writer, this.getHTML(padId, rev, writer));
     }
 
     /**
@@ -434,6 +851,28 @@ public class EPLiteClient {
         this.connection.post("setHTML", args);
     }
 
+    /**
+     * Sets the text of a pad from HTML read from a Reader. The HTML is encoded and sent while it is read.
+     *
+     * @param padId the pad's id string
+     * @param html the HTML, read to its end but not closed
+     */
+    public void setHTML(String padId, Reader html) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.postObject("setHTML", args, "html", html);
+    }
+
+    /**
+     * Sets the text of a pad from UTF-8 HTML read from a stream, see {@link #setHTML(String, Reader)}.
+     *
+     * @param padId the pad's id string
+     * @param html the UTF-8 encoded HTML, read to its end but not closed
+     */
+    public void setHTML(String padId, InputStream html) {
+        this.setHTML(padId, new InputStreamReader(html, StandardCharsets.UTF_8));
+    }
+
     /**
      * Returns the attribute pool of a pad
      *
@@ -475,7 +914,7 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("padID", padId);
         args.put("rev", rev);
-        return (String) this.connection.getObject("getRevisionChangeset", args);
+        return (String) this.getRevision("getRevisionChangeset", padId, rev, rev, args);
     }
 
     /**
@@ -493,7 +932,7 @@ public class EPLiteClient {
         args.put("padID", padId);
         args.put("startRev", startRev);
         args.put("endRev", endRev);
-        return this.connection.get("createDiffHTML", args);
+        return (Map) this.getRevision("createDiffHTML", padId, startRev, endRev, args);
     }
 
     // Chat
@@ -530,6 +969,38 @@ public class EPLiteClient {
         return this.connection.get("getChatHistory", args);
     }
 
+    /**
+     * Returns the complete chat history of pad as typed messages
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @return ChatHistory
+     */
+    public ChatHistory getChatMessages(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return ChatHistory.from(this.connection.getObject("getChatHistory", args, ChatHistory.FIELDS));
+    }
+
+    /**
+     * Returns the chat messages of pad with index between start and end
+     *
+     * API >= 1.2.7
+     *
+     * @param padId the pad's id string
+     * @param start the start index
+     * @param end the end index
+     * @return ChatHistory
+     */
+    public ChatHistory getChatMessages(String padId, long start, long end) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        args.put("start", start);
+        args.put("end", end);
+        return ChatHistory.from(this.connection.getObject("getChatHistory", args, ChatHistory.FIELDS));
+    }
+
     /**
      * Returns the chatHead (last number of the last chat-message) of the pad
      *
@@ -595,6 +1066,15 @@ public class EPLiteClient {
         return this.connection.get("listAllPads");
     }
 
+    /**
+     * Lists all pads on this epl instance, decoding only the pad ids.
+     *
+     * @return PadList
+     */
+    public PadList listAllPadIDs() {
+        return PadList.from(this.connection.getObject("listAllPads", new HashMap<String, Object>(), PadList.FIELDS));
+    }
+
     /**
      * Create a new pad.
      * 
@@ -619,6 +1099,28 @@ public class EPLiteClient {
         this.connection.post("createPad", args);
     }
 
+    /**
+     * Create a new pad with the initial text read from a Reader. The text is encoded and sent while it is read.
+     *
+     * @param padId the pad's id string
+     * @param text the initial text, read to its end but not closed
+     */
+    public void createPad(String padId, Reader text) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        this.connection.postObject("createPad", args, "text", text);
+    }
+
+    /**
+     * Create a new pad with the UTF-8 initial text read from a stream, see {@link #createPad(String, Reader)}.
+     *
+     * @param padId the pad's id string
+     * @param text the UTF-8 encoded initial text, read to its end but not closed
+     */
+    public void createPad(String padId, InputStream text) {
+        this.createPad(padId, new InputStreamReader(text, StandardCharsets.UTF_8));
+    }
+
     /**
      * Returns the number of revisions of this pad. The number is in "revisions".
      * 
@@ -631,6 +1133,19 @@ public class EPLiteClient {
         return this.connection.get("getRevisionsCount", args);
     }
 
+    /**
+     * Returns the number of revisions of this pad as a number.
+     *
+     * @param padId the pad's id string
+     * @return RevisionCount
+     */
+    public RevisionCount countRevisions(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return RevisionCount.from(padId, this.connection.getObject("getRevisionsCount", args, RevisionCount.REVISIONS),
+                RevisionCount.REVISIONS);
+    }
+
     /**
      * Returns the number of saved revisions of this pad
      *
@@ -645,6 +1160,22 @@ public class EPLiteClient {
         return this.connection.get("getSavedRevisionsCount", args);
     }
 
+    /**
+     * Returns the number of saved revisions of this pad as a number.
+     *
+     * API >= 1.2.11
+     *
+     * @param padId the pad's id string
+     * @return RevisionCount
+     */
+    public RevisionCount countSavedRevisions(String padId) {
+        Map<String,Object> args = new HashMap<>();
+        args.put("padID", padId);
+        return RevisionCount.from(padId,
+                this.connection.getObject("getSavedRevisionsCount", args, RevisionCount.SAVED_REVISIONS),
+                RevisionCount.SAVED_REVISIONS);
+    }
+
     /**
      * returns the list of saved revisions of this pad
      *
@@ -721,6 +1252,7 @@ public class EPLiteClient {
         Map<String,Object> args = new HashMap<>();
         args.put("padID", padId);
         this.connection.post("deletePad", args);
+        this.invalidate(padId);
     }
 
     /**
@@ -750,6 +1282,7 @@ public class EPLiteClient {
         args.put("destinationID", destinationPadId);
         args.put("force", force);
         this.connection.post("copyPad", args);
+        this.invalidate(destinationPadId);
     }
 
     /**
@@ -779,6 +1312,8 @@ public class EPLiteClient {
         args.put("destinationID", destinationPadId);
         args.put("force", force);
         this.connection.post("movePad", args);
+        this.invalidate(sourcePadId);
+        this.invalidate(destinationPadId);
     }
 
     /**
@@ -912,4 +1447,58 @@ public class EPLiteClient {
     public boolean isSecure() {
         return (this.connection.uri.getPort() == 443);
     }
+
+    /**
+     * POSTs a createXIfNotExistsFor call through the mapper cache, if one is set.
+     */
+    private Map mapped(char kind, String mapper, final String idField, final String apiMethod,
+            final Map<String,Object> args) {
+        MapperCache cache = this.mapperCache;
+        if (cache == null) {
+            return this.connection.post(apiMethod, args);
+        }
+        String id = cache.resolve(kind, mapper, () -> ResultFields.string(this.connection.post(apiMethod, args), idField));
+        Map<String,Object> response = new HashMap<>();
+        if (id != null) {
+            response.put(idField, id);
+        }
+        return response;
+    }
+
+    /**
+     * GETs revision-pinned content through the revision cache, if one is set.
+     */
+    private Object getRevision(String apiMethod, String padId, long startRev, long endRev, Map<String,Object> args) {
+        RevisionCache cache = this.revisionCache;
+        boolean isMap = !"getRevisionChangeset".equals(apiMethod);
+        if (cache == null) {
+            Object response = this.connection.getObject(apiMethod, args);
+            return (response == null && isMap) ? new HashMap() : response;
+        }
+        Object cached = cache.get(apiMethod, padId, startRev, endRev);
+        if (cached != null) {
+            return cached;
+        }
+        Object response = this.connection.getObject(apiMethod, args);
+        if (response == null) {
+            return isMap ? new HashMap() : null;
+        }
+        return cache.put(apiMethod, padId, startRev, endRev, response);
+    }
+
+    private static long flush(Writer writer, long written) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to write the streamed response (" + e.getClass() + "): " + e.getMessage(), e);
+        }
+        return written;
+    }
+
+    private void invalidate(String padId) {
+        RevisionCache cache = this.revisionCache;
+        if (cache != null) {
+            cache.invalidatePad(padId);
+        }
+    }
 }
@@ -1,19 +1,32 @@
 package net.gjerull.etherpad.client;
 
-import java.io.UnsupportedEncodingException;
+import java.io.FilterOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
 import java.net.*;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-
-import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -48,6 +61,61 @@ public class EPLiteConnection {
      */
     public final String encoding;
 
+    /**
+     * The transport creating the HTTP requests
+     */
+    private final Transport transport;
+
+    /**
+     * The non-blocking HTTP client used by the asynchronous methods, created on first use
+     */
+    private HttpClient httpClient;
+
+    /**
+     * Shares identical read-only GETs in flight between callers, or null if disabled
+     */
+    private volatile SingleFlight<String, Object> singleFlight;
+
+    /**
+     * Decides which failed calls are sent again, or null to not retry
+     */
+    private volatile RetryPolicy retryPolicy;
+
+    /**
+     * Fails calls at once while their endpoint or API method keeps failing, or null
+     */
+    private volatile CircuitBreaker circuitBreaker;
+
+    /**
+     * Bounds the calls in flight to the endpoint, or null
+     */
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * The url of the endpoint, naming its circuits
+     */
+    private final String endpoint;
+
+    /**
+     * Per API method metrics of the calls made
+     */
+    private final ApiMetrics metrics;
+
+    /**
+     * Encodes the arguments, with the apikey encoded once
+     */
+    private final FormEncoder formEncoder;
+
+    /**
+     * The scheme, host, port and path up to the API method, e.g. http://localhost:9001/api/1.2.13/
+     */
+    private final String apiPrefix;
+
+    /**
+     * The URL of each API method called, without a query
+     */
+    private final ConcurrentMap<String, String> methodUrls = new ConcurrentHashMap<>();
+
     /**
      * Initializes a new net.gjerull.etherpad.client.EPLiteConnection object.
      *
@@ -56,13 +124,138 @@ public class EPLiteConnection {
      * @param apiVersion the API version
      */
     public EPLiteConnection(String url, String apiKey, String apiVersion, String encoding) {
+        this(url, apiKey, apiVersion, encoding, new URLConnectionTransport());
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteConnection object using the given transport.
+     *
+     * @param url an absolute url, including protocol, to the EPL api
+     * @param apiKey the API Key
+     * @param apiVersion the API version
+     * @param transport the transport used to send requests, e.g. a {@link PooledTransport}
+     */
+    public EPLiteConnection(String url, String apiKey, String apiVersion, String encoding, Transport transport) {
+        this(url, apiKey, apiVersion, encoding, transport, new ApiMetrics());
+    }
+
+    /**
+     * Initializes a new net.gjerull.etherpad.client.EPLiteConnection object recording into the given metrics,
+     * e.g. metrics shared by the endpoints of a {@link FailoverConnection}.
+     */
+    EPLiteConnection(String url, String apiKey, String apiVersion, String encoding, Transport transport, ApiMetrics metrics) {
         if (url.endsWith("/")) {
             url = url.substring(0, url.length()-1);
         }
         this.uri = URI.create(url);
+        this.endpoint = url;
         this.apiKey = apiKey;
         this.apiVersion = apiVersion;
         this.encoding = encoding;
+        this.transport = transport;
+        this.metrics = metrics;
+        this.formEncoder = new FormEncoder(String.valueOf(apiKey), encoding);
+        StringBuilder prefix = new StringBuilder();
+        if (this.uri.isAbsolute()) {
+            prefix.append(this.uri.getScheme()).append("://").append(this.uri.getHost());
+            if (this.uri.getPort() != -1) {
+                prefix.append(':').append(this.uri.getPort());
+            }
+        }
+        this.apiPrefix = prefix.append(this.uri.getRawPath()).append("/api/").append(apiVersion).append('/').toString();
+    }
+
+    /**
+     * Enables or disables coalescing of identical GETs. While enabled, concurrent calls of the same read-only
+     * API method with the same arguments share one request, and all callers receive the same parsed result.
+     * Maps returned while coalescing is enabled are unmodifiable. Each caller's {@link Deadline} only bounds its
+     * own wait, and interactive callers do not share calls made at {@link Priority#BATCH}.
+     *
+     * @param coalescing true to share identical GETs that are in flight
+     */
+    public synchronized void setCoalescing(boolean coalescing) {
+        if (coalescing && this.singleFlight == null) {
+            this.singleFlight = new SingleFlight<>();
+        } else if (!coalescing) {
+            this.singleFlight = null;
+        }
+    }
+
+    /**
+     * @return true if identical GETs in flight are shared
+     */
+    public boolean isCoalescing() {
+        return this.singleFlight != null;
+    }
+
+    /**
+     * Returns the number of calls that were answered by sharing an identical request already in flight,
+     * since coalescing was enabled.
+     *
+     * @return long
+     */
+    public long getCoalescedCount() {
+        SingleFlight<String, Object> flights = this.singleFlight;
+        return flights != null ? flights.getCoalescedCount() : 0L;
+    }
+
+    /**
+     * Sets the policy deciding which failed calls are sent again. Calls are not retried by default.
+     *
+     * @param retryPolicy the policy, or null to not retry
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return the retry policy, or null if calls are not retried
+     */
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Sets the circuit breaker failing calls at once while the endpoint, or the API method, keeps failing.
+     * Each attempt made under a retry policy passes through the circuit breaker.
+     *
+     * @param circuitBreaker the circuit breaker, possibly shared with other connections, or null for none
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * @return the circuit breaker, or null if there is none
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return this.circuitBreaker;
+    }
+
+    /**
+     * Sets the limiter bounding the calls in flight to the endpoint. Calls over its limit wait, or are rejected.
+     * Each attempt made under a retry policy takes room of its own.
+     *
+     * @param concurrencyLimiter the limiter, only used by this connection, or null for no limit
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * @return the concurrency limiter, or null if calls are not limited
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
+    /**
+     * Returns the metrics of the calls made through this connection, per API method.
+     *
+     * @return ApiMetrics
+     */
+    public ApiMetrics getMetrics() {
+        return this.metrics;
     }
 
     /**
@@ -94,11 +287,51 @@ public class EPLiteConnection {
      * @return Object
      */
     public Object getObject(String apiMethod, Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, false);
-        URL url = apiUrl(path, query);
-        Request request = new GETRequest(url);
-        return this.call(request);
+        return this.getObject(apiMethod, apiArgs, null);
+    }
+
+    /**
+     * GETs from the HTTP JSON API, building only some fields of the data object.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @param dataFields the fields of the data object to build, or null for all
+     * @return Object
+     */
+    Object getObject(String apiMethod, Map<String, Object> apiArgs, Set<String> dataFields) {
+        final URL url = this.methodUrl(apiMethod, this.formEncoder.encode(apiArgs));
+        SingleFlight<String, Object> flights = this.singleFlight;
+        if (flights != null && isReadOnly(apiMethod)) {
+            String key = dataFields == null ? url.toString() : url.toString() + '#' + dataFields;
+            // Every caller receives the same result, so none of them may change it for the others
+            return flights.execute(key,
+                    () -> shared(this.call(apiMethod, true, () -> url.getFile().length(),
+                            this.transport.newGetRequest(url), body -> this.handleResponse(body, dataFields))));
+        }
+        Request request = this.transport.newGetRequest(url);
+        return this.call(apiMethod, true, () -> url.getFile().length(), request, body -> this.handleResponse(body, dataFields));
+    }
+
+    /**
+     * GETs from the HTTP JSON API and copies one string field of the data to a writer while the response is read,
+     * e.g. the text of a large pad. The rest of the data is skipped.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @param field the name of the string field in the data
+     * @param out the writer receiving the decoded value, not closed
+     * @return the number of characters written, or -1 if the data had no such string field
+     */
+    public long getField(String apiMethod, Map<String, Object> apiArgs, final String field, final Writer out) {
+        final URL url = this.methodUrl(apiMethod, this.formEncoder.encode(apiArgs));
+        Request request = this.transport.newGetRequest(url);
+        // Part of the value may have been written when the call fails, so it is not retried
+        return (Long) this.call(apiMethod, false, () -> url.getFile().length(), request, body -> {
+            FieldStreamer streamer = new FieldStreamer(body);
+            streamer.stream(field, out);
+            checkResponse(streamer.isEnvelope(), streamer.getCode(), streamer.getMessage(), null);
+            return streamer.isFound() ? streamer.getWritten() : -1L;
+        });
     }
 
     /**
@@ -142,11 +375,38 @@ public class EPLiteConnection {
      * @return Object
      */
     public Object postObject(String apiMethod, Map<String, Object> apiArgs) {
-        String path = this.apiPath(apiMethod);
-        String query = this.queryString(apiArgs, true);
-        URL url = apiUrl(path, null);
-        Request request = new POSTRequest(url, query);
-        return this.call(request);
+        URL url = this.methodUrl(apiMethod, null);
+        byte[] body = this.formEncoder.encodeBytes(apiArgs);
+        Request request = this.transport.newPostRequest(url, body);
+        return this.call(apiMethod, true, () -> url.getFile().length() + body.length, request,
+                response -> this.handleResponse(response, null));
+    }
+
+    /**
+     * POSTs to the HTTP JSON API, with one argument read from a Reader while the request is sent.
+     * The body is sent with chunked transfer encoding, and the value is never held in memory as a whole.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @param field the name of the streamed argument
+     * @param value the value of the streamed argument, read to its end but not closed
+     * @return Object
+     */
+    public Object postObject(String apiMethod, Map<String, Object> apiArgs, String field, Reader value) {
+        URL url = this.methodUrl(apiMethod, null);
+        final StreamingBody encoded = this.formEncoder.encodeStreaming(apiArgs, field, value);
+        final long[] written = new long[1];
+        Request request = this.transport.newPostRequest(url, out -> {
+            CountingOutputStream counting = new CountingOutputStream(out);
+            try {
+                encoded.writeTo(counting);
+            } finally {
+                written[0] = counting.count;
+            }
+        });
+        // The value cannot be read again, so the call is not retried
+        return this.call(apiMethod, false, () -> url.getFile().length() + written[0], request,
+                response -> this.handleResponse(response, null));
     }
 
     /**
@@ -161,6 +421,62 @@ public class EPLiteConnection {
         return (response != null) ? response : new HashMap();
     }
 
+    /**
+     * GETs from the HTTP JSON API without blocking the calling thread.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return a future completed with the parsed data, or exceptionally with an EPLiteException
+     */
+    public CompletableFuture<Object> getObjectAsync(String apiMethod, Map<String, Object> apiArgs) {
+        URL url = this.methodUrl(apiMethod, this.formEncoder.encode(apiArgs));
+        HttpRequest.Builder request = HttpRequest.newBuilder(toURI(url)).GET();
+        Priority priority = Priority.current();
+        return this.retryAsync(apiMethod, () -> this.callAsync(apiMethod, priority, url.getFile().length(), request),
+                this.retryPolicy, Deadline.current(), 1);
+    }
+
+    /**
+     * GETs from the HTTP JSON API without blocking the calling thread.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return a future completed with the parsed Map, or exceptionally with an EPLiteException
+     */
+    public CompletableFuture<Map> getAsync(String apiMethod, Map<String, Object> apiArgs) {
+        return this.getObjectAsync(apiMethod, apiArgs).thenApply(EPLiteConnection::toMap);
+    }
+
+    /**
+     * POSTs to the HTTP JSON API without blocking the calling thread.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return a future completed with the parsed data, or exceptionally with an EPLiteException
+     */
+    public CompletableFuture<Object> postObjectAsync(String apiMethod, Map<String, Object> apiArgs) {
+        URL url = this.methodUrl(apiMethod, null);
+        byte[] body = this.formEncoder.encodeBytes(apiArgs);
+        HttpRequest.Builder request = HttpRequest.newBuilder(toURI(url))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        Priority priority = Priority.current();
+        return this.retryAsync(apiMethod,
+                () -> this.callAsync(apiMethod, priority, url.getFile().length() + body.length, request),
+                this.retryPolicy, Deadline.current(), 1);
+    }
+
+    /**
+     * POSTs to the HTTP JSON API without blocking the calling thread.
+     *
+     * @param apiMethod the name of the API method to call
+     * @param apiArgs a HashMap of url/form parameters. apikey will be set automatically
+     * @return a future completed with the parsed Map, or exceptionally with an EPLiteException
+     */
+    public CompletableFuture<Map> postAsync(String apiMethod, Map<String, Object> apiArgs) {
+        return this.postObjectAsync(apiMethod, apiArgs).thenApply(EPLiteConnection::toMap);
+    }
+
     /**
      * Handle error condition and returns the parsed content
      *
@@ -169,33 +485,93 @@ public class EPLiteConnection {
      */
     protected Object handleResponse(String jsonString) {
         try {
-            JSONParser parser = new JSONParser();
-            Map response = (Map) parser.parse(jsonString);
-            // Act on the response code
-            if (response.get("code") != null)  {
-                int code = ((Long) response.get("code")).intValue();
-                switch ( code ) {
-                    // Valid code, parse the response
-                    case CODE_OK:
-                        return response.get("data");
-                    // Invalid code, throw an exception with the message
-                    case CODE_INVALID_PARAMETERS:
-                    case CODE_INTERNAL_ERROR:
-                    case CODE_INVALID_METHOD:
-                    case CODE_INVALID_API_KEY:
-                        throw new EPLiteException((String)response.get("message"));
-                    default:
-                        throw new EPLiteException("An unknown error has occurred while handling the response: " + jsonString);
-                }
-            // No response code, something's really wrong
-            } else {
-                throw new EPLiteException("An unexpected response from the server: " + jsonString);
-            }
+            return this.handleResponse(new StringReader(jsonString), jsonString, null);
+        } catch (IOException e) {
+            // Reading from a String does not fail
+            throw new EPLiteException("Unable to read JSON response (" + jsonString + ")", e);
+        }
+    }
+
+    /**
+     * Handle error condition and returns the parsed content, parsing the response while it is read.
+     * The response code is checked as soon as it has been read, and the data of an error response is skipped.
+     *
+     * @param body the response body
+     * @return Object
+     */
+    protected Object handleResponse(Reader body) throws IOException {
+        return this.handleResponse(body, null, null);
+    }
+
+    /**
+     * Handle error condition and returns the parsed content, parsing the response while it is read.
+     * If the data is an object, only the given fields are built and the values of others are skipped.
+     *
+     * @param body the response body
+     * @param dataFields the fields of the data object to build, or null for all
+     * @return Object
+     */
+    protected Object handleResponse(Reader body, Set<String> dataFields) throws IOException {
+        return this.handleResponse(body, null, dataFields);
+    }
+
+    private Object handleResponse(Reader body, String jsonString, Set<String> dataFields) throws IOException {
+        ResponseEnvelopeHandler response = new ResponseEnvelopeHandler(dataFields);
+        try {
+            new JSONParser().parse(body, response);
         } catch (ParseException e) {
-            throw new EPLiteException("Unable to parse JSON response (" + jsonString + ")", e);
+            throw new EPLiteException("Unable to parse JSON response (" + describe(jsonString, e.toString()) + ")", e);
+        }
+        return checkResponse(response.isEnvelope(), response.getCode(), response.getMessage(), jsonString) ? response.getData() : null;
+    }
+
+    /**
+     * Acts on the response code, throwing an EPLiteException for errors.
+     *
+     * @return true if the response is successful
+     */
+    private static boolean checkResponse(boolean envelope, Object codeValue, String message, String jsonString) {
+        if (envelope && codeValue instanceof Number) {
+            int code = ((Number) codeValue).intValue();
+            switch ( code ) {
+                // Valid code, parse the response
+                case CODE_OK:
+                    return true;
+                // Invalid code, throw an exception with the message
+                case CODE_INVALID_PARAMETERS:
+                case CODE_INTERNAL_ERROR:
+                case CODE_INVALID_METHOD:
+                case CODE_INVALID_API_KEY:
+                    throw new EPLiteException(message, code);
+                default:
+                    throw new EPLiteException("An unknown error has occurred while handling the response: "
+                            + describe(jsonString, "code " + code + ", message " + message), code);
+            }
+        // No response code, something's really wrong
+        } else {
+            throw new EPLiteException("An unexpected response from the server: "
+                    + describe(jsonString, "no response code"));
         }
     }
 
+    /**
+     * Returns true for API methods without side effects. Some API methods with side effects, such as
+     * createAuthor, are called with GET and must not be shared.
+     */
+    static boolean isReadOnly(String apiMethod) {
+        return apiMethod.startsWith("get") || apiMethod.startsWith("list") || apiMethod.startsWith("is")
+                || apiMethod.startsWith("pad") || apiMethod.equals("createDiffHTML") || apiMethod.equals("checkToken");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object shared(Object result) {
+        return result instanceof Map ? Collections.unmodifiableMap((Map<Object, Object>) result) : result;
+    }
+
+    private static String describe(String jsonString, String streamed) {
+        return jsonString != null ? jsonString : streamed;
+    }
+
     /**
      * Returns the URL for the api path and query.
      *
@@ -222,96 +598,430 @@ public class EPLiteConnection {
     }
 
     /**
-     * Returns a query string made from HashMap keys and values
+     * Returns the URL of an API method, with the query string already encoded.
+     *
+     * @param apiMethod the api method
+     * @param query the url-encoded query string (may be null)
+     * @return URL
+     */
+    private URL methodUrl(String apiMethod, String query) {
+        String methodUrl = this.methodUrls.computeIfAbsent(apiMethod, method -> this.apiPrefix + method);
+        try {
+            return new URL(query != null ? methodUrl + '?' + query : methodUrl);
+        } catch (MalformedURLException e) {
+            throw new EPLiteException("Error in the URL to the Etherpad Lite instance (" + e.getClass() + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a query string made from HashMap keys and values, starting with the apikey.
+     * The map is not modified.
      *
      * @param apiArgs the api arguments in a HashMap
      * @return String
      */
     protected String queryString(Map<String,Object> apiArgs, boolean urlEncode) {
-        StringBuilder strArgs = new StringBuilder();
-        apiArgs.put("apikey", this.apiKey);
-        Iterator i = apiArgs.entrySet().iterator();
-        while (i.hasNext()) {
-            Map.Entry entry = (Map.Entry)i.next();
-            Object key = entry.getKey();
-            Object value = entry.getValue();
-            if (urlEncode) {
+        if (urlEncode) {
+            return this.formEncoder.encode(apiArgs);
+        }
+        StringBuilder strArgs = new StringBuilder("apikey=").append(this.apiKey);
+        for (Map.Entry<String, Object> entry : apiArgs.entrySet()) {
+            if (!"apikey".equals(entry.getKey())) {
+                strArgs.append('&').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+        }
+        return strArgs.toString();
+    }
+
+    /**
+     * Calls the HTTP JSON API, sending the request again as the retry policy allows.
+     *
+     * @param replayable false if the request cannot be sent twice
+     * @param request the request object to send
+     * @return HashMap
+     */
+    private Object call(String apiMethod, boolean replayable, LongSupplier requestBytes, Request request,
+            ResponseHandler<Object> parser) {
+        RetryPolicy policy = this.retryPolicy;
+        if (policy == null) {
+            return this.attempt(apiMethod, requestBytes, request, parser);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Object result = this.attempt(apiMethod, requestBytes, request, parser);
+                policy.succeeded();
+                return result;
+            } catch (EPLiteException e) {
+                long delay = replayable ? policy.delayBeforeRetry(apiMethod, e, attempt) : -1L;
+                if (delay < 0) {
+                    throw e;
+                }
                 try {
-                    if (key instanceof String) {
-                        URLEncoder.encode((String) key, this.encoding);
-                    }
-                    if (value instanceof String) {
-                        value = URLEncoder.encode((String) value, this.encoding);
-                    }
-                } catch (UnsupportedEncodingException e) {
-                    throw new EPLiteException(String.format(
-                            "Unable to URLEncode using encoding '%s'", this.encoding), e);
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
                 }
             }
-            strArgs.append(key).append("=").append(value);
-            if (i.hasNext()) {
-                strArgs.append("&");
-            }
         }
-        return strArgs.toString();
     }
 
     /**
-     * Calls the HTTP JSON API.
+     * Sends a request to the HTTP JSON API once, when the concurrency limiter has room for it.
+     *
+     * @param request the request object to send
+     * @return HashMap
+     */
+    private Object attempt(String apiMethod, LongSupplier requestBytes, Request request, ResponseHandler<Object> parser) {
+        ConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter == null) {
+            return this.guarded(apiMethod, requestBytes, request, parser);
+        }
+        Deadline.check();
+        ConcurrencyLimiter.Permit permit = limiter.acquire(Priority.current());
+        try {
+            Object result = this.guarded(apiMethod, requestBytes, request, parser);
+            permit.release(false);
+            return result;
+        } catch (EPLiteCircuitOpenException e) {
+            permit.cancel();
+            throw e;
+        } catch (EPLiteException e) {
+            permit.release(RetryPolicy.isRetryable(e));
+            throw e;
+        } catch (RuntimeException e) {
+            permit.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request to the HTTP JSON API once, if the circuit breaker lets it through.
      *
      * @param request the request object to send
      * @return HashMap
      */
-    private Object call(Request request) {
-        trustServerAndCertificate();
+    private Object guarded(String apiMethod, LongSupplier requestBytes, Request request, ResponseHandler<Object> parser) {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker == null) {
+            return this.send(apiMethod, requestBytes, request, parser);
+        }
+        // An expired deadline is not a failure of the endpoint
+        Deadline.check();
+        Deadline deadline = Deadline.current();
+        CircuitBreaker.Circuit circuit = breaker.acquire(this.endpoint, apiMethod);
+        try {
+            Object result = this.send(apiMethod, requestBytes, request, parser);
+            circuit.record(false);
+            return result;
+        } catch (EPLiteException e) {
+            if (outOfTime(e, deadline)) {
+                circuit.ignore();
+            } else {
+                circuit.record(RetryPolicy.isRetryable(e));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the call timed out because the deadline of its caller expired, rather than a timeout of
+     *         the endpoint's own
+     */
+    private static boolean outOfTime(Throwable failure, Deadline deadline) {
+        return failure instanceof EPLiteTimeoutException && deadline != null && deadline.isExpired();
+    }
 
+    /**
+     * Sends a request to the HTTP JSON API once.
+     *
+     * @param request the request object to send
+     * @return HashMap
+     */
+    private Object send(String apiMethod, LongSupplier requestBytes, Request request, final ResponseHandler<Object> parser) {
+        long start = System.nanoTime();
+        final CountingReader[] counted = new CountingReader[1];
         try {
-            String response = request.send();
-            return this.handleResponse(response);
+            Deadline.check();
+            Object result = request.send(new ResponseHandler<Object>() {
+                public Object handle(Reader body) throws Exception {
+                    counted[0] = new CountingReader(body);
+                    return parser.handle(counted[0]);
+                }
+            });
+            this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes.getAsLong(), CountingReader.count(counted[0]), null);
+            return result;
         }
         catch (EPLiteException e) {
+            this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes.getAsLong(), CountingReader.count(counted[0]), e);
             throw e;
         }
         catch (Exception e) {
-            throw new EPLiteException("Unable to connect to Etherpad Lite instance (" + e.getClass() + "): " + e.getMessage());
+            EPLiteException error = connectionError(e);
+            this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes.getAsLong(), CountingReader.count(counted[0]), error);
+            throw error;
         }
     }
 
     /**
-     * Creates a trust manager to trust all certificates if you open a ssl connection
+     * Wraps a failure to get a response, as an EPLiteTimeoutException if the call ran out of time.
      */
-	private void trustServerAndCertificate() {
-		// Create a trust manager that does not validate certificate chains
-		TrustManager[] trustAllCerts = new TrustManager[] { new X509TrustManager() {
-				public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-					return null;
-				}
+    private static EPLiteException connectionError(Throwable e) {
+        if (e instanceof SocketTimeoutException || e instanceof HttpTimeoutException || e instanceof TimeoutException) {
+            return new EPLiteTimeoutException("Timed out calling Etherpad Lite instance (" + e.getClass() + "): " + e.getMessage(), e);
+        }
+        return new EPLiteException("Unable to connect to Etherpad Lite instance (" + e.getClass() + "): " + e.getMessage(), e);
+    }
 
-				public void checkClientTrusted(
-						java.security.cert.X509Certificate[] certs, String authType) {
-				}
+    /**
+     * Sends a request through the non-blocking HTTP client, and again after a delay as the retry policy allows.
+     * The attempts after the first run on other threads, under the deadline of the caller.
+     *
+     * @param send sends one attempt
+     * @param policy the retry policy, or null
+     * @param deadline the deadline of the caller, or null
+     * @param attempt the number of this attempt, starting at 1
+     * @return a future completed with the parsed data
+     */
+    private CompletableFuture<Object> retryAsync(final String apiMethod, final Supplier<CompletableFuture<Object>> send,
+            final RetryPolicy policy, final Deadline deadline, final int attempt) {
+        CompletableFuture<Object> result;
+        Deadline resumed = Deadline.resume(deadline);
+        try {
+            result = send.get();
+        } finally {
+            end(resumed);
+        }
+        if (policy == null) {
+            return result;
+        }
+        return result.handle((value, failure) -> {
+            if (failure == null) {
+                policy.succeeded();
+                return CompletableFuture.completedFuture(value);
+            }
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                    ? failure.getCause() : failure;
+            if (!(cause instanceof EPLiteException)) {
+                return CompletableFuture.<Object>failedFuture(cause);
+            }
+            long delay;
+            Deadline retried = Deadline.resume(deadline);
+            try {
+                delay = policy.delayBeforeRetry(apiMethod, (EPLiteException) cause, attempt);
+            } finally {
+                end(retried);
+            }
+            if (delay < 0) {
+                return CompletableFuture.<Object>failedFuture(cause);
+            }
+            Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> null, delayed)
+                    .thenCompose(ignored -> this.retryAsync(apiMethod, send, policy, deadline, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Ends a deadline applied with {@link Deadline#resume(Deadline)}.
+     *
+     * @param resumed the resumed deadline, or null if none was applied
+     */
+    private static void end(Deadline resumed) {
+        if (resumed != null) {
+            resumed.close();
+        }
+    }
 
-				public void checkServerTrusted(
-						java.security.cert.X509Certificate[] certs, String authType) {
-				}
-			}
-		};
+    /**
+     * Sends a request through the non-blocking HTTP client, once the concurrency limiter has room for it.
+     *
+     * @param priority the priority the call was made with
+     * @param request the request to send
+     * @return a future completed with the parsed data
+     */
+    private CompletableFuture<Object> callAsync(final String apiMethod, final Priority priority, final long requestBytes,
+            final HttpRequest.Builder request) {
+        ConcurrencyLimiter limiter = this.concurrencyLimiter;
+        if (limiter == null) {
+            return this.guardedAsync(apiMethod, requestBytes, request);
+        }
+        final Deadline deadline = Deadline.current();
+        return limiter.acquireAsync(priority).thenCompose(permit -> {
+            CompletableFuture<Object> result;
+            Deadline resumed = Deadline.resume(deadline);
+            try {
+                result = this.guardedAsync(apiMethod, requestBytes, request);
+            } finally {
+                end(resumed);
+            }
+            return result.whenComplete((value, failure) -> {
+                Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                        ? failure.getCause() : failure;
+                if (cause instanceof EPLiteCircuitOpenException) {
+                    permit.cancel();
+                } else {
+                    permit.release(cause != null
+                            && (!(cause instanceof EPLiteException) || RetryPolicy.isRetryable((EPLiteException) cause)));
+                }
+            });
+        });
+    }
 
-		// Install the all-trusting trust manager
-		try {
-			SSLContext sc = SSLContext.getInstance("SSL");
-			sc.init(null, trustAllCerts, new java.security.SecureRandom());
-			HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-		} catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new EPLiteException("Unable to create SSL context", e);
+    /**
+     * Sends a request through the non-blocking HTTP client, if the circuit breaker lets it through.
+     *
+     * @param request the request to send
+     * @return a future completed with the parsed data
+     */
+    private CompletableFuture<Object> guardedAsync(String apiMethod, long requestBytes, HttpRequest.Builder request) {
+        CircuitBreaker breaker = this.circuitBreaker;
+        if (breaker == null) {
+            return this.sendAsync(apiMethod, requestBytes, request);
         }
+        final CircuitBreaker.Circuit circuit;
+        final Deadline deadline = Deadline.current();
+        try {
+            Deadline.check();
+            circuit = breaker.acquire(this.endpoint, apiMethod);
+        } catch (EPLiteException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return this.sendAsync(apiMethod, requestBytes, request).whenComplete((result, failure) -> {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                    ? failure.getCause() : failure;
+            if (outOfTime(cause, deadline)) {
+                circuit.ignore();
+            } else {
+                circuit.record(cause != null
+                        && (!(cause instanceof EPLiteException) || RetryPolicy.isRetryable((EPLiteException) cause)));
+            }
+        });
+    }
 
-		HostnameVerifier hv = new HostnameVerifier() {
-			//@Override
-			public boolean verify(String hostname, SSLSession session) {
-				return true;
-			}
-		};
-		HttpsURLConnection.setDefaultHostnameVerifier(hv);
-	}
+    /**
+     * Sends a request through the non-blocking HTTP client once.
+     *
+     * @param request the request to send
+     * @return a future completed with the parsed data
+     */
+    private CompletableFuture<Object> sendAsync(String apiMethod, long requestBytes, HttpRequest.Builder request) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            int timeout = Deadline.timeoutMillis(this.transport.getReadTimeout());
+            if (timeout > 0) {
+                request.timeout(Duration.ofMillis(timeout));
+            }
+            response = this.httpClient().sendAsync(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            EPLiteException error = e instanceof EPLiteException ? (EPLiteException) e : connectionError(e);
+            this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes, 0L, error);
+            return CompletableFuture.failedFuture(error);
+        }
+        return response.handle((httpResponse, failure) -> {
+            long responseChars = (httpResponse != null && httpResponse.body() != null) ? httpResponse.body().length() : 0L;
+            try {
+                Object result = this.handleAsyncResponse(httpResponse, failure);
+                this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes, responseChars, null);
+                return result;
+            } catch (EPLiteException e) {
+                this.metrics.record(apiMethod, System.nanoTime() - start, requestBytes, responseChars, e);
+                throw e;
+            }
+        });
+    }
+
+    private Object handleAsyncResponse(HttpResponse<String> httpResponse, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = (failure instanceof CompletionException && failure.getCause() != null)
+                    ? failure.getCause() : failure;
+            throw connectionError(cause);
+        }
+        if (httpResponse.statusCode() >= 400) {
+            String status = "Server returned HTTP response code: " + httpResponse.statusCode() + " for URL: " + httpResponse.uri();
+            throw new EPLiteException("Unable to connect to Etherpad Lite instance: " + status, new IOException(status));
+        }
+        return this.handleResponse(httpResponse.body());
+    }
+
+    private synchronized HttpClient httpClient() {
+        if (this.httpClient == null) {
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .sslContext(this.transport.getTlsConfig().getSSLContext());
+            if (this.transport.getConnectTimeout() > 0) {
+                builder.connectTimeout(Duration.ofMillis(this.transport.getConnectTimeout()));
+            }
+            this.httpClient = builder.build();
+        }
+        return this.httpClient;
+    }
+
+    private static URI toURI(URL url) {
+        try {
+            return url.toURI();
+        } catch (URISyntaxException e) {
+            throw new EPLiteException("Error in the URL to the Etherpad Lite instance (" + e.getClass() + "): " + e.getMessage());
+        }
+    }
+
+    private static Map toMap(Object response) {
+        return (response != null) ? (Map) response : new HashMap();
+    }
+
+    /**
+     * Counts the characters read from a response body.
+     */
+    private static final class CountingReader extends FilterReader {
+        private long count;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        static long count(CountingReader reader) {
+            return reader != null ? reader.count : 0L;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                this.count++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Counts the bytes of a streamed request body.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            this.out.write(buffer, offset, length);
+            this.count += length;
+        }
+    }
 }
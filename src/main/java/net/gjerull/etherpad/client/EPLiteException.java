@@ -1,11 +1,38 @@
 package net.gjerull.etherpad.client;
 
 public class EPLiteException extends RuntimeException {
+    /**
+     * The code of exceptions that do not carry an Etherpad Lite response code
+     */
+    public static final int NO_CODE = -1;
+
+    private final int code;
+
     public EPLiteException(String message) {
-        super(message);
+        this(message, NO_CODE);
     }
 
     public EPLiteException(String message, Throwable cause) {
         super(message, cause);
+        this.code = NO_CODE;
+    }
+
+    /**
+     * @param message the message
+     * @param code the response code returned by Etherpad Lite
+     */
+    public EPLiteException(String message, int code) {
+        super(message);
+        this.code = code;
+    }
+
+    /**
+     * Returns the response code returned by Etherpad Lite, e.g. {@link EPLiteConnection#CODE_INVALID_PARAMETERS},
+     * or {@link #NO_CODE} if the error did not come from an API response.
+     *
+     * @return int
+     */
+    public int getCode() {
+        return this.code;
     }
 }
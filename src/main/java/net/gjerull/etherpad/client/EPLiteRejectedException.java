@@ -0,0 +1,11 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Thrown without contacting Etherpad Lite when a {@link ConcurrencyLimiter} has no room for the call: its queue is
+ * full, or the call waited in it for too long.
+ */
+public class EPLiteRejectedException extends EPLiteException {
+    public EPLiteRejectedException(String message) {
+        super(message);
+    }
+}
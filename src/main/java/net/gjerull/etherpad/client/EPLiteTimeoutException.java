@@ -0,0 +1,15 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Thrown when a call to Etherpad Lite did not complete in time: connecting or reading timed out, no pooled
+ * connection became free, or the {@link Deadline} of the call expired.
+ */
+public class EPLiteTimeoutException extends EPLiteException {
+    public EPLiteTimeoutException(String message) {
+        super(message);
+    }
+
+    public EPLiteTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
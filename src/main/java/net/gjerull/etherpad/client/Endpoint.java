@@ -0,0 +1,110 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * One Etherpad Lite instance behind a {@link FailoverConnection}, with the latency and errors observed on it.<br />
+ * <br />
+ * Latency and error rate are exponentially weighted moving averages, each new observation weighing 20%.
+ * An endpoint is ejected after too many failures, and is re-admitted by the next successful health probe.
+ */
+public final class Endpoint {
+    /**
+     * The weight of a new observation in the moving averages
+     */
+    static final double WEIGHT = 0.2;
+
+    private final String url;
+    final EPLiteConnection connection;
+    final EPLiteConnection probe;
+    private long latencyNanos = -1L;
+    private double errorRate;
+    private int consecutiveFailures;
+    private volatile boolean ejected;
+    private long ejections;
+
+    Endpoint(String url, EPLiteConnection connection, EPLiteConnection probe) {
+        this.url = url;
+        this.connection = connection;
+        this.probe = probe;
+    }
+
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * @return the moving average of call latencies in nanoseconds, or -1 before the first call
+     */
+    public synchronized long getLatencyNanos() {
+        return this.latencyNanos;
+    }
+
+    /**
+     * @return the moving average of the share of calls that failed to get a response, from 0 to 1
+     */
+    public synchronized double getErrorRate() {
+        return this.errorRate;
+    }
+
+    /**
+     * @return the concurrency limiter of the endpoint, or null if calls are not limited
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return this.connection.getConcurrencyLimiter();
+    }
+
+    /**
+     * @return true if the endpoint receives calls
+     */
+    public boolean isHealthy() {
+        return !this.ejected;
+    }
+
+    /**
+     * @return the number of times the endpoint was ejected
+     */
+    public synchronized long getEjectionCount() {
+        return this.ejections;
+    }
+
+    /**
+     * Records a call that got a response, including an error response from the API.
+     */
+    synchronized void succeeded(long nanos) {
+        this.latencyNanos = this.latencyNanos < 0 ? nanos : (long) (this.latencyNanos * (1 - WEIGHT) + nanos * WEIGHT);
+        this.errorRate *= 1 - WEIGHT;
+        this.consecutiveFailures = 0;
+    }
+
+    /**
+     * Records a call that got no response, and ejects the endpoint if it failed too often.
+     *
+     * @return true if the endpoint was ejected by this failure
+     */
+    synchronized boolean failed(int failureThreshold, double maxErrorRate) {
+        this.errorRate = this.errorRate * (1 - WEIGHT) + WEIGHT;
+        this.consecutiveFailures++;
+        if (!this.ejected && (this.consecutiveFailures >= failureThreshold || this.errorRate >= maxErrorRate)) {
+            this.ejected = true;
+            this.ejections++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a successful health probe, re-admitting the endpoint if it was ejected.
+     */
+    synchronized void probed(long nanos) {
+        this.succeeded(nanos);
+        if (this.ejected) {
+            this.ejected = false;
+            this.errorRate = 0.0;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s %s latency=%dus errors=%.2f ejections=%d", this.url,
+                this.ejected ? "ejected" : "healthy", this.latencyNanos / 1000, this.errorRate, this.ejections);
+    }
+}
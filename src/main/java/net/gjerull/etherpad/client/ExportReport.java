@@ -0,0 +1,75 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A snapshot of the progress of a {@link PadExporter} run.
+ */
+public final class ExportReport {
+    private final long exported;
+    private final long failed;
+    private final long submitted;
+    private final long characters;
+    private final long elapsedMillis;
+    private final boolean complete;
+
+    ExportReport(long exported, long failed, long submitted, long characters, long elapsedMillis, boolean complete) {
+        this.exported = exported;
+        this.failed = failed;
+        this.submitted = submitted;
+        this.characters = characters;
+        this.elapsedMillis = elapsedMillis;
+        this.complete = complete;
+    }
+
+    /**
+     * @return the number of pads exported
+     */
+    public long getExported() {
+        return this.exported;
+    }
+
+    /**
+     * @return the number of pads that could not be exported
+     */
+    public long getFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return the number of pads handed to the workers so far; the total once the run is complete
+     */
+    public long getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * @return the number of characters of text and HTML exported
+     */
+    public long getCharacters() {
+        return this.characters;
+    }
+
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * @return true if every pad has been exported or has failed
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * @return the number of pads completed, exported or failed, per second
+     */
+    public double getPadsPerSecond() {
+        return this.elapsedMillis > 0 ? (this.exported + this.failed) * 1000.0 / this.elapsedMillis : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ExportReport[exported=%d, failed=%d, submitted=%d, characters=%d, elapsed=%dms, %.1f pads/s%s]",
+                this.exported, this.failed, this.submitted, this.characters, this.elapsedMillis,
+                this.getPadsPerSecond(), this.complete ? ", complete" : "");
+    }
+}
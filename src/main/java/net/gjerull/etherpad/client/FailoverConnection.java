@@ -0,0 +1,364 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A connection to several replicas of the same Etherpad Lite instance, e.g. nodes sharing one database.<br />
+ * <br />
+ * Read-only calls go to the healthy endpoint with the lowest moving average latency, and move on to the next
+ * endpoint when one fails to respond. Other calls go to the first healthy endpoint in the given order and are not
+ * repeated. Responses with an API error code count as responses: the endpoint is up.<br />
+ * <br />
+ * An endpoint is ejected after a number of consecutive failures or a high moving error rate. Every endpoint is
+ * probed with checkToken in the background, and an ejected endpoint is re-admitted by its next successful probe.
+ * If all endpoints are ejected, calls go to the one with the lowest error rate.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * FailoverConnection connection = new FailoverConnection(Arrays.asList("http://pads1:9001", "http://pads2:9001"), apiKey);<br />
+ * EPLiteClient client = new EPLiteClient(connection);
+ * </code>
+ */
+public class FailoverConnection extends EPLiteConnection implements Closeable {
+    /**
+     * The default time between two health probes of an endpoint, in milliseconds
+     */
+    public static final long DEFAULT_PROBE_INTERVAL = 5000L;
+
+    private final List<Endpoint> endpoints;
+    private final ScheduledExecutorService prober;
+    private volatile int failureThreshold = 3;
+    private volatile double maxErrorRate = 0.5;
+
+    /**
+     * Creates a connection to the given endpoints with the default API version, encoding and probe interval.
+     *
+     * @param urls the urls of the endpoints; the first healthy one receives the calls that are not read-only
+     * @param apiKey the API key of all endpoints
+     */
+    public FailoverConnection(List<String> urls, String apiKey) {
+        this(urls, apiKey, EPLiteClient.DEFAULT_API_VERSION, EPLiteClient.DEFAULT_ENCODING, new URLConnectionTransport(),
+                DEFAULT_PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a connection to the given endpoints.
+     *
+     * @param urls the urls of the endpoints; the first healthy one receives the calls that are not read-only
+     * @param apiKey the API key of all endpoints
+     * @param apiVersion the API version
+     * @param encoding the character encoding of your application
+     * @param transport the transport used to send requests to all endpoints
+     * @param probeInterval the time between two health probes of an endpoint, or 0 to not probe
+     * @param unit the unit of probeInterval
+     */
+    public FailoverConnection(List<String> urls, String apiKey, String apiVersion, String encoding, Transport transport,
+            long probeInterval, TimeUnit unit) {
+        super(urls.get(0), apiKey, apiVersion, encoding, transport);
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String url : urls) {
+            endpoints.add(new Endpoint(url,
+                    new EPLiteConnection(url, apiKey, apiVersion, encoding, transport, this.getMetrics()),
+                    new EPLiteConnection(url, apiKey, apiVersion, encoding, transport)));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        if (probeInterval > 0) {
+            this.prober = Executors.newScheduledThreadPool(endpoints.size(), new ProbeThreadFactory());
+            for (final Endpoint endpoint : endpoints) {
+                this.prober.scheduleWithFixedDelay(() -> this.probe(endpoint), probeInterval, probeInterval, unit);
+            }
+        } else {
+            this.prober = null;
+        }
+    }
+
+    /**
+     * @return the endpoints in the given order
+     */
+    public List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * Sets the number of consecutive failures after which an endpoint is ejected. The default is 3.
+     *
+     * @param failureThreshold the number of failures
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Sets the moving error rate at which an endpoint is ejected. The default is 0.5.
+     *
+     * @param maxErrorRate the error rate, from 0 to 1
+     */
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    /**
+     * Probes all endpoints now, e.g. to re-admit endpoints without waiting for the next scheduled probe.
+     */
+    public void probeAll() {
+        for (Endpoint endpoint : this.endpoints) {
+            this.probe(endpoint);
+        }
+    }
+
+    @Override
+    public synchronized void setCoalescing(boolean coalescing) {
+        super.setCoalescing(coalescing);
+        for (Endpoint endpoint : this.endpoints) {
+            endpoint.connection.setCoalescing(coalescing);
+        }
+    }
+
+    /**
+     * Sets the retry policy of every endpoint. A call is retried on the same endpoint before it moves on to the
+     * next one.
+     */
+    @Override
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        super.setRetryPolicy(retryPolicy);
+        for (Endpoint endpoint : this.endpoints) {
+            endpoint.connection.setRetryPolicy(retryPolicy);
+        }
+    }
+
+    /**
+     * Gives every endpoint a copy of the concurrency limiter, since each instance has a limit of its own.
+     * A call rejected by the limiter of an endpoint moves on to the next endpoint.
+     * See {@link Endpoint#getConcurrencyLimiter()}.
+     */
+    @Override
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        super.setConcurrencyLimiter(concurrencyLimiter);
+        for (Endpoint endpoint : this.endpoints) {
+            endpoint.connection.setConcurrencyLimiter(concurrencyLimiter != null ? concurrencyLimiter.copy() : null);
+        }
+    }
+
+    /**
+     * Sets the circuit breaker of every endpoint. A call whose circuit is open moves on to the next endpoint.
+     */
+    @Override
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        super.setCircuitBreaker(circuitBreaker);
+        for (Endpoint endpoint : this.endpoints) {
+            endpoint.connection.setCircuitBreaker(circuitBreaker);
+        }
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        long coalesced = 0L;
+        for (Endpoint endpoint : this.endpoints) {
+            coalesced += endpoint.connection.getCoalescedCount();
+        }
+        return coalesced;
+    }
+
+    @Override
+    Object getObject(final String apiMethod, final Map<String, Object> apiArgs, final Set<String> dataFields) {
+        Function<EPLiteConnection, Object> call = connection -> connection.getObject(apiMethod, apiArgs, dataFields);
+        if (isReadOnly(apiMethod)) {
+            return this.callFastest(call);
+        }
+        return this.callOnce(this.primary(), call);
+    }
+
+    @Override
+    public long getField(final String apiMethod, final Map<String, Object> apiArgs, final String field, final Writer out) {
+        // Part of the value may have been written when an endpoint fails, so the call is not repeated
+        return (Long) this.callOnce(this.fastest(Collections.<Endpoint>emptyList()),
+                connection -> connection.getField(apiMethod, apiArgs, field, out));
+    }
+
+    @Override
+    public Object postObject(final String apiMethod, final Map<String, Object> apiArgs) {
+        return this.callOnce(this.primary(), connection -> connection.postObject(apiMethod, apiArgs));
+    }
+
+    @Override
+    public Object postObject(final String apiMethod, final Map<String, Object> apiArgs, final String field, final Reader value) {
+        return this.callOnce(this.primary(), connection -> connection.postObject(apiMethod, apiArgs, field, value));
+    }
+
+    @Override
+    public CompletableFuture<Object> getObjectAsync(String apiMethod, Map<String, Object> apiArgs) {
+        Endpoint endpoint = isReadOnly(apiMethod) ? this.fastest(Collections.<Endpoint>emptyList()) : this.primary();
+        return this.track(endpoint, endpoint.connection.getObjectAsync(apiMethod, apiArgs));
+    }
+
+    @Override
+    public CompletableFuture<Object> postObjectAsync(String apiMethod, Map<String, Object> apiArgs) {
+        Endpoint endpoint = this.primary();
+        return this.track(endpoint, endpoint.connection.postObjectAsync(apiMethod, apiArgs));
+    }
+
+    /**
+     * Stops the health probes.
+     */
+    public void close() {
+        if (this.prober != null) {
+            this.prober.shutdownNow();
+        }
+    }
+
+    /**
+     * Calls the fastest endpoints in turn until one responds or the {@link Deadline} of the call expires.
+     */
+    private Object callFastest(Function<EPLiteConnection, Object> call) {
+        List<Endpoint> tried = new ArrayList<>(this.endpoints.size());
+        EPLiteException failure = null;
+        Endpoint endpoint;
+        while ((endpoint = this.fastest(tried)) != null) {
+            // An expired deadline says nothing about the health of the next endpoint
+            Deadline deadline = Deadline.current();
+            if (deadline != null && deadline.isExpired()) {
+                throw failure != null ? failure : new EPLiteTimeoutException("The deadline of the call expired");
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = call.apply(endpoint.connection);
+                endpoint.succeeded(System.nanoTime() - start);
+                return result;
+            } catch (EPLiteException e) {
+                if (!this.record(endpoint, e, System.nanoTime() - start)) {
+                    throw e;
+                }
+                failure = e;
+                tried.add(endpoint);
+            }
+        }
+        throw failure;
+    }
+
+    private Object callOnce(Endpoint endpoint, Function<EPLiteConnection, Object> call) {
+        Deadline.check();
+        long start = System.nanoTime();
+        try {
+            Object result = call.apply(endpoint.connection);
+            endpoint.succeeded(System.nanoTime() - start);
+            return result;
+        } catch (EPLiteException e) {
+            this.record(endpoint, e, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Object> track(final Endpoint endpoint, CompletableFuture<Object> future) {
+        final long start = System.nanoTime();
+        return future.whenComplete((result, error) -> {
+            if (error == null) {
+                endpoint.succeeded(System.nanoTime() - start);
+            } else if (error.getCause() instanceof EPLiteException) {
+                this.record(endpoint, (EPLiteException) error.getCause(), System.nanoTime() - start);
+            } else if (error instanceof EPLiteException) {
+                this.record(endpoint, (EPLiteException) error, System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Records the outcome of a failed call.
+     *
+     * @return true if the endpoint did not respond, false for an error response from the API
+     */
+    private boolean record(Endpoint endpoint, EPLiteException e, long nanos) {
+        if (e instanceof EPLiteCircuitOpenException || e instanceof EPLiteRejectedException) {
+            // Nothing was sent, the circuit breaker already knows the endpoint fails, or its limiter is full
+            return true;
+        }
+        if (e.getCode() != EPLiteException.NO_CODE) {
+            endpoint.succeeded(nanos);
+            return false;
+        }
+        endpoint.failed(this.failureThreshold, this.maxErrorRate);
+        return true;
+    }
+
+    /**
+     * Returns the healthy endpoint with the lowest latency that was not tried, else the untried endpoint with
+     * the lowest error rate if none is healthy, or null if all were tried.
+     */
+    private Endpoint fastest(List<Endpoint> tried) {
+        Endpoint fastest = null;
+        long fastestLatency = Long.MAX_VALUE;
+        Endpoint fallback = null;
+        for (Endpoint endpoint : this.endpoints) {
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            if (endpoint.isHealthy()) {
+                // An endpoint without calls yet is tried first, to learn its latency
+                long latency = Math.max(0L, endpoint.getLatencyNanos());
+                if (latency < fastestLatency) {
+                    fastest = endpoint;
+                    fastestLatency = latency;
+                }
+            } else if (fallback == null || endpoint.getErrorRate() < fallback.getErrorRate()) {
+                fallback = endpoint;
+            }
+        }
+        return fastest != null ? fastest : fallback;
+    }
+
+    /**
+     * Returns the first healthy endpoint, else the one with the lowest error rate.
+     */
+    private Endpoint primary() {
+        for (Endpoint endpoint : this.endpoints) {
+            if (endpoint.isHealthy()) {
+                return endpoint;
+            }
+        }
+        return this.fastest(Collections.<Endpoint>emptyList());
+    }
+
+    private void probe(Endpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            endpoint.probe.getObject("checkToken");
+            endpoint.probed(System.nanoTime() - start);
+        } catch (EPLiteException e) {
+            if (e.getCode() != EPLiteException.NO_CODE) {
+                // The endpoint responds, e.g. with a wrong API key
+                endpoint.probed(System.nanoTime() - start);
+            } else {
+                endpoint.failed(this.failureThreshold, this.maxErrorRate);
+            }
+        } catch (RuntimeException e) {
+            endpoint.failed(this.failureThreshold, this.maxErrorRate);
+        }
+    }
+
+    private static final class ProbeThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "etherpad-probe-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
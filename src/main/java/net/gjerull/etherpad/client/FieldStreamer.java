@@ -0,0 +1,372 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Reads the <code>{"code": ..., "message": ..., "data": {...}}</code> envelope of an API response and copies one
+ * string field of the data object to a Writer as it is decoded, e.g. the text of a large pad.<br />
+ * <br />
+ * Other values are skipped without being built, so memory use is bounded by the buffer size rather than by the size
+ * of the response. Etherpad Lite writes the code before the data; if an error code is read first, the data is not
+ * copied and reading stops once the message is known.
+ */
+final class FieldStreamer {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private boolean envelope;
+    private Object code;
+    private String message;
+    private boolean found;
+    private long written;
+
+    /**
+     * @param in the response body
+     */
+    FieldStreamer(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the response, copying the given field of the data object to the writer.
+     *
+     * @param field the name of the string field
+     * @param out the writer receiving the decoded value
+     * @throws IOException if reading the response fails
+     */
+    void stream(String field, Writer out) throws IOException {
+        if (this.skipWhitespace() != '{') {
+            return;
+        }
+        this.envelope = true;
+        this.position++;
+        if (this.skipWhitespace() == '}') {
+            return;
+        }
+        while (true) {
+            String key = this.readKey();
+            if ("code".equals(key)) {
+                this.code = this.readPrimitive();
+            } else if ("message".equals(key) && this.skipWhitespace() == '"') {
+                this.position++;
+                StringBuilder message = new StringBuilder();
+                this.readString(message);
+                this.message = message.toString();
+            } else if ("data".equals(key) && !this.isError() && this.skipWhitespace() == '{') {
+                this.streamData(field, out);
+            } else {
+                this.skipValue();
+            }
+            if (this.isError() && this.message != null) {
+                return;
+            }
+            if (!this.nextEntry('}')) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the response was a JSON object
+     */
+    boolean isEnvelope() {
+        return this.envelope;
+    }
+
+    /**
+     * @return the "code" value, or null if it was missing
+     */
+    Object getCode() {
+        return this.code;
+    }
+
+    /**
+     * @return the "message" value, or null if it was missing
+     */
+    String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return true if the field was found in the data with a string value
+     */
+    boolean isFound() {
+        return this.found;
+    }
+
+    /**
+     * @return the number of characters written
+     */
+    long getWritten() {
+        return this.written;
+    }
+
+    private void streamData(String field, Writer out) throws IOException {
+        this.position++;
+        if (this.skipWhitespace() == '}') {
+            this.position++;
+            return;
+        }
+        while (true) {
+            String key = this.readKey();
+            if (!this.found && field.equals(key) && this.skipWhitespace() == '"') {
+                this.position++;
+                this.found = true;
+                this.written = this.readString(out);
+            } else {
+                this.skipValue();
+            }
+            if (!this.nextEntry('}')) {
+                return;
+            }
+        }
+    }
+
+    private boolean isError() {
+        return this.code instanceof Number && ((Number) this.code).intValue() != EPLiteConnection.CODE_OK;
+    }
+
+    /**
+     * Reads a key and the colon after it.
+     */
+    private String readKey() throws IOException {
+        if (this.skipWhitespace() != '"') {
+            throw this.unexpected("a key");
+        }
+        this.position++;
+        StringBuilder key = new StringBuilder();
+        this.readString(key);
+        if (this.skipWhitespace() != ':') {
+            throw this.unexpected("':'");
+        }
+        this.position++;
+        return key.toString();
+    }
+
+    /**
+     * Reads the comma after an entry, or the end of the container.
+     *
+     * @return true if another entry follows
+     */
+    private boolean nextEntry(char end) throws IOException {
+        int c = this.skipWhitespace();
+        this.position++;
+        if (c == ',') {
+            return true;
+        }
+        if (c == end) {
+            return false;
+        }
+        throw this.unexpected("',' or '" + end + "'");
+    }
+
+    private Object readPrimitive() throws IOException {
+        int c = this.skipWhitespace();
+        if (c == '"') {
+            this.position++;
+            StringBuilder value = new StringBuilder();
+            this.readString(value);
+            return value.toString();
+        }
+        if (c == '{' || c == '[') {
+            this.skipValue();
+            return null;
+        }
+        StringBuilder token = new StringBuilder();
+        while ((c = this.peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            token.append((char) c);
+            this.position++;
+        }
+        String value = token.toString();
+        switch (value) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "null":
+                return null;
+            default:
+                try {
+                    if (value.indexOf('.') >= 0 || value.indexOf('e') >= 0 || value.indexOf('E') >= 0) {
+                        return Double.valueOf(value);
+                    }
+                    return Long.valueOf(value);
+                } catch (NumberFormatException e) {
+                    throw invalid("Unexpected token " + value);
+                }
+        }
+    }
+
+    /**
+     * Skips a value of any type without building it.
+     */
+    private void skipValue() throws IOException {
+        int c = this.skipWhitespace();
+        if (c == '"') {
+            this.position++;
+            this.readString(null);
+        } else if (c == '{') {
+            this.position++;
+            if (this.skipWhitespace() == '}') {
+                this.position++;
+                return;
+            }
+            do {
+                this.readKey();
+                this.skipValue();
+            } while (this.nextEntry('}'));
+        } else if (c == '[') {
+            this.position++;
+            if (this.skipWhitespace() == ']') {
+                this.position++;
+                return;
+            }
+            do {
+                this.skipValue();
+            } while (this.nextEntry(']'));
+        } else {
+            this.readPrimitive();
+        }
+    }
+
+    /**
+     * Reads the rest of a string after its opening quote, decoding escapes.
+     *
+     * @param out receives the decoded characters, or null to skip them
+     * @return the number of characters decoded
+     */
+    private long readString(Appendable out) throws IOException {
+        long count = 0;
+        while (true) {
+            if (this.position == this.limit && !this.fill()) {
+                throw invalid("Unterminated string");
+            }
+            // Copy the run of plain characters in the buffer at once
+            int start = this.position;
+            while (this.position < this.limit) {
+                char c = this.buffer[this.position];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                this.position++;
+            }
+            int run = this.position - start;
+            if (run > 0) {
+                if (out instanceof Writer) {
+                    write((Writer) out, this.buffer, start, run);
+                } else if (out != null) {
+                    ((StringBuilder) out).append(this.buffer, start, run);
+                }
+                count += run;
+            }
+            if (this.position == this.limit) {
+                continue;
+            }
+            char c = this.buffer[this.position++];
+            if (c == '"') {
+                return count;
+            }
+            char decoded = this.readEscape();
+            if (out instanceof Writer) {
+                this.buffer[this.position - 1] = decoded;
+                write((Writer) out, this.buffer, this.position - 1, 1);
+            } else if (out != null) {
+                out.append(decoded);
+            }
+            count++;
+        }
+    }
+
+    /**
+     * Writes to the caller's writer, reporting its failures apart from those of the connection.
+     */
+    private static void write(Writer out, char[] chars, int offset, int length) {
+        try {
+            out.write(chars, offset, length);
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to write the streamed response (" + e.getClass() + "): " + e.getMessage(), e);
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = this.read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(this.read(), 16);
+                    if (digit < 0) {
+                        throw invalid("Invalid unicode escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            default:
+                throw invalid("Invalid escape");
+        }
+    }
+
+    private int read() throws IOException {
+        if (this.position == this.limit && !this.fill()) {
+            throw invalid("Unexpected end");
+        }
+        return this.buffer[this.position++];
+    }
+
+    private int peek() throws IOException {
+        if (this.position == this.limit && !this.fill()) {
+            return -1;
+        }
+        return this.buffer[this.position];
+    }
+
+    /**
+     * @return the next character that is not whitespace, without consuming it, or -1 at the end
+     */
+    private int skipWhitespace() throws IOException {
+        int c;
+        while ((c = this.peek()) != -1 && Character.isWhitespace(c)) {
+            this.position++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        int read = this.in.read(this.buffer, 0, this.buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        this.position = 0;
+        this.limit = read;
+        return true;
+    }
+
+    private EPLiteException unexpected(String expected) throws IOException {
+        int c = this.peek();
+        return invalid("Expected " + expected + ", got " + (c == -1 ? "the end" : "'" + (char) c + "'"));
+    }
+
+    private static EPLiteException invalid(String problem) {
+        return new EPLiteException("Unable to parse JSON response (" + problem + ")");
+    }
+}
@@ -0,0 +1,244 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encodes API arguments as application/x-www-form-urlencoded, for a query string or a POST body.<br />
+ * <br />
+ * The output is the same as {@link java.net.URLEncoder}'s, but it is written straight into a byte buffer that is
+ * reused by each thread, and the apikey argument is encoded once. UTF-8 is encoded without intermediate strings;
+ * other character sets go through {@link String#getBytes(Charset)}. A large value can be read from a Reader and
+ * encoded in chunks while the request is sent.
+ */
+final class FormEncoder {
+    private static final byte[] HEX = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+    /**
+     * Buffers that grew beyond this size, e.g. for a large setText, are not kept
+     */
+    private static final int MAX_RETAINED = 64 * 1024;
+
+    /**
+     * The number of characters read from a streamed value at a time
+     */
+    private static final int STREAM_CHUNK = 8192;
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private final String encoding;
+    private final Charset charset;
+    private final boolean utf8;
+    private final byte[] apiKeyArg;
+
+    /**
+     * @param apiKey the API key, sent as the first argument
+     * @param encoding the character encoding of the values
+     */
+    FormEncoder(String apiKey, String encoding) {
+        this.encoding = encoding;
+        this.charset = lookup(encoding);
+        this.utf8 = StandardCharsets.UTF_8.equals(this.charset);
+        if (this.charset != null) {
+            Buffer buffer = new Buffer();
+            this.append(buffer, "apikey=");
+            this.appendEncoded(buffer, apiKey);
+            this.apiKeyArg = Arrays.copyOf(buffer.bytes, buffer.length);
+        } else {
+            this.apiKeyArg = null;
+        }
+    }
+
+    /**
+     * Returns the encoded apikey and arguments. The arguments are not modified.
+     *
+     * @param apiArgs the api arguments
+     * @return String
+     */
+    String encode(Map<String, Object> apiArgs) {
+        Buffer buffer = this.encodeToBuffer(apiArgs);
+        try {
+            return new String(buffer.bytes, 0, buffer.length, StandardCharsets.US_ASCII);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Returns the encoded apikey and arguments as US-ASCII bytes, e.g. for a request body.
+     *
+     * @param apiArgs the api arguments
+     * @return byte[]
+     */
+    byte[] encodeBytes(Map<String, Object> apiArgs) {
+        Buffer buffer = this.encodeToBuffer(apiArgs);
+        try {
+            return Arrays.copyOf(buffer.bytes, buffer.length);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Returns a body of the encoded apikey and arguments, followed by one argument whose value is read from a
+     * Reader and encoded in chunks while the body is written.
+     *
+     * @param apiArgs the api arguments
+     * @param key the name of the streamed argument
+     * @param value the value of the streamed argument, read to its end but not closed
+     * @return StreamingBody
+     */
+    StreamingBody encodeStreaming(Map<String, Object> apiArgs, String key, Reader value) {
+        final byte[] head = this.encodeBytes(apiArgs);
+        return out -> {
+            out.write(head);
+            Buffer buffer = new Buffer();
+            buffer.append('&');
+            this.appendEncoded(buffer, key);
+            buffer.append('=');
+            char[] chars = new char[STREAM_CHUNK];
+            CharBuffer chunk = CharBuffer.wrap(chars);
+            int carried = 0;
+            int read;
+            while ((read = value.read(chars, carried, chars.length - carried)) != -1) {
+                int length = carried + read;
+                // Keep a high surrogate for the next chunk, so that a pair is encoded as one code point
+                carried = length > 0 && Character.isHighSurrogate(chars[length - 1]) ? 1 : 0;
+                this.appendEncoded(buffer, chunk.subSequence(0, length - carried));
+                out.write(buffer.bytes, 0, buffer.length);
+                buffer.length = 0;
+                if (carried == 1) {
+                    chars[0] = chars[length - 1];
+                }
+            }
+            if (carried == 1) {
+                this.appendEncoded(buffer, chunk.subSequence(0, 1));
+            }
+            out.write(buffer.bytes, 0, buffer.length);
+        };
+    }
+
+    private Buffer encodeToBuffer(Map<String, Object> apiArgs) {
+        if (this.charset == null) {
+            throw new EPLiteException(String.format("Unable to URLEncode using encoding '%s'", this.encoding));
+        }
+        Buffer buffer = BUFFERS.get();
+        buffer.length = 0;
+        buffer.ensure(this.apiKeyArg.length);
+        System.arraycopy(this.apiKeyArg, 0, buffer.bytes, 0, this.apiKeyArg.length);
+        buffer.length = this.apiKeyArg.length;
+        for (Map.Entry<String, Object> entry : apiArgs.entrySet()) {
+            if ("apikey".equals(entry.getKey())) {
+                continue;
+            }
+            buffer.append('&');
+            this.appendEncoded(buffer, entry.getKey());
+            buffer.append('=');
+            Object value = entry.getValue();
+            if (value instanceof Long || value instanceof Integer) {
+                this.append(buffer, value.toString());
+            } else {
+                this.appendEncoded(buffer, String.valueOf(value));
+            }
+        }
+        return buffer;
+    }
+
+    private void append(Buffer buffer, String ascii) {
+        int length = ascii.length();
+        buffer.ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer.bytes[buffer.length++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void appendEncoded(Buffer buffer, CharSequence value) {
+        int length = value.length();
+        // Most characters are written as one byte, percent-encoded UTF-8 needs up to 9 per character
+        buffer.ensure(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                buffer.append(c);
+            } else if (c == ' ') {
+                buffer.append('+');
+            } else if (!this.utf8) {
+                int end = i + 1;
+                while (end < length && !isUnreserved(value.charAt(end)) && value.charAt(end) != ' ') {
+                    end++;
+                }
+                for (byte b : value.subSequence(i, end).toString().getBytes(this.charset)) {
+                    appendEscaped(buffer, b);
+                }
+                i = end - 1;
+            } else if (c < 0x80) {
+                appendEscaped(buffer, c);
+            } else if (c < 0x800) {
+                appendEscaped(buffer, 0xC0 | (c >> 6));
+                appendEscaped(buffer, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(buffer, 0xF0 | (codePoint >> 18));
+                appendEscaped(buffer, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(buffer, 0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced, as URLEncoder does
+                appendEscaped(buffer, '?');
+            } else {
+                appendEscaped(buffer, 0xE0 | (c >> 12));
+                appendEscaped(buffer, 0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(buffer, 0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static void appendEscaped(Buffer buffer, int b) {
+        buffer.ensure(3);
+        buffer.bytes[buffer.length++] = '%';
+        buffer.bytes[buffer.length++] = HEX[(b >> 4) & 0xF];
+        buffer.bytes[buffer.length++] = HEX[b & 0xF];
+    }
+
+    /**
+     * The characters URLEncoder leaves as they are
+     */
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    private static Charset lookup(String encoding) {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Buffer {
+        byte[] bytes = new byte[1024];
+        int length;
+
+        void ensure(int extra) {
+            if (this.length + extra > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.length + extra, this.bytes.length * 2));
+            }
+        }
+
+        void append(char ascii) {
+            this.ensure(1);
+            this.bytes[this.length++] = (byte) ascii;
+        }
+
+        void release() {
+            if (this.bytes.length > MAX_RETAINED) {
+                BUFFERS.remove();
+            }
+        }
+    }
+}
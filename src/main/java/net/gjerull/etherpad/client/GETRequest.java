@@ -2,7 +2,9 @@ package net.gjerull.etherpad.client;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.net.URLConnection;
 
 import etm.core.configuration.EtmManager;
 import etm.core.monitor.EtmMonitor;
@@ -20,15 +22,43 @@ import etm.core.monitor.EtmPoint;
  */
 public class GETRequest implements Request {
 	private final URL url;
+	private final TlsConfig tlsConfig;
+	private final int connectTimeout;
+	private final int readTimeout;
 	private static final EtmMonitor etmMonitor = EtmManager.getEtmMonitor();
 
 	/**
-	 * Instantiates a new GETRequest.
+	 * Instantiates a new GETRequest using the JVM's default TLS settings.
 	 * 
 	 * @param url the URL object
 	 */
 	public GETRequest(URL url) {
+		this(url, null);
+	}
+
+	/**
+	 * Instantiates a new GETRequest.
+	 * 
+	 * @param url the URL object
+	 * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+	 */
+	public GETRequest(URL url, TlsConfig tlsConfig) {
+		this(url, tlsConfig, 0, 0);
+	}
+
+	/**
+	 * Instantiates a new GETRequest with timeouts.
+	 * 
+	 * @param url the URL object
+	 * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+	 * @param connectTimeout the time allowed to connect in milliseconds, or 0 for no limit
+	 * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+	 */
+	public GETRequest(URL url, TlsConfig tlsConfig, int connectTimeout, int readTimeout) {
 		this.url = url;
+		this.tlsConfig = tlsConfig;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
 	}
 
 	/**
@@ -39,7 +69,8 @@ public class GETRequest implements Request {
 	public String send() throws Exception {
 		EtmPoint etmPoint = etmMonitor.createPoint("GETRequest.send");
 		try {
-			BufferedReader in = new BufferedReader(new InputStreamReader(url.openStream()));
+			URLConnection con = URLConnections.open(this.url, this.tlsConfig, this.connectTimeout, this.readTimeout);
+			BufferedReader in = new BufferedReader(new InputStreamReader(URLConnections.input(con)));
 			StringBuilder response = new StringBuilder();
 			String buffer;
 			while ((buffer = in.readLine()) != null) {
@@ -51,4 +82,22 @@ public class GETRequest implements Request {
 			etmPoint.collect();
 		}
 	}
+
+	/**
+	 * Sends the request and streams the response body to the handler.
+	 * 
+	 * @param handler the handler parsing the body
+	 * @return the handler's result
+	 */
+	public <T> T send(ResponseHandler<T> handler) throws Exception {
+		EtmPoint etmPoint = etmMonitor.createPoint("GETRequest.send");
+		try {
+			URLConnection con = URLConnections.open(this.url, this.tlsConfig, this.connectTimeout, this.readTimeout);
+			try (Reader in = new InputStreamReader(URLConnections.input(con), URLConnections.charset(con.getContentType()))) {
+				return handler.handle(in);
+			}
+		} finally {
+			etmPoint.collect();
+		}
+	}
 }
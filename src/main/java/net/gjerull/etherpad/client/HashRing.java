@@ -0,0 +1,75 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * An immutable consistent hash ring. Each node is placed on the ring at a number of points, and a key belongs to
+ * the node of the first point at or after the key's hash.<br />
+ * <br />
+ * Adding a node to a ring of n nodes moves about 1/(n+1) of the keys, all of them to the new node.
+ */
+final class HashRing {
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param nodes the names of the nodes, which decide their places on the ring
+     * @param replicas the number of points of each node
+     */
+    HashRing(Collection<String> nodes, int replicas) {
+        int size = nodes.size() * replicas;
+        Integer[] order = new Integer[size];
+        final long[] hashes = new long[size];
+        String[] names = new String[size];
+        int i = 0;
+        for (String node : nodes) {
+            for (int replica = 0; replica < replicas; replica++) {
+                hashes[i] = hash(node + "#" + replica);
+                names[i] = node;
+                order[i] = i;
+                i++;
+            }
+        }
+        Arrays.sort(order, Comparator.comparingLong(index -> hashes[index]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (i = 0; i < size; i++) {
+            this.points[i] = hashes[order[i]];
+            this.owners[i] = names[order[i]];
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the node owning the key, or null if the ring is empty
+     */
+    String owner(CharSequence key) {
+        if (this.points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(this.points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return this.owners[index == this.points.length ? 0 : index];
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the characters, mixed with the MurmurHash3 finalizer to spread nearby keys.
+     */
+    static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
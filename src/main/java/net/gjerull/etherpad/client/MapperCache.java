@@ -0,0 +1,425 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of the ids that createAuthorIfNotExistsFor and createGroupIfNotExistsFor map the application's
+ * authors and groups to, evicting the least recently used mappings.<br />
+ * <br />
+ * A mapping only changes when its group is deleted, so once resolved it is served locally until evicted.
+ * {@link EPLiteClient#deleteGroup(String)} drops the mappings of the group; after deleting groups through another
+ * client, call {@link #clear()}. Concurrent callers resolving the same mapper share one call. The name given to
+ * createAuthorIfNotExistsFor is only sent when the author is first resolved, and only the first of concurrent
+ * callers' names is sent.<br />
+ * <br />
+ * With a store file, every new or dropped mapping is appended to the file and the file is read back on creation,
+ * so a restarted application starts with the most recent mappings instead of resolving them all again. The file is
+ * rewritten with the cached mappings once it holds twice as many lines as the cache. The caller whose mapping filled
+ * the file rewrites it, holding up the callers served from the cache only while the mappings are copied, not while
+ * they are written.<br />
+ * <br />
+ * <code>
+ * MapperCache cache = new MapperCache(100000, Paths.get("/var/lib/myapp/etherpad-mappers"));<br />
+ * client.setMapperCache(cache);
+ * </code>
+ */
+public final class MapperCache implements Closeable {
+    static final char AUTHOR = 'A';
+    static final char GROUP = 'G';
+
+    /** Stores smaller than this are not compacted */
+    private static final long MIN_COMPACTED_LINES = 1024L;
+
+    private final int maxEntries;
+    private final Path store;
+    private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private BufferedWriter writer;
+    private boolean closed;
+    /** The lines appended while the store is rewritten, or null if it is not */
+    private List<String> compactionTail;
+    private long storeLines;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long storeErrorCount;
+
+    /**
+     * Creates a cache held in memory only.
+     *
+     * @param maxEntries the maximum number of mappings
+     */
+    public MapperCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.store = null;
+    }
+
+    /**
+     * Creates a cache kept in a store file, loading the mappings it already holds.
+     *
+     * @param maxEntries the maximum number of mappings held in memory
+     * @param store the store file, created if missing
+     * @throws IOException if the store cannot be read or written
+     */
+    public MapperCache(int maxEntries, Path store) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.store = store;
+        if (Files.exists(store)) {
+            try (BufferedReader reader = Files.newBufferedReader(store, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    this.storeLines++;
+                    String[] fields = line.split("\t", -1);
+                    // A line cut short by a crash is skipped
+                    if (fields.length == 3 && fields[0].length() == 1) {
+                        try {
+                            String key = fields[0] + URLDecoder.decode(fields[1], StandardCharsets.UTF_8);
+                            if (fields[2].isEmpty()) {
+                                // A dropped mapping
+                                this.entries.remove(key);
+                            } else {
+                                this.add(key, URLDecoder.decode(fields[2], StandardCharsets.UTF_8));
+                            }
+                        } catch (IllegalArgumentException e) {
+                            continue;
+                        }
+                    }
+                }
+            }
+        }
+        this.evictionCount = 0L;
+        if (this.storeLines >= this.compactionLines()) {
+            this.compact();
+            if (this.writer == null) {
+                throw new IOException("The store " + store + " cannot be opened");
+            }
+        } else {
+            this.writer = Files.newBufferedWriter(store, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Returns the id of a mapper, resolving and caching it on a miss.
+     *
+     * @param kind AUTHOR or GROUP
+     * @param mapper the application's id of the author or group
+     * @param resolver resolves the id through the API, returning null if the response had none
+     * @return the id, or null if it could not be resolved
+     */
+    String resolve(char kind, String mapper, final Supplier<String> resolver) {
+        final String key = kind + mapper;
+        synchronized (this) {
+            String id = this.entries.get(key);
+            if (id != null) {
+                this.hitCount++;
+                return id;
+            }
+            this.missCount++;
+        }
+        return this.flights.execute(key, () -> {
+            String id = resolver.get();
+            if (id != null) {
+                this.put(key, id);
+                this.compactIfFull();
+            }
+            return id;
+        });
+    }
+
+    private synchronized void put(String key, String id) {
+        if (id.equals(this.entries.get(key))) {
+            return;
+        }
+        this.add(key, id);
+        this.append(key, id);
+    }
+
+    /**
+     * Drops the mappings to an id, e.g. of a deleted group, which would otherwise be mapped to a new one.
+     *
+     * @param kind AUTHOR or GROUP
+     * @param id the id
+     */
+    void forget(char kind, String id) {
+        synchronized (this) {
+            Iterator<Map.Entry<String, String>> mappings = this.entries.entrySet().iterator();
+            while (mappings.hasNext()) {
+                Map.Entry<String, String> mapping = mappings.next();
+                if (mapping.getKey().charAt(0) == kind && mapping.getValue().equals(id)) {
+                    mappings.remove();
+                    this.append(mapping.getKey(), "");
+                }
+            }
+        }
+        this.compactIfFull();
+    }
+
+    /**
+     * Appends a mapping to the store, an empty id dropping it.
+     */
+    private void append(String key, String id) {
+        if (this.writer == null) {
+            if (this.store != null && !this.closed) {
+                // The store could not be reopened after a rewrite
+                this.storeErrorCount++;
+            }
+            return;
+        }
+        String line = line(key, id);
+        try {
+            this.writer.write(line);
+            this.writer.flush();
+            this.storeLines++;
+            if (this.compactionTail != null) {
+                this.compactionTail.add(line);
+            }
+        } catch (IOException e) {
+            // The mapping is resolved again after a restart
+            this.storeErrorCount++;
+        }
+    }
+
+    /**
+     * Rewrites the store with the cached mappings once it holds too many lines. The mappings are copied under the
+     * lock and written to a new file without it; the lines appended meanwhile are added to the new file before it
+     * replaces the store.
+     */
+    private void compactIfFull() {
+        List<String> lines;
+        List<String> tail;
+        synchronized (this) {
+            if (this.writer == null || this.compactionTail != null || this.storeLines < this.compactionLines()) {
+                return;
+            }
+            lines = this.lines();
+            tail = new ArrayList<>();
+            this.compactionTail = tail;
+        }
+        Path compacted = null;
+        try {
+            compacted = Files.createTempFile(this.store.toAbsolutePath().getParent(),
+                    this.store.getFileName().toString(), ".tmp");
+            write(compacted, lines);
+            synchronized (this) {
+                if (this.writer == null || this.compactionTail != tail) {
+                    // Closed or cleared meanwhile
+                    Files.deleteIfExists(compacted);
+                    return;
+                }
+                try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8,
+                        StandardOpenOption.APPEND)) {
+                    for (String line : tail) {
+                        out.write(line);
+                    }
+                }
+                try {
+                    BufferedWriter appended = this.writer;
+                    this.writer = null;
+                    appended.close();
+                    Files.move(compacted, this.store, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    this.storeLines = lines.size() + tail.size();
+                } finally {
+                    this.reopen();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                this.storeErrorCount++;
+            }
+            deleteQuietly(compacted);
+        } finally {
+            synchronized (this) {
+                if (this.compactionTail == tail) {
+                    this.compactionTail = null;
+                }
+            }
+        }
+    }
+
+    private void add(String key, String id) {
+        this.entries.put(key, id);
+        Iterator<String> eldest = this.entries.keySet().iterator();
+        while (this.entries.size() > this.maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            this.evictionCount++;
+        }
+    }
+
+    private long compactionLines() {
+        return Math.max(MIN_COMPACTED_LINES, 2L * this.maxEntries);
+    }
+
+    /**
+     * Rewrites the store with the cached mappings, least recently used first, while holding the lock.
+     */
+    private void compact() throws IOException {
+        BufferedWriter appended = this.writer;
+        this.writer = null;
+        try {
+            if (appended != null) {
+                appended.close();
+            }
+            Path compacted = this.compactedPath();
+            write(compacted, this.lines());
+            Files.move(compacted, this.store, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.storeLines = this.entries.size();
+        } finally {
+            this.reopen();
+        }
+    }
+
+    /**
+     * Opens the store for appending, counting a store error if it cannot be.
+     */
+    private void reopen() {
+        try {
+            this.writer = Files.newBufferedWriter(this.store, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            this.storeErrorCount++;
+        }
+    }
+
+    private Path compactedPath() {
+        return this.store.resolveSibling(this.store.getFileName() + ".tmp");
+    }
+
+    /**
+     * @return the store lines of the cached mappings, least recently used first
+     */
+    private List<String> lines() {
+        List<String> lines = new ArrayList<>(this.entries.size());
+        for (Map.Entry<String, String> entry : this.entries.entrySet()) {
+            lines.add(line(entry.getKey(), entry.getValue()));
+        }
+        return lines;
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Left behind, the store is still complete
+        }
+    }
+
+    private static void write(Path path, List<String> lines) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                out.write(line);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached mapping and empties the store. The counters are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        // A rewrite in progress would bring back the dropped mappings
+        this.compactionTail = null;
+        if (this.store != null) {
+            try {
+                this.compact();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the store file. Mappings resolved afterwards are only kept in memory.
+     */
+    public synchronized void close() throws IOException {
+        this.closed = true;
+        if (this.writer != null) {
+            this.writer.close();
+            this.writer = null;
+        }
+    }
+
+    public int getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return the share of resolutions served from the cache, from 0 to 1
+     */
+    public synchronized double getHitRatio() {
+        long total = this.hitCount + this.missCount;
+        return total > 0 ? (double) this.hitCount / total : 0.0;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * @return the number of mappings in the store file, counting those written again, or 0 without a store
+     */
+    public synchronized long getStoreSize() {
+        return this.storeLines;
+    }
+
+    /**
+     * @return the number of mappings that could not be written to the store
+     */
+    public synchronized long getStoreErrorCount() {
+        return this.storeErrorCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MapperCache[entries=" + this.entries.size() + "/" + this.maxEntries + ", hits=" + this.hitCount
+                + ", misses=" + this.missCount + ", evictions=" + this.evictionCount + ", store=" + this.storeLines + "]";
+    }
+
+    private static String line(String key, String id) {
+        return key.charAt(0) + "\t" + encode(key.substring(1)) + "\t" + encode(id) + "\n";
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
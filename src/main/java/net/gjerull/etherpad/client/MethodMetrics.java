@@ -0,0 +1,100 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one API method: calls, errors by response code, request and response sizes and latencies.
+ */
+public final class MethodMetrics {
+    private final String apiMethod;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> errorsByCode = new ConcurrentHashMap<>();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseChars = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    MethodMetrics(String apiMethod) {
+        this.apiMethod = apiMethod;
+    }
+
+    void record(long nanos, long requestBytes, long responseChars, EPLiteException error) {
+        this.calls.increment();
+        this.latency.record(nanos);
+        this.requestBytes.add(requestBytes);
+        this.responseChars.add(responseChars);
+        if (error != null) {
+            this.errors.increment();
+            this.errorsByCode.computeIfAbsent(error.getCode(), code -> new LongAdder()).increment();
+        }
+    }
+
+    public String getApiMethod() {
+        return this.apiMethod;
+    }
+
+    /**
+     * @return the number of calls, including failed calls
+     */
+    public long getCalls() {
+        return this.calls.sum();
+    }
+
+    /**
+     * @return the number of calls that failed
+     */
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    /**
+     * Returns the number of failed calls by Etherpad Lite response code. Errors that did not come from an
+     * API response, such as connection failures, are counted under {@link EPLiteException#NO_CODE}.
+     *
+     * @return a Map of response code to number of errors
+     */
+    public Map<Integer, Long> getErrorsByCode() {
+        Map<Integer, Long> errors = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : this.errorsByCode.entrySet()) {
+            errors.put(entry.getKey(), entry.getValue().sum());
+        }
+        return errors;
+    }
+
+    /**
+     * @return the total size of the request targets and bodies sent, in bytes
+     */
+    public long getRequestBytes() {
+        return this.requestBytes.sum();
+    }
+
+    /**
+     * @return the total number of characters of the response bodies received, which equals
+     *         their size in bytes for ASCII responses
+     */
+    public long getResponseChars() {
+        return this.responseChars.sum();
+    }
+
+    /**
+     * @return the histogram of call latencies, including failed calls
+     */
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s calls=%d errors=%d%s requestBytes=%d responseChars=%d"
+                        + " p50=%dus p99=%dus p999=%dus max=%dus",
+                this.apiMethod, this.getCalls(), this.getErrors(),
+                this.errorsByCode.isEmpty() ? "" : " byCode=" + this.getErrorsByCode(),
+                this.getRequestBytes(), this.getResponseChars(),
+                this.latency.getPercentile(50) / 1000, this.latency.getPercentile(99) / 1000,
+                this.latency.getPercentile(99.9) / 1000, this.latency.getMax() / 1000);
+    }
+}
@@ -1,10 +1,14 @@
 package net.gjerull.etherpad.client;
 
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 
 /**
  * A class for easily executing an HTTP POST request.<br />
@@ -19,16 +23,77 @@ import java.io.OutputStreamWriter;
 public class POSTRequest implements Request {
     private final URL url;
     private final String body;
+    private final StreamingBody streamingBody;
+    private final TlsConfig tlsConfig;
+    private final int connectTimeout;
+    private final int readTimeout;
 
     /**
-     * Instantiates a new POSTRequest.
+     * Instantiates a new POSTRequest using the JVM's default TLS settings.
      *
      * @param url the URL object
      * @param body url-encoded (application/x-www-form-urlencoded) request body
      */
     public POSTRequest(URL url, String body) {
+        this(url, body, null);
+    }
+
+    /**
+     * Instantiates a new POSTRequest.
+     *
+     * @param url the URL object
+     * @param body url-encoded (application/x-www-form-urlencoded) request body
+     * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+     */
+    public POSTRequest(URL url, String body, TlsConfig tlsConfig) {
+        this(url, body, tlsConfig, 0, 0);
+    }
+
+    /**
+     * Instantiates a new POSTRequest with timeouts.
+     *
+     * @param url the URL object
+     * @param body url-encoded (application/x-www-form-urlencoded) request body
+     * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+     * @param connectTimeout the time allowed to connect in milliseconds, or 0 for no limit
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     */
+    public POSTRequest(URL url, String body, TlsConfig tlsConfig, int connectTimeout, int readTimeout) {
         this.url = url;
         this.body = body;
+        this.streamingBody = null;
+        this.tlsConfig = tlsConfig;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Instantiates a new POSTRequest whose body is streamed in chunks while it is sent.
+     *
+     * @param url the URL object
+     * @param body the request body
+     * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+     */
+    public POSTRequest(URL url, StreamingBody body, TlsConfig tlsConfig) {
+        this(url, body, tlsConfig, 0, 0);
+    }
+
+    /**
+     * Instantiates a new POSTRequest whose body is streamed in chunks while it is sent, with timeouts.
+     *
+     * @param url the URL object
+     * @param body the request body
+     * @param tlsConfig the TLS settings for https connections, or null for the JVM's defaults
+     * @param connectTimeout the time allowed to connect in milliseconds, or 0 for no limit
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     */
+    public POSTRequest(URL url, StreamingBody body, TlsConfig tlsConfig, int connectTimeout, int readTimeout) {
+        this.url = url;
+        this.body = null;
+        this.streamingBody = body;
+        this.tlsConfig = tlsConfig;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
     }
 
     /**
@@ -37,14 +102,9 @@ public class POSTRequest implements Request {
      * @return String
      */
     public String send() throws Exception {
-        URLConnection con = this.url.openConnection();
-        con.setDoOutput(true);
-
-        OutputStreamWriter out = new OutputStreamWriter(con.getOutputStream());
-        out.write(this.body);
-        out.close();
+        URLConnection con = this.write();
 
-        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+        BufferedReader in = new BufferedReader(new InputStreamReader(URLConnections.input(con)));
         StringBuilder response = new StringBuilder();
         String buffer;
         while ((buffer = in.readLine()) != null) {
@@ -53,4 +113,38 @@ public class POSTRequest implements Request {
         in.close();
         return response.toString();
     }
+
+    /**
+     * Sends the request and streams the response body to the handler.
+     *
+     * @param handler the handler parsing the body
+     * @return the handler's result
+     */
+    public <T> T send(ResponseHandler<T> handler) throws Exception {
+        URLConnection con = this.write();
+
+        try (Reader in = new InputStreamReader(URLConnections.input(con), URLConnections.charset(con.getContentType()))) {
+            return handler.handle(in);
+        }
+    }
+
+    private URLConnection write() throws IOException {
+        URLConnection con = URLConnections.open(this.url, this.tlsConfig, this.connectTimeout, this.readTimeout);
+        con.setDoOutput(true);
+
+        if (this.streamingBody != null) {
+            if (con instanceof HttpURLConnection) {
+                // Without a streaming mode, HttpURLConnection buffers the whole body
+                ((HttpURLConnection) con).setChunkedStreamingMode(0);
+            }
+            try (OutputStream out = con.getOutputStream()) {
+                this.streamingBody.writeTo(out);
+            }
+            return con;
+        }
+        OutputStreamWriter out = new OutputStreamWriter(con.getOutputStream());
+        out.write(this.body);
+        out.close();
+        return con;
+    }
 }
@@ -0,0 +1,57 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The ids of an author's access to a group, as returned by
+ * {@link EPLiteClient#grantPadAccess(String, String, String, String, long)} and
+ * {@link EPLiteAsyncClient#grantPadAccess(String, String, String, String, long)}.
+ */
+public final class PadAccessGrant {
+    private final String sessionID;
+    private final String groupID;
+    private final String authorID;
+    private final String padID;
+    private final long validUntil;
+
+    PadAccessGrant(String sessionID, String groupID, String authorID, String padID, long validUntil) {
+        this.sessionID = sessionID;
+        this.groupID = groupID;
+        this.authorID = authorID;
+        this.padID = padID;
+        this.validUntil = validUntil;
+    }
+
+    /**
+     * @return the session to set in the browser's sessionID cookie
+     */
+    public String getSessionID() {
+        return this.sessionID;
+    }
+
+    public String getGroupID() {
+        return this.groupID;
+    }
+
+    public String getAuthorID() {
+        return this.authorID;
+    }
+
+    /**
+     * @return the id of the group pad, groupID$padName, or null if no pad was asked for
+     */
+    public String getPadID() {
+        return this.padID;
+    }
+
+    /**
+     * @return the end of the session in seconds since the epoch
+     */
+    public long getValidUntil() {
+        return this.validUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "PadAccessGrant{session " + this.sessionID + ", group " + this.groupID + ", author " + this.authorID
+                + ", pad " + this.padID + ", validUntil " + this.validUntil + "}";
+    }
+}
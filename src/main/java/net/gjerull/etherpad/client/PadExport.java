@@ -0,0 +1,43 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The exported content of one pad. Content that was not requested from the {@link PadExporter} is null.
+ */
+public final class PadExport {
+    private final String padId;
+    private final String text;
+    private final String html;
+    private final Long revisionsCount;
+
+    PadExport(String padId, String text, String html, Long revisionsCount) {
+        this.padId = padId;
+        this.text = text;
+        this.html = html;
+        this.revisionsCount = revisionsCount;
+    }
+
+    public String getPadId() {
+        return this.padId;
+    }
+
+    /**
+     * @return the latest text of the pad, or null if not exported
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * @return the latest HTML of the pad, or null if not exported
+     */
+    public String getHTML() {
+        return this.html;
+    }
+
+    /**
+     * @return the number of revisions of the pad, or null if not exported
+     */
+    public Long getRevisionsCount() {
+        return this.revisionsCount;
+    }
+}
@@ -0,0 +1,34 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * Receives the results of a {@link PadExporter} run as each pad completes.<br />
+ * <br />
+ * The exporter never calls a sink from two threads at the same time, so implementations do not need
+ * to be thread-safe. Calls should return quickly, since the export workers wait for them.
+ */
+public interface PadExportSink {
+    /**
+     * Called with the content of a pad that was exported. If it throws a RuntimeException, the pad is reported
+     * to {@link #failed(String, Exception)} with that exception instead.
+     *
+     * @param export the pad's content
+     */
+    void exported(PadExport export);
+
+    /**
+     * Called when a pad could not be exported. The run continues with the other pads. A RuntimeException thrown
+     * here is ignored.
+     *
+     * @param padId the pad's id string
+     * @param cause the reason
+     */
+    void failed(String padId, Exception cause);
+
+    /**
+     * Called after each pad with the progress of the run so far. A RuntimeException thrown here is ignored.
+     *
+     * @param progress the progress of the run
+     */
+    default void progress(ExportReport progress) {
+    }
+}
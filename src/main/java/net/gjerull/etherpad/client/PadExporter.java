@@ -0,0 +1,219 @@
+package net.gjerull.etherpad.client;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports the content of many pads with a bounded number of requests in flight.<br />
+ * <br />
+ * Each pad's result is handed to a {@link PadExportSink} as soon as it completes, so nothing is collected
+ * in memory. A pad that fails is reported to the sink and the run continues. The client's transport should
+ * allow at least as many connections as the concurrency, e.g. a {@link PooledTransport} with a matching
+ * maxPerRoute. The workers make their calls as {@link Priority#BATCH}, behind interactive calls sharing the
+ * client's {@link ConcurrencyLimiter}.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadExporter exporter = new PadExporter(client, 16);<br />
+ * ExportReport report = exporter.exportAllPads(EnumSet.of(PadExporter.Content.TEXT), sink);
+ * </code>
+ */
+public class PadExporter {
+    /**
+     * The content fetched for each pad
+     */
+    public enum Content {
+        TEXT, HTML, REVISIONS_COUNT
+    }
+
+    private final EPLiteClient client;
+    private final int concurrency;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param client the client used to fetch pads
+     * @param concurrency the maximum number of pads fetched at the same time
+     */
+    public PadExporter(EPLiteClient client, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.client = client;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Exports every pad of the instance, as returned by listAllPads.
+     *
+     * @param content the content to fetch for each pad
+     * @param sink the sink receiving each pad
+     * @return the final report
+     */
+    public ExportReport exportAllPads(Set<Content> content, PadExportSink sink) throws InterruptedException {
+        return this.exportPads(this.client.listAllPadIDs().getPadIDs(), content, sink);
+    }
+
+    /**
+     * Exports every pad of a group, as returned by listPads.
+     *
+     * @param groupID the group's id string
+     * @param content the content to fetch for each pad
+     * @param sink the sink receiving each pad
+     * @return the final report
+     */
+    public ExportReport exportGroup(String groupID, Set<Content> content, PadExportSink sink)
+            throws InterruptedException {
+        return this.exportPads(this.client.listPadIDs(groupID).getPadIDs(), content, sink);
+    }
+
+    /**
+     * Exports the given pads. Pad ids are taken from the iterable only as workers become free,
+     * so it may be lazily produced.
+     *
+     * @param padIds the pads' id strings
+     * @param content the content to fetch for each pad
+     * @param sink the sink receiving each pad
+     * @return the final report
+     */
+    public ExportReport exportPads(Iterable<String> padIds, Set<Content> content, PadExportSink sink)
+            throws InterruptedException {
+        Run run = new Run(EnumSet.copyOf(content), sink);
+        ExecutorService workers = Executors.newFixedThreadPool(this.concurrency, new WorkerFactory());
+        // Bounds the pads waiting in the queue as well as those in flight
+        Semaphore slots = new Semaphore(this.concurrency * 2);
+        try {
+            for (String padId : padIds) {
+                slots.acquire();
+                run.submitted();
+                workers.execute(() -> {
+                    Priority.Scope batch = Priority.BATCH.apply();
+                    try {
+                        run.export(padId);
+                    } finally {
+                        batch.close();
+                        slots.release();
+                    }
+                });
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                continue;
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return run.finish();
+    }
+
+    /**
+     * The state of one export run.
+     */
+    private final class Run {
+        private final Set<Content> content;
+        private final PadExportSink sink;
+        private final long startedAt = System.nanoTime();
+        private long submitted;
+        private long exported;
+        private long failed;
+        private long characters;
+        private boolean complete;
+
+        private Run(Set<Content> content, PadExportSink sink) {
+            this.content = content;
+            this.sink = sink;
+        }
+
+        private synchronized void submitted() {
+            this.submitted++;
+        }
+
+        private void export(String padId) {
+            PadExport export;
+            try {
+                export = this.fetch(padId);
+            } catch (RuntimeException e) {
+                this.failed(padId, e);
+                return;
+            }
+            synchronized (this) {
+                try {
+                    this.sink.exported(export);
+                } catch (RuntimeException e) {
+                    // The pad did not reach the sink
+                    this.failed(padId, e);
+                    return;
+                }
+                this.exported++;
+                this.characters += length(export.getText()) + length(export.getHTML());
+                this.progress();
+            }
+        }
+
+        private synchronized void failed(String padId, RuntimeException cause) {
+            this.failed++;
+            try {
+                this.sink.failed(padId, cause);
+            } catch (RuntimeException e) {
+                // The pad is counted as failed either way
+            }
+            this.progress();
+        }
+
+        private void progress() {
+            try {
+                this.sink.progress(this.report());
+            } catch (RuntimeException e) {
+                // The pad is counted already, the next report includes it
+            }
+        }
+
+        private PadExport fetch(String padId) {
+            String text = null;
+            String html = null;
+            Long revisionsCount = null;
+            if (this.content.contains(Content.TEXT)) {
+                text = client.getPadText(padId).getText();
+            }
+            if (this.content.contains(Content.HTML)) {
+                html = (String) client.getHTML(padId).get("html");
+            }
+            if (this.content.contains(Content.REVISIONS_COUNT)) {
+                Object revisions = client.getRevisionsCount(padId).get("revisions");
+                revisionsCount = revisions instanceof Number ? ((Number) revisions).longValue() : null;
+            }
+            return new PadExport(padId, text, html, revisionsCount);
+        }
+
+        private synchronized ExportReport finish() {
+            this.complete = true;
+            return this.report();
+        }
+
+        private ExportReport report() {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startedAt);
+            return new ExportReport(this.exported, this.failed, this.submitted, this.characters, elapsed, this.complete);
+        }
+
+        private long length(String value) {
+            return value != null ? value.length() : 0L;
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "etherpad-export-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of pad ids, as returned by {@link EPLiteClient#listAllPadIDs()} and the other typed pad listings.
+ */
+public final class PadList {
+    static final Set<String> FIELDS = Collections.singleton("padIDs");
+
+    private final List<String> padIDs;
+
+    PadList(List<String> padIDs) {
+        this.padIDs = Collections.unmodifiableList(padIDs);
+    }
+
+    static PadList from(Object data) {
+        Object padIDs = ResultFields.object(data).get("padIDs");
+        if (padIDs == null) {
+            return new PadList(Collections.<String>emptyList());
+        }
+        if (!(padIDs instanceof List)) {
+            throw new EPLiteException("Expected a list in \"padIDs\", got " + padIDs);
+        }
+        List<?> values = (List<?>) padIDs;
+        List<String> ids = new ArrayList<>(values.size());
+        for (Object value : values) {
+            ids.add(String.valueOf(value));
+        }
+        return new PadList(ids);
+    }
+
+    /**
+     * @return the unmodifiable list of pad ids
+     */
+    public List<String> getPadIDs() {
+        return this.padIDs;
+    }
+
+    public int size() {
+        return this.padIDs.size();
+    }
+
+    @Override
+    public String toString() {
+        return "PadList" + this.padIDs;
+    }
+}
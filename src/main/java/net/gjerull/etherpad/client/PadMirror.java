@@ -0,0 +1,156 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps local copies of pads' text up to date by applying the changesets of new revisions.<br />
+ * <br />
+ * The first sync of a pad fetches its text. Later syncs ask for the revision count and fetch only the
+ * changesets of the revisions added since, falling back to fetching the text again if there are more than
+ * maxChangesets of them, if the pad has fewer revisions than mirrored (it was deleted and recreated) or if a
+ * changeset does not apply.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PadMirror mirror = new PadMirror(client);<br />
+ * String text = mirror.sync("my_pad");
+ * </code>
+ */
+public class PadMirror {
+    private static final int DEFAULT_MAX_CHANGESETS = 200;
+
+    private final EPLiteClient client;
+    private final int maxChangesets;
+    private final ConcurrentMap<String, MirroredPad> pads = new ConcurrentHashMap<>();
+    private final AtomicLong changesetsApplied = new AtomicLong();
+    private final AtomicLong textFetches = new AtomicLong();
+
+    /**
+     * Creates a mirror fetching the text again when more than 200 revisions are missing.
+     *
+     * @param client the client used to fetch pads
+     */
+    public PadMirror(EPLiteClient client) {
+        this(client, DEFAULT_MAX_CHANGESETS);
+    }
+
+    /**
+     * Creates a mirror.
+     *
+     * @param client the client used to fetch pads
+     * @param maxChangesets the largest number of changesets fetched in one sync before fetching the text instead
+     */
+    public PadMirror(EPLiteClient client, int maxChangesets) {
+        this.client = client;
+        this.maxChangesets = maxChangesets;
+    }
+
+    /**
+     * Brings the local copy of a pad up to its latest revision.
+     *
+     * @param padId the pad's id string
+     * @return the pad's text at its latest revision
+     */
+    public String sync(String padId) {
+        MirroredPad pad = this.pads.computeIfAbsent(padId, id -> new MirroredPad());
+        synchronized (pad) {
+            long head = this.client.countRevisions(padId).getRevisions();
+            if (pad.text == null || head < pad.revision || head - pad.revision > this.maxChangesets) {
+                this.fetchText(padId, pad, head);
+            } else if (head > pad.revision && !this.applyChangesets(padId, pad, head)) {
+                this.fetchText(padId, pad, head);
+            }
+            return pad.text;
+        }
+    }
+
+    /**
+     * @param padId the pad's id string
+     * @return the mirrored text of the pad, or null if it has not been synced
+     */
+    public String getText(String padId) {
+        MirroredPad pad = this.pads.get(padId);
+        if (pad == null) {
+            return null;
+        }
+        synchronized (pad) {
+            return pad.text;
+        }
+    }
+
+    /**
+     * @param padId the pad's id string
+     * @return the mirrored revision of the pad, or -1 if it has not been synced
+     */
+    public long getRevision(String padId) {
+        MirroredPad pad = this.pads.get(padId);
+        if (pad == null) {
+            return -1L;
+        }
+        synchronized (pad) {
+            return pad.text != null ? pad.revision : -1L;
+        }
+    }
+
+    /**
+     * Drops the local copy of a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public void forget(String padId) {
+        this.pads.remove(padId);
+    }
+
+    /**
+     * @return the number of changesets applied to local copies
+     */
+    public long getChangesetsApplied() {
+        return this.changesetsApplied.get();
+    }
+
+    /**
+     * @return the number of times a pad's whole text was fetched
+     */
+    public long getTextFetches() {
+        return this.textFetches.get();
+    }
+
+    private void fetchText(String padId, MirroredPad pad, long head) {
+        this.textFetches.incrementAndGet();
+        pad.text = this.client.getPadText(padId, head).getText();
+        pad.revision = head;
+    }
+
+    /**
+     * Applies the changesets of the revisions after the mirrored one, up to head.
+     *
+     * @return false if a changeset did not apply to the mirrored text
+     */
+    private boolean applyChangesets(String padId, MirroredPad pad, long head) {
+        StringBuilder current = new StringBuilder(pad.text);
+        StringBuilder next = new StringBuilder(pad.text.length());
+        for (long rev = pad.revision + 1; rev <= head; rev++) {
+            next.setLength(0);
+            try {
+                Changeset.parse(this.client.getRevisionChangeset(padId, rev)).applyTo(current, next);
+            } catch (ChangesetException e) {
+                return false;
+            }
+            this.changesetsApplied.incrementAndGet();
+            StringBuilder swap = current;
+            current = next;
+            next = swap;
+        }
+        pad.text = current.toString();
+        pad.revision = head;
+        return true;
+    }
+
+    private static final class MirroredPad {
+        private String text;
+        private long revision;
+    }
+}
@@ -0,0 +1,33 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The text of a pad, as returned by {@link EPLiteClient#getPadText(String)}.
+ */
+public final class PadText {
+    static final Set<String> FIELDS = Collections.singleton("text");
+
+    private final String text;
+
+    PadText(String text) {
+        this.text = text;
+    }
+
+    static PadText from(Object data) {
+        return new PadText(ResultFields.string(ResultFields.object(data), "text"));
+    }
+
+    /**
+     * @return the text, or null if the response had none
+     */
+    public String getText() {
+        return this.text;
+    }
+
+    @Override
+    public String toString() {
+        return "PadText{" + (this.text != null ? this.text.length() + " chars" : "null") + "}";
+    }
+}
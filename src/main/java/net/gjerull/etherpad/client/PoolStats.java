@@ -0,0 +1,80 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * A point-in-time snapshot of the state of a {@link PooledTransport}'s connection pool.
+ */
+public final class PoolStats {
+    private final int leased;
+    private final int idle;
+    private final int pending;
+    private final long created;
+    private final long evicted;
+    private final int maxTotal;
+    private final int maxPerRoute;
+
+    PoolStats(int leased, int idle, int pending, long created, long evicted, int maxTotal, int maxPerRoute) {
+        this.leased = leased;
+        this.idle = idle;
+        this.pending = pending;
+        this.created = created;
+        this.evicted = evicted;
+        this.maxTotal = maxTotal;
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    /**
+     * @return the number of connections currently in use by a request
+     */
+    public int getLeased() {
+        return this.leased;
+    }
+
+    /**
+     * @return the number of open connections waiting to be reused
+     */
+    public int getIdle() {
+        return this.idle;
+    }
+
+    /**
+     * @return the number of requests waiting for a connection to become available
+     */
+    public int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * @return the total number of connections opened since the pool was created
+     */
+    public long getCreated() {
+        return this.created;
+    }
+
+    /**
+     * @return the total number of connections closed because they were idle, too old or stale
+     */
+    public long getEvicted() {
+        return this.evicted;
+    }
+
+    /**
+     * @return the maximum number of connections across all routes
+     */
+    public int getMaxTotal() {
+        return this.maxTotal;
+    }
+
+    /**
+     * @return the maximum number of connections per route
+     */
+    public int getMaxPerRoute() {
+        return this.maxPerRoute;
+    }
+
+    @Override
+    public String toString() {
+        return "[leased: " + this.leased + "; idle: " + this.idle + "; pending: " + this.pending
+                + "; created: " + this.created + "; evicted: " + this.evicted
+                + "; max: " + this.maxTotal + "; max per route: " + this.maxPerRoute + "]";
+    }
+}
@@ -0,0 +1,180 @@
+package net.gjerull.etherpad.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import javax.net.ssl.SSLSocket;
+
+/**
+ * A persistent socket connection owned by a {@link ConnectionPool}.
+ */
+final class PooledConnection {
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Connections idle for longer than this are probed with a read before they are reused */
+    static final long PROBE_IDLE_MILLIS = 1000L;
+
+    final Route route;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final long createdAt;
+    private long lastUsedAt;
+    private int useCount;
+
+    private PooledConnection(Route route, Socket socket) throws IOException {
+        this.route = route;
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsedAt = this.createdAt;
+    }
+
+    /**
+     * Opens a new connection to the given route with timeouts. The read timeout also bounds the TLS handshake.
+     *
+     * @param route the route to connect to
+     * @param tlsConfig the TLS settings used for https routes
+     * @param connectTimeout the time allowed to connect in milliseconds, or 0 for no limit
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     * @return PooledConnection
+     */
+    static PooledConnection open(Route route, TlsConfig tlsConfig, int connectTimeout, int readTimeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.setSoTimeout(readTimeout);
+            socket.connect(new InetSocketAddress(route.host, route.port), connectTimeout);
+            if (route.isSecure()) {
+                SSLSocket sslSocket = (SSLSocket) tlsConfig.getSocketFactory()
+                        .createSocket(socket, route.host, route.port, true);
+                socket = sslSocket;
+                tlsConfig.handshake(sslSocket, route.host);
+            }
+            return new PooledConnection(route, socket);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the time allowed to wait for data, for the next request on this connection.
+     *
+     * @param readTimeout the timeout in milliseconds, or 0 for no limit
+     */
+    void setReadTimeout(int readTimeout) throws IOException {
+        this.socket.setSoTimeout(readTimeout);
+    }
+
+    InputStream getInputStream() {
+        return this.in;
+    }
+
+    OutputStream getOutputStream() {
+        return this.out;
+    }
+
+    /**
+     * @return true if this connection has already served at least one request
+     */
+    boolean isReused() {
+        return this.useCount > 1;
+    }
+
+    void markLeased() {
+        this.useCount++;
+    }
+
+    void markReleased(long now) {
+        this.lastUsedAt = now;
+    }
+
+    /**
+     * Returns true if the connection has outlived its lifetime or has been idle for too long.
+     *
+     * @param now the current time in milliseconds
+     * @param idleTimeoutMillis the maximum idle time, or 0 for no limit
+     * @param maxLifetimeMillis the maximum lifetime, or 0 for no limit
+     * @return boolean
+     */
+    boolean isExpired(long now, long idleTimeoutMillis, long maxLifetimeMillis) {
+        return (idleTimeoutMillis > 0 && now - this.lastUsedAt >= idleTimeoutMillis)
+                || (maxLifetimeMillis > 0 && now - this.createdAt >= maxLifetimeMillis);
+    }
+
+    /**
+     * Returns the time at which the connection expires if it stays idle.
+     *
+     * @param idleTimeoutMillis the maximum idle time, or 0 for no limit
+     * @param maxLifetimeMillis the maximum lifetime, or 0 for no limit
+     * @return the time in milliseconds, or Long.MAX_VALUE if it never expires
+     */
+    long expiresAt(long idleTimeoutMillis, long maxLifetimeMillis) {
+        long expiresAt = Long.MAX_VALUE;
+        if (idleTimeoutMillis > 0) {
+            expiresAt = this.lastUsedAt + idleTimeoutMillis;
+        }
+        if (maxLifetimeMillis > 0) {
+            expiresAt = Math.min(expiresAt, this.createdAt + maxLifetimeMillis);
+        }
+        return expiresAt;
+    }
+
+    /**
+     * Checks whether the server has closed the connection while it was idle. Unsolicited data and a closed socket
+     * are seen without blocking. A read probing for a close by the server, which waits a millisecond on a healthy
+     * connection, is only done once the connection has been idle for {@link #PROBE_IDLE_MILLIS}. A connection the
+     * server closed sooner fails its next request, which is replayed if it is a read-only GET.
+     *
+     * @param now the current time in milliseconds
+     * @return boolean
+     */
+    boolean isStale(long now) {
+        if (this.socket.isClosed() || this.socket.isInputShutdown() || this.socket.isOutputShutdown()) {
+            return true;
+        }
+        try {
+            if (this.in.available() > 0) {
+                // Unsolicited data between responses, the connection cannot be reused
+                return true;
+            }
+            if (now - this.lastUsedAt < PROBE_IDLE_MILLIS) {
+                return false;
+            }
+            int timeout = this.socket.getSoTimeout();
+            try {
+                this.socket.setSoTimeout(1);
+                this.in.read();
+                // Either end of stream or unsolicited data between responses, neither can be reused
+                return true;
+            } finally {
+                this.socket.setSoTimeout(timeout);
+            }
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    void close() {
+        closeQuietly(this.socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+}
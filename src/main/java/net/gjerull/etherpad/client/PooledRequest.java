@@ -0,0 +1,223 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An HTTP/1.1 request sent over a connection leased from a {@link ConnectionPool}.
+ */
+final class PooledRequest implements Request {
+    private final ConnectionPool pool;
+    private final URL url;
+    private final String method;
+    private final byte[] body;
+    private final StreamingBody streamingBody;
+    private final int readTimeout;
+    /** Whether the request can be sent again when a reused connection turns out to be closed */
+    private final boolean replayable;
+
+    /**
+     * Instantiates a new PooledRequest.
+     *
+     * @param pool the pool to lease connections from
+     * @param method GET or POST
+     * @param url the URL object
+     * @param body the request body, or null for GET requests
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     */
+    PooledRequest(ConnectionPool pool, String method, URL url, byte[] body, int readTimeout) {
+        this.pool = pool;
+        this.method = method;
+        this.url = url;
+        this.body = body;
+        this.streamingBody = null;
+        this.readTimeout = readTimeout;
+        this.replayable = "GET".equals(method) && EPLiteConnection.isReadOnly(apiMethod(url));
+    }
+
+    /**
+     * Instantiates a new POST PooledRequest whose body is sent with chunked transfer encoding.
+     *
+     * @param pool the pool to lease connections from
+     * @param url the URL object
+     * @param body the request body
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     */
+    PooledRequest(ConnectionPool pool, URL url, StreamingBody body, int readTimeout) {
+        this.pool = pool;
+        this.method = "POST";
+        this.url = url;
+        this.body = null;
+        this.streamingBody = body;
+        this.readTimeout = readTimeout;
+        this.replayable = false;
+    }
+
+    /**
+     * Sends the request and returns the response.
+     *
+     * @return String
+     */
+    public String send() throws Exception {
+        PooledResponse response = this.execute();
+        String content = response.readString();
+        if (response.getStatus() >= 400) {
+            throw new IOException("Server returned HTTP response code: " + response.getStatus() + " for URL: " + this.url);
+        }
+        return content;
+    }
+
+    /**
+     * Sends the request and streams the response body to the handler.
+     *
+     * @param handler the handler parsing the body
+     * @return the handler's result
+     */
+    public <T> T send(ResponseHandler<T> handler) throws Exception {
+        PooledResponse response = this.execute();
+        try {
+            if (response.getStatus() >= 400) {
+                response.readString();
+                throw new IOException("Server returned HTTP response code: " + response.getStatus() + " for URL: " + this.url);
+            }
+            return handler.handle(new InputStreamReader(DeadlineInputStream.of(response), response.getCharset()));
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Writes the request and reads the response headers. The caller must close the returned response.
+     * Waiting for a free connection, and each replay, is bounded by the {@link Deadline} of the current thread.<br />
+     * <br />
+     * A reused connection may have been closed by the server between the stale check and the write. The request
+     * is then sent again on another connection, but only if it is a GET of a read-only API method and the server
+     * closed or reset the connection before sending any of the response. A timeout is never replayed.
+     *
+     * @return PooledResponse
+     */
+    PooledResponse execute() throws Exception {
+        Route route = Route.of(this.url);
+        while (true) {
+            PooledConnection connection = this.pool.lease(route, Deadline.timeoutMillis(0));
+            boolean replay = this.replayable && connection.isReused();
+            try {
+                connection.setReadTimeout(Deadline.timeoutMillis(this.readTimeout));
+                try {
+                    this.write(connection.getOutputStream(), route);
+                } catch (SocketException e) {
+                    // Broken pipe or reset, the server closed the connection
+                    if (replay) {
+                        this.pool.release(connection, false);
+                        continue;
+                    }
+                    throw e;
+                }
+                return PooledResponse.read(connection, this.pool, true);
+            } catch (PooledResponse.NoResponseException e) {
+                this.pool.release(connection, false);
+                if (replay) {
+                    continue;
+                }
+                throw e;
+            } catch (IOException e) {
+                this.pool.release(connection, false);
+                throw e;
+            } catch (RuntimeException e) {
+                this.pool.release(connection, false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the last segment of the URL's path, the name of the API method
+     */
+    private static String apiMethod(URL url) {
+        String path = url.getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private void write(OutputStream out, Route route) throws IOException {
+        String target = this.url.getFile();
+        StringBuilder head = new StringBuilder(128 + target.length());
+        head.append(this.method).append(' ').append(target.isEmpty() ? "/" : target).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(route.hostHeader()).append("\r\n");
+        head.append("Accept: application/json\r\n");
+        if (this.body != null) {
+            head.append("Content-Type: application/x-www-form-urlencoded\r\n");
+            head.append("Content-Length: ").append(this.body.length).append("\r\n");
+        } else if (this.streamingBody != null) {
+            head.append("Content-Type: application/x-www-form-urlencoded\r\n");
+            head.append("Transfer-Encoding: chunked\r\n");
+        }
+        head.append("\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (this.body != null) {
+            out.write(this.body);
+        } else if (this.streamingBody != null) {
+            ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+            this.streamingBody.writeTo(chunked);
+            chunked.finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the data as HTTP/1.1 chunks of up to 8 KiB. Closing it does not close the connection.
+     */
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int count;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.count == this.buffer.length) {
+                this.writeChunk();
+            }
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.count == this.buffer.length) {
+                    this.writeChunk();
+                }
+                int n = Math.min(len, this.buffer.length - this.count);
+                System.arraycopy(b, off, this.buffer, this.count, n);
+                this.count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Writes the buffered data and the last chunk.
+         */
+        void finish() throws IOException {
+            this.writeChunk();
+            this.out.write(new byte[] { '0', '\r', '\n', '\r', '\n' });
+        }
+
+        private void writeChunk() throws IOException {
+            if (this.count == 0) {
+                return;
+            }
+            this.out.write((Integer.toHexString(this.count) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            this.out.write(this.buffer, 0, this.count);
+            this.out.write('\r');
+            this.out.write('\n');
+            this.count = 0;
+        }
+    }
+}
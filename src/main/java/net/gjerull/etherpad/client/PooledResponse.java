@@ -0,0 +1,302 @@
+package net.gjerull.etherpad.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * The body of an HTTP/1.1 response read from a {@link PooledConnection}.<br />
+ * <br />
+ * Handles Content-Length, chunked and close-delimited bodies. Closing the stream returns the
+ * connection to its pool, where it is kept for reuse only if the body was read to the end and
+ * the server allowed the connection to persist.
+ */
+final class PooledResponse extends InputStream {
+    private static final int MAX_LINE_LENGTH = 8192;
+
+    private final PooledConnection connection;
+    private final ConnectionPool pool;
+    private final InputStream in;
+    private final int status;
+    private final Charset charset;
+    private final boolean chunked;
+    private final boolean keepAlive;
+    /** Bytes left of the body or current chunk, -1 for a close-delimited body */
+    private long remaining;
+    private boolean chunkStarted;
+    private boolean eof;
+    private boolean closed;
+
+    private PooledResponse(PooledConnection connection, ConnectionPool pool, int status, Charset charset,
+            boolean chunked, long contentLength, boolean keepAlive) {
+        this.connection = connection;
+        this.pool = pool;
+        this.in = connection.getInputStream();
+        this.status = status;
+        this.charset = charset;
+        this.chunked = chunked;
+        this.keepAlive = keepAlive && (chunked || contentLength >= 0);
+        this.remaining = chunked ? 0L : contentLength;
+        this.eof = !chunked && contentLength == 0;
+    }
+
+    /**
+     * Reads the status line and headers of a response.
+     *
+     * @param connection the connection the request was written to
+     * @param pool the pool the connection belongs to
+     * @param bodyExpected false if the response can not have a body
+     * @return PooledResponse
+     */
+    static PooledResponse read(PooledConnection connection, ConnectionPool pool, boolean bodyExpected)
+            throws IOException {
+        InputStream in = connection.getInputStream();
+        int first;
+        try {
+            first = in.read();
+        } catch (SocketException e) {
+            throw new NoResponseException(e);
+        }
+        if (first == -1) {
+            throw new NoResponseException(null);
+        }
+        int status;
+        String statusLine = readLine(in, first);
+        do {
+            if (statusLine == null) {
+                throw new EOFException("Connection closed before a response was received");
+            }
+            status = parseStatus(statusLine);
+            if (status >= 200) {
+                break;
+            }
+            // Skip interim 1xx responses
+            String interim;
+            while ((interim = readLine(in)) != null && !interim.isEmpty()) {
+                continue;
+            }
+            statusLine = readLine(in);
+        } while (true);
+
+        boolean keepAlive = !statusLine.startsWith("HTTP/1.0");
+        boolean chunked = false;
+        long contentLength = -1L;
+        Charset charset = StandardCharsets.UTF_8;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            switch (name) {
+                case "content-length":
+                    contentLength = Long.parseLong(value);
+                    break;
+                case "transfer-encoding":
+                    chunked = value.toLowerCase(Locale.ROOT).endsWith("chunked");
+                    break;
+                case "connection":
+                    String token = value.toLowerCase(Locale.ROOT);
+                    if (token.contains("close")) {
+                        keepAlive = false;
+                    } else if (token.contains("keep-alive")) {
+                        keepAlive = true;
+                    }
+                    break;
+                case "content-type":
+                    charset = URLConnections.charset(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed while reading the response headers");
+        }
+        if (!bodyExpected || status == 204 || status == 304) {
+            chunked = false;
+            contentLength = 0L;
+        }
+        return new PooledResponse(connection, pool, status, charset, chunked, contentLength, keepAlive);
+    }
+
+    int getStatus() {
+        return this.status;
+    }
+
+    Charset getCharset() {
+        return this.charset;
+    }
+
+    /**
+     * Reads the rest of the body as a String and closes the response.
+     *
+     * @return String
+     */
+    String readString() throws IOException {
+        try {
+            Reader reader = new InputStreamReader(this, this.charset);
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                response.append(buffer, 0, read);
+            }
+            return response.toString();
+        } finally {
+            this.close();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int read = this.read(single, 0, 1);
+        return read == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException("Response has been closed");
+        }
+        if (this.eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (this.chunked && this.remaining == 0L) {
+            this.nextChunk();
+            if (this.eof) {
+                return -1;
+            }
+        }
+        int toRead = this.remaining < 0L ? len : (int) Math.min(len, this.remaining);
+        int read = this.in.read(b, off, toRead);
+        if (read == -1) {
+            if (this.remaining < 0L) {
+                this.eof = true;
+                return -1;
+            }
+            throw new EOFException("Connection closed before the end of the response body");
+        }
+        if (this.remaining > 0L) {
+            this.remaining -= read;
+            if (this.remaining == 0L && !this.chunked) {
+                this.eof = true;
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (this.closed || this.eof) {
+            return 0;
+        }
+        int available = this.in.available();
+        return this.remaining < 0L ? available : (int) Math.min(available, this.remaining);
+    }
+
+    /**
+     * Returns the connection to the pool. The connection is only reused if the body was fully read.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.pool.release(this.connection, this.eof && this.keepAlive);
+    }
+
+    private void nextChunk() throws IOException {
+        if (this.chunkStarted) {
+            // CRLF terminating the previous chunk's data
+            readLine(this.in);
+        }
+        this.chunkStarted = true;
+        String sizeLine = readLine(this.in);
+        if (sizeLine == null) {
+            throw new EOFException("Connection closed before the end of the chunked response body");
+        }
+        int extension = sizeLine.indexOf(';');
+        String size = (extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim();
+        try {
+            this.remaining = Long.parseLong(size, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid chunk size: " + sizeLine);
+        }
+        if (this.remaining == 0L) {
+            // Skip trailers
+            String trailer;
+            while ((trailer = readLine(this.in)) != null && !trailer.isEmpty()) {
+                continue;
+            }
+            this.eof = true;
+        }
+    }
+
+    private static int parseStatus(String statusLine) throws IOException {
+        int firstSpace = statusLine.indexOf(' ');
+        if (!statusLine.startsWith("HTTP/") || firstSpace < 0 || statusLine.length() < firstSpace + 4) {
+            throw new IOException("Invalid HTTP status line: " + statusLine);
+        }
+        try {
+            return Integer.parseInt(statusLine.substring(firstSpace + 1, firstSpace + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid HTTP status line: " + statusLine);
+        }
+    }
+
+    /**
+     * Reads a CRLF (or LF) terminated line, or returns null at end of stream.
+     */
+    static String readLine(InputStream in) throws IOException {
+        return readLine(in, in.read());
+    }
+
+    private static String readLine(InputStream in, int b) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        for (; b != -1; b = in.read()) {
+            if (b == '\n') {
+                break;
+            }
+            if (b != '\r') {
+                if (line.size() >= MAX_LINE_LENGTH) {
+                    throw new IOException("HTTP header line too long");
+                }
+                line.write(b);
+            }
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Thrown when the connection was closed or reset before the first byte of the response, i.e. the server
+     * closed it without reading the request.
+     */
+    static final class NoResponseException extends EOFException {
+        private static final long serialVersionUID = 1L;
+
+        NoResponseException(SocketException cause) {
+            super("Connection closed before a response was received");
+            if (cause != null) {
+                this.initCause(cause);
+            }
+        }
+    }
+}
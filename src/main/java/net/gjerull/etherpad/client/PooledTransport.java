@@ -0,0 +1,148 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A transport keeping a bounded pool of persistent HTTP/1.1 connections per host.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * PooledTransport transport = new PooledTransport(50, 20, 4000L, 300000L);<br />
+ * EPLiteClient client = new EPLiteClient("http://localhost:9001", apiKey, transport);<br />
+ * ...<br />
+ * PoolStats stats = transport.getPoolStats();
+ * </code>
+ */
+public class PooledTransport implements Transport, Closeable {
+    public static final int DEFAULT_MAX_TOTAL = 20;
+    public static final int DEFAULT_MAX_PER_ROUTE = 10;
+    /** Stays below the 5 second keep-alive timeout of Node.js' HTTP server */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 4000L;
+    public static final long DEFAULT_MAX_LIFETIME_MILLIS = 5L * 60L * 1000L;
+
+    private final ConnectionPool pool;
+    private final TlsConfig tlsConfig;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /**
+     * Initializes a new PooledTransport with the default limits, trusting all server certificates.
+     */
+    public PooledTransport() {
+        this(new TlsConfig(TrustPolicy.TRUST_ALL));
+    }
+
+    /**
+     * Initializes a new PooledTransport with the default limits.
+     *
+     * @param tlsConfig the TLS settings for https connections
+     */
+    public PooledTransport(TlsConfig tlsConfig) {
+        this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_LIFETIME_MILLIS, tlsConfig);
+    }
+
+    /**
+     * Initializes a new PooledTransport trusting all server certificates.
+     *
+     * @param maxTotal the maximum number of open connections across all hosts
+     * @param maxPerRoute the maximum number of open connections to a single scheme, host and port
+     * @param idleTimeoutMillis close connections that have been idle this long, 0 for no limit
+     * @param maxLifetimeMillis close connections that have been open this long, 0 for no limit
+     */
+    public PooledTransport(int maxTotal, int maxPerRoute, long idleTimeoutMillis, long maxLifetimeMillis) {
+        this(maxTotal, maxPerRoute, idleTimeoutMillis, maxLifetimeMillis, new TlsConfig(TrustPolicy.TRUST_ALL));
+    }
+
+    /**
+     * Initializes a new PooledTransport.
+     *
+     * @param maxTotal the maximum number of open connections across all hosts
+     * @param maxPerRoute the maximum number of open connections to a single scheme, host and port
+     * @param idleTimeoutMillis close connections that have been idle this long, 0 for no limit
+     * @param maxLifetimeMillis close connections that have been open this long, 0 for no limit
+     * @param tlsConfig the TLS settings for https connections
+     */
+    public PooledTransport(int maxTotal, int maxPerRoute, long idleTimeoutMillis, long maxLifetimeMillis,
+            final TlsConfig tlsConfig) {
+        this.tlsConfig = tlsConfig;
+        this.pool = new ConnectionPool(new ConnectionPool.Connector() {
+            public PooledConnection connect(Route route) throws IOException {
+                return PooledConnection.open(route, tlsConfig, Deadline.timeoutMillis(connectTimeout),
+                        Deadline.timeoutMillis(readTimeout));
+            }
+        }, maxTotal, maxPerRoute, idleTimeoutMillis, maxLifetimeMillis);
+    }
+
+    public Request newGetRequest(URL url) {
+        return new PooledRequest(this.pool, "GET", url, null, this.readTimeout);
+    }
+
+    public Request newPostRequest(URL url, String body) {
+        return new PooledRequest(this.pool, "POST", url, body.getBytes(StandardCharsets.UTF_8), this.readTimeout);
+    }
+
+    public Request newPostRequest(URL url, byte[] body) {
+        return new PooledRequest(this.pool, "POST", url, body, this.readTimeout);
+    }
+
+    public Request newPostRequest(URL url, StreamingBody body) {
+        return new PooledRequest(this.pool, url, body, this.readTimeout);
+    }
+
+    public TlsConfig getTlsConfig() {
+        return this.tlsConfig;
+    }
+
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the time allowed to open a connection. The default is {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS}.
+     *
+     * @param connectTimeout the timeout in milliseconds, or 0 for no limit
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = URLConnectionTransport.checkTimeout(connectTimeout);
+    }
+
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Sets the time allowed to wait for data from the server. The default is {@link #DEFAULT_READ_TIMEOUT_MILLIS}.
+     *
+     * @param readTimeout the timeout in milliseconds, or 0 for no limit
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = URLConnectionTransport.checkTimeout(readTimeout);
+    }
+
+    /**
+     * Returns a snapshot of the connection pool's counters.
+     *
+     * @return PoolStats
+     */
+    public PoolStats getPoolStats() {
+        return this.pool.stats();
+    }
+
+    /**
+     * Closes idle connections that have expired, without waiting for the next periodic sweep.
+     */
+    public void evictExpired() {
+        this.pool.evictExpired();
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when their request completes.
+     */
+    public void close() {
+        this.pool.close();
+    }
+}
@@ -0,0 +1,71 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * The priority class of the calls made on the current thread, used by a {@link ConcurrencyLimiter} to schedule
+ * them.<br />
+ * <br />
+ * Calls are INTERACTIVE unless made in a BATCH scope. Interactive calls wait before batch calls and may use the
+ * capacity the limiter reserves for them; batch calls only use the capacity left over. A priority applies from
+ * {@link #apply()} until the returned scope is closed; asynchronous calls keep the priority they were made with.
+ * <br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * try (Priority.Scope batch = Priority.BATCH.apply()) {<br />
+ * &nbsp;&nbsp;&nbsp;&nbsp;for (String padId : padIds) client.getText(padId);<br />
+ * }
+ * </code>
+ */
+public enum Priority {
+    /** User-facing calls, such as creating a session when a page loads */
+    INTERACTIVE,
+    /** Background calls, such as bulk exports and sweeps */
+    BATCH;
+
+    private static final ThreadLocal<Priority> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Applies this priority to the calls made on the current thread until the scope is closed.
+     *
+     * @return the Scope to close
+     */
+    public Scope apply() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(this);
+        return scope;
+    }
+
+    /**
+     * @return the priority of the calls made on the current thread, INTERACTIVE outside of any scope
+     */
+    public static Priority current() {
+        Priority priority = CURRENT.get();
+        return priority != null ? priority : INTERACTIVE;
+    }
+
+    /**
+     * The time during which a priority applies to the calls made on a thread.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final Priority previous;
+        private final Thread thread = Thread.currentThread();
+
+        private Scope(Priority previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Ends the scope, restoring the priority it was started in.
+         */
+        public void close() {
+            if (Thread.currentThread() == this.thread) {
+                if (this.previous != null) {
+                    CURRENT.set(this.previous);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,18 @@
 package net.gjerull.etherpad.client;
 
+import java.io.StringReader;
+
 public interface Request {
     String send() throws Exception;
+
+    /**
+     * Sends the request and hands the response body to the handler while it is being read.
+     * The default implementation reads the whole body with {@link #send()} first.
+     *
+     * @param handler the handler parsing the body
+     * @return the handler's result
+     */
+    default <T> T send(ResponseHandler<T> handler) throws Exception {
+        return handler.handle(new StringReader(this.send()));
+    }
 }
@@ -0,0 +1,213 @@
+package net.gjerull.etherpad.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * Streams the <code>{"code": ..., "message": ..., "data": ...}</code> envelope of an API response.<br />
+ * <br />
+ * The data value is built into the same JSONObject/JSONArray structure as {@link org.json.simple.parser.JSONParser}
+ * would return. Once an error code and its message have been read, parsing stops and the data is never built.<br />
+ * <br />
+ * If the data is an object, it can be limited to a set of fields. The values of other fields are skipped
+ * as they are read and never built.
+ */
+class ResponseEnvelopeHandler implements ContentHandler {
+    private final Set<String> dataFields;
+    private final Deque<Object> containers = new ArrayDeque<>();
+    private final Deque<String> keys = new ArrayDeque<>();
+    private int depth;
+    private String envelopeKey;
+    private boolean envelope;
+    private Object code;
+    private String message;
+    private Object data;
+    private int skipDepth;
+
+    /**
+     * Builds the whole data value.
+     */
+    ResponseEnvelopeHandler() {
+        this(null);
+    }
+
+    /**
+     * @param dataFields the fields of the data object to build, or null for all
+     */
+    ResponseEnvelopeHandler(Set<String> dataFields) {
+        this.dataFields = dataFields;
+    }
+
+    /**
+     * @return true if the response was a JSON object
+     */
+    boolean isEnvelope() {
+        return this.envelope;
+    }
+
+    /**
+     * @return the "code" value, or null if it was missing
+     */
+    Object getCode() {
+        return this.code;
+    }
+
+    /**
+     * @return the "message" value, or null if it was missing
+     */
+    String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return the "data" value, or null if it was missing or not built
+     */
+    Object getData() {
+        return this.data;
+    }
+
+    public void startJSON() {
+        this.containers.clear();
+        this.keys.clear();
+        this.depth = 0;
+        this.envelopeKey = null;
+        this.envelope = false;
+        this.code = null;
+        this.message = null;
+        this.data = null;
+        this.skipDepth = 0;
+    }
+
+    public void endJSON() {
+    }
+
+    public boolean startObject() {
+        if (this.skipDepth > 0) {
+            this.depth++;
+            return true;
+        }
+        if (this.depth++ == 0) {
+            this.envelope = true;
+        } else if (this.isBuildingData()) {
+            this.containers.push(new JSONObject());
+        }
+        return true;
+    }
+
+    public boolean endObject() {
+        return this.endContainer();
+    }
+
+    public boolean startArray() {
+        if (this.skipDepth > 0) {
+            this.depth++;
+            return true;
+        }
+        if (this.depth++ == 0) {
+            // Not an envelope
+            return false;
+        }
+        if (this.isBuildingData()) {
+            this.containers.push(new JSONArray());
+        }
+        return true;
+    }
+
+    public boolean endArray() {
+        return this.endContainer();
+    }
+
+    public boolean startObjectEntry(String key) {
+        if (this.skipDepth > 0) {
+            return true;
+        }
+        if (this.depth == 1) {
+            this.envelopeKey = key;
+        } else if (this.isBuildingData()) {
+            if (this.dataFields != null && this.containers.size() == 1 && !this.dataFields.contains(key)) {
+                // A field of the data object that was not asked for
+                this.skipDepth = this.depth;
+            } else {
+                this.keys.push(key);
+            }
+        }
+        return true;
+    }
+
+    public boolean endObjectEntry() {
+        if (this.skipDepth > 0) {
+            if (this.depth == this.skipDepth) {
+                this.skipDepth = 0;
+            }
+            return true;
+        }
+        if (this.depth == 1) {
+            this.envelopeKey = null;
+            // Stop as soon as an error is fully known
+            return !(this.isError() && this.message != null);
+        }
+        return true;
+    }
+
+    public boolean primitive(Object value) {
+        if (this.skipDepth > 0) {
+            return true;
+        }
+        if (this.depth == 0) {
+            return false;
+        }
+        if (this.depth == 1) {
+            if ("code".equals(this.envelopeKey)) {
+                this.code = value;
+            } else if ("message".equals(this.envelopeKey)) {
+                this.message = value instanceof String ? (String) value : null;
+            } else if ("data".equals(this.envelopeKey) && !this.isError()) {
+                this.data = value;
+            }
+            return true;
+        }
+        if (this.isBuildingData()) {
+            this.add(value);
+        }
+        return true;
+    }
+
+    private boolean endContainer() {
+        if (this.skipDepth > 0) {
+            this.depth--;
+            return true;
+        }
+        if (--this.depth > 0 && this.isBuildingData()) {
+            Object container = this.containers.pop();
+            if (this.containers.isEmpty()) {
+                this.data = container;
+            } else {
+                this.add(container);
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        Object parent = this.containers.peek();
+        if (parent instanceof JSONObject) {
+            ((JSONObject) parent).put(this.keys.pop(), value);
+        } else {
+            ((JSONArray) parent).add(value);
+        }
+    }
+
+    private boolean isBuildingData() {
+        return this.depth >= 1 && "data".equals(this.envelopeKey) && !this.isError();
+    }
+
+    private boolean isError() {
+        return this.code instanceof Number && ((Number) this.code).intValue() != EPLiteConnection.CODE_OK;
+    }
+}
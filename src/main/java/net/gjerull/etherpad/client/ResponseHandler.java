@@ -0,0 +1,18 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Reader;
+
+/**
+ * Consumes the body of a response as it is read from the connection.
+ *
+ * @param <T> the type of the parsed result
+ */
+public interface ResponseHandler<T> {
+    /**
+     * Parses the response body.
+     *
+     * @param body the decoded response body, positioned at its start
+     * @return the parsed result
+     */
+    T handle(Reader body) throws Exception;
+}
@@ -0,0 +1,48 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reads the fields of a decoded data object into the typed results.
+ */
+final class ResultFields {
+    private ResultFields() {
+    }
+
+    /**
+     * @return the data as a Map, or an empty Map if it was null
+     */
+    static Map<?, ?> object(Object data) {
+        if (data == null) {
+            return Collections.emptyMap();
+        }
+        if (!(data instanceof Map)) {
+            throw new EPLiteException("Expected an object in the response, got " + data);
+        }
+        return (Map<?, ?>) data;
+    }
+
+    static String string(Map<?, ?> object, String key) {
+        Object value = object.get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * @return the number, or the default if the field is missing or null
+     */
+    static long number(Map<?, ?> object, String key, long defaultValue) {
+        Object value = object.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            throw new EPLiteException("Expected a number in \"" + key + "\", got " + value);
+        }
+    }
+}
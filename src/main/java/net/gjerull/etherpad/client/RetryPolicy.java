@@ -0,0 +1,177 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which failed calls are sent again, and when.<br />
+ * <br />
+ * Calls that got no response, timed out or got an internal error from Etherpad Lite are retried after an
+ * exponential backoff with full jitter. Read-only methods are retried automatically; other methods, which may have
+ * taken effect before failing, only if they were named with {@link #setRetriedWrites(String...)} or if the
+ * connection was refused, in which case nothing was sent.<br />
+ * <br />
+ * A retry budget keeps retries from multiplying the load on an instance in trouble: each retryable failure takes
+ * a token, each success gives back a fraction of one, and retries stop while half or fewer of the tokens are left.
+ * No retry goes past the {@link Deadline} of the call.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * RetryPolicy retries = new RetryPolicy(4, 50L, 1000L);<br />
+ * retries.setRetriedWrites("setText", "appendText");<br />
+ * client.setRetryPolicy(retries);
+ * </code>
+ */
+public final class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100L;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 2000L;
+    public static final int DEFAULT_BUDGET_TOKENS = 10;
+    public static final double DEFAULT_BUDGET_TOKEN_RATIO = 0.1;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private volatile Set<String> retriedWrites = Collections.emptySet();
+
+    private int budgetTokens = DEFAULT_BUDGET_TOKENS;
+    private double tokenRatio = DEFAULT_BUDGET_TOKEN_RATIO;
+    private double tokens = DEFAULT_BUDGET_TOKENS;
+    private long retries;
+    private long throttled;
+
+    /**
+     * Creates a policy with the default attempts and backoff.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param maxAttempts the number of times a call may be sent, including the first
+     * @param initialBackoffMillis the upper bound of the wait before the first retry, doubled for each further one
+     * @param maxBackoffMillis the upper bound of any wait
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("The backoff must be positive and initialBackoffMillis at most maxBackoffMillis");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Names the API methods with side effects that may be sent again, e.g. setText, whose repetition is harmless.
+     * Replaces the methods named before.
+     *
+     * @param apiMethods the API method names
+     */
+    public void setRetriedWrites(String... apiMethods) {
+        this.retriedWrites = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(apiMethods)));
+    }
+
+    /**
+     * @return the API methods with side effects that may be sent again
+     */
+    public Set<String> getRetriedWrites() {
+        return this.retriedWrites;
+    }
+
+    /**
+     * Sets the retry budget. The default is 10 tokens with a ratio of 0.1, allowing about one retry for every ten
+     * successful calls once failures have used up half the tokens.
+     *
+     * @param tokens the number of tokens; retries stop while half or fewer are left
+     * @param tokenRatio the fraction of a token given back by each successful call
+     */
+    public synchronized void setBudget(int tokens, double tokenRatio) {
+        if (tokens < 1 || tokenRatio <= 0) {
+            throw new IllegalArgumentException("The budget needs at least one token and a positive ratio");
+        }
+        this.budgetTokens = tokens;
+        this.tokenRatio = tokenRatio;
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return the number of retries made
+     */
+    public synchronized long getRetryCount() {
+        return this.retries;
+    }
+
+    /**
+     * @return the number of retries refused because the budget was used up
+     */
+    public synchronized long getThrottledCount() {
+        return this.throttled;
+    }
+
+    /**
+     * @return the number of times a call may be sent, including the first
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Records a call that succeeded.
+     */
+    synchronized void succeeded() {
+        this.tokens = Math.min(this.budgetTokens, this.tokens + this.tokenRatio);
+    }
+
+    /**
+     * Records a failed attempt and decides whether to send the call again.
+     *
+     * @param apiMethod the API method called
+     * @param failure the failure of the attempt
+     * @param attempt the number of the failed attempt, starting at 1
+     * @return the time to wait before the next attempt in milliseconds, or -1 to give up
+     */
+    long delayBeforeRetry(String apiMethod, EPLiteException failure, int attempt) {
+        Deadline deadline = Deadline.current();
+        if (!isRetryable(failure) || (deadline != null && deadline.isExpired())) {
+            return -1L;
+        }
+        boolean allowed = attempt < this.maxAttempts && (EPLiteConnection.isReadOnly(apiMethod)
+                || this.retriedWrites.contains(apiMethod) || failure.getCause() instanceof ConnectException);
+        long delay = 0L;
+        if (allowed) {
+            long bound = Math.min(this.maxBackoffMillis, this.initialBackoffMillis << Math.min(attempt - 1, 30));
+            delay = bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0L;
+            allowed = deadline == null || deadline.remaining(TimeUnit.MILLISECONDS) > delay;
+        }
+        synchronized (this) {
+            this.tokens = Math.max(0, this.tokens - 1);
+            if (!allowed) {
+                return -1L;
+            }
+            if (this.tokens <= this.budgetTokens / 2.0) {
+                this.throttled++;
+                return -1L;
+            }
+            this.retries++;
+        }
+        return delay;
+    }
+
+    /**
+     * Returns true for failures that may go away by themselves: no response, a timeout or an internal error.
+     */
+    static boolean isRetryable(EPLiteException failure) {
+        return failure.getCode() == EPLiteConnection.CODE_INTERNAL_ERROR || failure instanceof EPLiteTimeoutException
+                || failure.getCause() instanceof IOException;
+    }
+}
@@ -0,0 +1,219 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of revision-pinned pad content, evicting the least recently used entries once the
+ * estimated size of the cached values exceeds a byte budget.<br />
+ * <br />
+ * Content of an existing revision never changes, so entries are only dropped by eviction or by
+ * {@link #invalidatePad(String)}. {@link EPLiteClient} invalidates a pad itself when it deletes or
+ * overwrites it; pads changed through other clients must be invalidated explicitly.<br />
+ * <br />
+ * <code>
+ * RevisionCache cache = new RevisionCache(32 * 1024 * 1024);<br />
+ * client.setRevisionCache(cache);
+ * </code>
+ */
+public final class RevisionCache {
+    /** Rough per-entry overhead of the key, the map entry and the linked list node */
+    private static final long ENTRY_OVERHEAD = 96L;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long sizeBytes;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a cache holding at most the given number of bytes of content.
+     *
+     * @param maxBytes the maximum estimated size of the cached values
+     */
+    public RevisionCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached response of an API call, or null.
+     *
+     * @param apiMethod the API method
+     * @param padId the pad's id string
+     * @param startRev the revision number
+     * @param endRev the end revision number, or the revision number for single revision calls
+     * @return the cached value or null
+     */
+    synchronized Object get(String apiMethod, String padId, long startRev, long endRev) {
+        Entry entry = this.entries.get(new Key(apiMethod, padId, startRev, endRev));
+        if (entry == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return entry.value;
+    }
+
+    /**
+     * Caches the response of an API call. Values larger than the whole cache are not stored.
+     *
+     * @param apiMethod the API method
+     * @param padId the pad's id string
+     * @param startRev the revision number
+     * @param endRev the end revision number, or the revision number for single revision calls
+     * @param value the response, a Map or a String
+     * @return the value as it should be returned to the caller; Maps are made unmodifiable
+     */
+    synchronized Object put(String apiMethod, String padId, long startRev, long endRev, Object value) {
+        Object stored = value instanceof Map ? Collections.unmodifiableMap((Map) value) : value;
+        Key key = new Key(apiMethod, padId, startRev, endRev);
+        long weight = ENTRY_OVERHEAD + 2L * padId.length() + weigh(stored);
+        if (weight > this.maxBytes) {
+            return stored;
+        }
+        Entry previous = this.entries.put(key, new Entry(stored, weight));
+        if (previous != null) {
+            this.sizeBytes -= previous.weight;
+        }
+        this.sizeBytes += weight;
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.sizeBytes > this.maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            this.sizeBytes -= evicted.weight;
+            this.evictionCount++;
+        }
+        return stored;
+    }
+
+    /**
+     * Drops every cached revision of a pad.
+     *
+     * @param padId the pad's id string
+     */
+    public synchronized void invalidatePad(String padId) {
+        Iterator<Map.Entry<Key, Entry>> it = this.entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> entry = it.next();
+            if (entry.getKey().padId.equals(padId)) {
+                this.sizeBytes -= entry.getValue().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops every cached entry. The counters are kept.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.sizeBytes = 0L;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return the estimated size of the cached values in bytes
+     */
+    public synchronized long getSizeBytes() {
+        return this.sizeBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return this.entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RevisionCache[entries=" + this.entries.size() + ", bytes=" + this.sizeBytes + "/" + this.maxBytes
+                + ", hits=" + this.hitCount + ", misses=" + this.missCount + ", evictions=" + this.evictionCount + "]";
+    }
+
+    /**
+     * Estimates the retained size of a decoded JSON value.
+     */
+    private static long weigh(Object value) {
+        if (value instanceof String) {
+            return 40L + 2L * ((String) value).length();
+        }
+        if (value instanceof Map) {
+            long weight = 48L;
+            for (Object o : ((Map) value).entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                weight += 32L + weigh(entry.getKey()) + weigh(entry.getValue());
+            }
+            return weight;
+        }
+        if (value instanceof List) {
+            long weight = 40L;
+            for (Object element : (List) value) {
+                weight += 8L + weigh(element);
+            }
+            return weight;
+        }
+        return 16L;
+    }
+
+    private static final class Key {
+        private final String apiMethod;
+        private final String padId;
+        private final long startRev;
+        private final long endRev;
+
+        private Key(String apiMethod, String padId, long startRev, long endRev) {
+            this.apiMethod = apiMethod;
+            this.padId = padId;
+            this.startRev = startRev;
+            this.endRev = endRev;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.startRev == other.startRev && this.endRev == other.endRev
+                    && this.apiMethod.equals(other.apiMethod) && this.padId.equals(other.padId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = this.apiMethod.hashCode();
+            result = 31 * result + this.padId.hashCode();
+            result = 31 * result + Long.hashCode(this.startRev);
+            return 31 * result + Long.hashCode(this.endRev);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long weight;
+
+        private Entry(Object value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A number of revisions, as returned by {@link EPLiteClient#countRevisions(String)} and
+ * {@link EPLiteClient#countSavedRevisions(String)}.
+ */
+public final class RevisionCount {
+    static final Set<String> REVISIONS = Collections.singleton("revisions");
+    static final Set<String> SAVED_REVISIONS = Collections.singleton("savedRevisions");
+
+    private final String padId;
+    private final long revisions;
+
+    RevisionCount(String padId, long revisions) {
+        this.padId = padId;
+        this.revisions = revisions;
+    }
+
+    static RevisionCount from(String padId, Object data, Set<String> fields) {
+        return new RevisionCount(padId, ResultFields.number(ResultFields.object(data), fields.iterator().next(), 0L));
+    }
+
+    public String getPadId() {
+        return this.padId;
+    }
+
+    /**
+     * @return the number of revisions, which is also the number of the head revision
+     */
+    public long getRevisions() {
+        return this.revisions;
+    }
+
+    @Override
+    public String toString() {
+        return "RevisionCount{" + this.padId + ": " + this.revisions + "}";
+    }
+}
@@ -0,0 +1,65 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * The scheme, host and port a pooled connection is bound to.
+ */
+final class Route {
+    final String scheme;
+    final String host;
+    final int port;
+
+    Route(String scheme, String host, int port) {
+        this.scheme = scheme.toLowerCase();
+        this.host = host.toLowerCase();
+        this.port = port;
+    }
+
+    /**
+     * Returns the route for the given URL, using the scheme's default port if none is given.
+     *
+     * @param url the URL object
+     * @return Route
+     */
+    static Route of(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return new Route(url.getProtocol(), url.getHost(), port);
+    }
+
+    boolean isSecure() {
+        return "https".equals(this.scheme);
+    }
+
+    /**
+     * Returns the value of the Host header for this route.
+     *
+     * @return String
+     */
+    String hostHeader() {
+        boolean defaultPort = (this.isSecure() && this.port == 443) || (!this.isSecure() && this.port == 80);
+        return defaultPort ? this.host : this.host + ":" + this.port;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Route)) {
+            return false;
+        }
+        Route other = (Route) o;
+        return this.port == other.port && this.scheme.equals(other.scheme) && this.host.equals(other.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return (this.scheme.hashCode() * 31 + this.host.hashCode()) * 31 + this.port;
+    }
+
+    @Override
+    public String toString() {
+        return this.scheme + "://" + this.host + ":" + this.port;
+    }
+}
@@ -0,0 +1,66 @@
+package net.gjerull.etherpad.client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A session, as returned by {@link EPLiteClient#getSession(String)}.
+ */
+public final class SessionInfo {
+    static final Set<String> FIELDS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList("groupID", "authorID", "validUntil")));
+
+    private final String sessionID;
+    private final String groupID;
+    private final String authorID;
+    private final long validUntil;
+
+    SessionInfo(String sessionID, String groupID, String authorID, long validUntil) {
+        this.sessionID = sessionID;
+        this.groupID = groupID;
+        this.authorID = authorID;
+        this.validUntil = validUntil;
+    }
+
+    static SessionInfo from(String sessionID, Object data) {
+        Map<?, ?> session = ResultFields.object(data);
+        return new SessionInfo(sessionID, ResultFields.string(session, "groupID"),
+                ResultFields.string(session, "authorID"), ResultFields.number(session, "validUntil", 0L));
+    }
+
+    public String getSessionID() {
+        return this.sessionID;
+    }
+
+    public String getGroupID() {
+        return this.groupID;
+    }
+
+    public String getAuthorID() {
+        return this.authorID;
+    }
+
+    /**
+     * @return the end of the session in seconds since the epoch, or 0 if the response had none
+     */
+    public long getValidUntil() {
+        return this.validUntil;
+    }
+
+    /**
+     * @param epochSeconds the time in seconds since the epoch
+     * @return true if the session is still valid at the given time
+     */
+    public boolean isValidAt(long epochSeconds) {
+        return epochSeconds < this.validUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionInfo{" + this.sessionID + ", group " + this.groupID + ", author " + this.authorID
+                + ", validUntil " + this.validUntil + "}";
+    }
+}
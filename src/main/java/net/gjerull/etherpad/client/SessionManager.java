@@ -0,0 +1,294 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out Etherpad Lite sessions per group and author, reusing a session until it is close to its end instead
+ * of creating one on every page view.<br />
+ * <br />
+ * A session is handed out while more than the minimum remaining time is left of it. Once less than the refresh
+ * time is left, it is still handed out while a new session is created in the background, so callers rarely wait
+ * for createSession. Concurrent callers missing the same session share one createSession call.<br />
+ * <br />
+ * Browsers may still hold a session that was replaced, so it is not deleted at once: every session is deleted in
+ * the background once it ends, keeping the session store of Etherpad Lite from filling up.
+ * {@link #invalidate(String, String)} deletes a session at once, e.g. when its user logs out.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * SessionManager sessions = new SessionManager(client, 2, 1, TimeUnit.HOURS);<br />
+ * ...<br />
+ * SessionInfo session = sessions.getSession(groupID, authorID);<br />
+ * response.addCookie(new Cookie("sessionID", session.getSessionID()));
+ * </code>
+ */
+public class SessionManager implements Closeable {
+    public static final long DEFAULT_DURATION_SECONDS = 3600L;
+    public static final long DEFAULT_REFRESH_AHEAD_SECONDS = 600L;
+    public static final long DEFAULT_MIN_REMAINING_SECONDS = 60L;
+
+    private final EPLiteClient client;
+    private final long durationMillis;
+    private final long refreshAheadMillis;
+    private volatile long minRemainingMillis = TimeUnit.SECONDS.toMillis(DEFAULT_MIN_REMAINING_SECONDS);
+    private final ConcurrentMap<Key, Lease> leases = new ConcurrentHashMap<>();
+    private final SingleFlight<Key, SessionInfo> creations = new SingleFlight<>();
+    private final ScheduledExecutorService background;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+
+    /**
+     * Creates a session manager handing out sessions of one hour, renewed in the last ten minutes.
+     *
+     * @param client the client creating and deleting the sessions
+     */
+    public SessionManager(EPLiteClient client) {
+        this(client, DEFAULT_DURATION_SECONDS, DEFAULT_REFRESH_AHEAD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param client the client creating and deleting the sessions
+     * @param duration how long the created sessions are valid, at least one second
+     * @param refreshAhead how long before the end of a session a new one is created in the background
+     * @param unit the unit of duration and refreshAhead
+     */
+    public SessionManager(EPLiteClient client, long duration, long refreshAhead, TimeUnit unit) {
+        if (unit.toMillis(duration) < 1000L || refreshAhead < 0 || refreshAhead >= duration) {
+            throw new IllegalArgumentException("The duration must be at least a second and longer than refreshAhead");
+        }
+        this.client = client;
+        this.durationMillis = unit.toMillis(duration);
+        this.refreshAheadMillis = unit.toMillis(refreshAhead);
+        this.background = Executors.newSingleThreadScheduledExecutor(new SessionThreadFactory());
+    }
+
+    /**
+     * Sets how much of a session must be left for it to be handed out. The default is one minute, which should
+     * cover the time for the browser to load the pad.
+     *
+     * @param minRemaining the time
+     * @param unit the unit of minRemaining
+     */
+    public void setMinRemaining(long minRemaining, TimeUnit unit) {
+        if (minRemaining < 0 || unit.toMillis(minRemaining) >= this.durationMillis) {
+            throw new IllegalArgumentException("minRemaining must be at least 0 and shorter than the duration");
+        }
+        this.minRemainingMillis = unit.toMillis(minRemaining);
+    }
+
+    /**
+     * Returns a session of the author in the group, creating one if none is cached with enough time left.
+     *
+     * @param groupID string
+     * @param authorID string
+     * @return the session, with the validUntil it was created with
+     */
+    public SessionInfo getSession(final String groupID, final String authorID) {
+        final Key key = new Key(groupID, authorID);
+        Lease lease = this.leases.get(key);
+        if (lease != null) {
+            long remaining = lease.remaining();
+            if (remaining > this.minRemainingMillis) {
+                this.hits.incrementAndGet();
+                if (remaining <= this.refreshAheadMillis) {
+                    this.refreshLater(key, lease);
+                }
+                return lease.session;
+            }
+        }
+        return this.creations.execute(key, () -> {
+            // Another caller may have created it meanwhile
+            Lease current = this.leases.get(key);
+            if (current != null && current.remaining() > this.minRemainingMillis) {
+                return current.session;
+            }
+            return this.create(key).session;
+        });
+    }
+
+    /**
+     * Forgets the session of the author in the group and deletes it in the background.
+     *
+     * @param groupID string
+     * @param authorID string
+     */
+    public void invalidate(String groupID, String authorID) {
+        final Lease lease = this.leases.remove(new Key(groupID, authorID));
+        if (lease != null) {
+            this.schedule(() -> this.delete(lease.session), 0L);
+        }
+    }
+
+    /**
+     * @return the number of sessions cached
+     */
+    public int size() {
+        return this.leases.size();
+    }
+
+    /**
+     * @return the number of times a cached session was handed out
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of sessions created, including those created in the background
+     */
+    public long getCreatedCount() {
+        return this.created.get();
+    }
+
+    /**
+     * @return the number of sessions created in the background ahead of the end of the previous one
+     */
+    public long getRefreshCount() {
+        return this.refreshed.get();
+    }
+
+    /**
+     * @return the number of sessions deleted
+     */
+    public long getDeletedCount() {
+        return this.deleted.get();
+    }
+
+    /**
+     * Stops the background work. Sessions that have not ended yet are left to expire on their own.
+     */
+    public void close() {
+        this.background.shutdownNow();
+    }
+
+    private Lease create(final Key key) {
+        long validUntil = (System.currentTimeMillis() + this.durationMillis) / 1000L;
+        Map result = this.client.createSession(key.groupID, key.authorID, validUntil);
+        final Lease lease = new Lease(new SessionInfo(ResultFields.string(result, "sessionID"), key.groupID,
+                key.authorID, validUntil));
+        this.leases.put(key, lease);
+        this.created.incrementAndGet();
+        this.schedule(() -> {
+            this.leases.remove(key, lease);
+            this.delete(lease.session);
+        }, lease.remaining());
+        return lease;
+    }
+
+    /**
+     * Creates the next session of a lease in the background, once.
+     */
+    private void refreshLater(final Key key, final Lease lease) {
+        if (!lease.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        boolean scheduled = this.schedule(() -> {
+            try {
+                this.creations.execute(key, () -> {
+                    Lease current = this.leases.get(key);
+                    if (current != lease && current != null) {
+                        return current.session;
+                    }
+                    this.refreshed.incrementAndGet();
+                    return this.create(key).session;
+                });
+            } catch (RuntimeException e) {
+                // Tried again by the next caller
+                lease.refreshing.set(false);
+            }
+        }, 0L);
+        if (!scheduled) {
+            lease.refreshing.set(false);
+        }
+    }
+
+    private void delete(SessionInfo session) {
+        try {
+            this.client.deleteSession(session.getSessionID());
+            this.deleted.incrementAndGet();
+        } catch (EPLiteException e) {
+            // The session ends anyway; Etherpad Lite rejects the sessions it no longer knows
+        }
+    }
+
+    /**
+     * @return false if the manager is closed
+     */
+    private boolean schedule(Runnable task, long delayMillis) {
+        try {
+            this.background.schedule(task, Math.max(0L, delayMillis), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A cached session
+     */
+    private static final class Lease {
+        private final SessionInfo session;
+        private final long expiresAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Lease(SessionInfo session) {
+            this.session = session;
+            this.expiresAt = session.getValidUntil() * 1000L;
+        }
+
+        /**
+         * @return the time left in milliseconds
+         */
+        private long remaining() {
+            return this.expiresAt - System.currentTimeMillis();
+        }
+    }
+
+    private static final class Key {
+        private final String groupID;
+        private final String authorID;
+
+        private Key(String groupID, String authorID) {
+            this.groupID = groupID;
+            this.authorID = authorID;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.groupID.equals(other.groupID) && this.authorID.equals(other.authorID);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.groupID.hashCode() + this.authorID.hashCode();
+        }
+    }
+
+    private static final class SessionThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "etherpad-sessions-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
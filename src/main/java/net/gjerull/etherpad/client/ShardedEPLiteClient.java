@@ -0,0 +1,502 @@
+package net.gjerull.etherpad.client;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads pads and groups over several independent Etherpad Lite instances (shards) by consistent hashing.<br />
+ * <br />
+ * A pad belongs to the shard its padID hashes to, except group pads (<code>g.xxx$name</code>), which belong to the
+ * shard of their group. Calls about one pad or group go to its shard through {@link #forPad(String)} and
+ * {@link #forGroup(String)}; calls over all pads or groups query every shard in parallel and merge the results.
+ * Adding a shard moves only the pads that now hash to it, about 1/n of them.<br />
+ * <br />
+ * Etherpad Lite picks the groupID, so groups are not placed by hashing. {@link #createGroup()} takes turns over the
+ * shards and {@link #createGroupIfNotExistsFor(String)} uses the shard the groupMapper hashes to. The shard of each
+ * group created or found is kept in a bounded directory; a group missing from it, e.g. after a restart, is looked
+ * up once on all shards, and a group no shard knows belongs to the shard its groupID hashes to.<br />
+ * <br />
+ * Authors and sessions belong to the instance they were created on, so create them on the shard of the group
+ * they are used with, e.g. <code>sharded.forGroup(groupID).createSession(groupID, authorID, validUntil)</code>.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * ShardedEPLiteClient sharded = new ShardedEPLiteClient(Arrays.asList("http://pads1:9001", "http://pads2:9001"), apiKey);<br />
+ * sharded.forPad("my_pad").getText("my_pad");<br />
+ * List&lt;String&gt; padIds = sharded.listAllPadIDs().getPadIDs();
+ * </code>
+ */
+public class ShardedEPLiteClient implements Closeable {
+    /**
+     * The number of points of each shard on the hash ring
+     */
+    public static final int DEFAULT_REPLICAS = 160;
+
+    /** The number of groups whose shard is remembered */
+    private static final int GROUP_DIRECTORY_SIZE = 100000;
+
+    private final int replicas;
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ShardThreadFactory());
+    private final Map<String, String> groupShards = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return this.size() > GROUP_DIRECTORY_SIZE;
+        }
+    };
+    private final SingleFlight<String, String> lookups = new SingleFlight<>();
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private volatile Topology topology;
+
+    /**
+     * Creates a client for shards with the same API key, named by their url.
+     *
+     * @param urls the urls of the Etherpad Lite instances
+     * @param apiKey the API key of all instances
+     */
+    public ShardedEPLiteClient(Collection<String> urls, String apiKey) {
+        this(clients(urls, apiKey));
+    }
+
+    /**
+     * Creates a client for the given shards. The names decide where each shard is placed on the hash ring, so
+     * they must stay the same when shards are added, removed or moved to another address.
+     *
+     * @param shards the clients of the shards by name
+     */
+    public ShardedEPLiteClient(Map<String, EPLiteClient> shards) {
+        this(shards, DEFAULT_REPLICAS);
+    }
+
+    /**
+     * Creates a client for the given shards.
+     *
+     * @param shards the clients of the shards by name
+     * @param replicas the number of points of each shard on the hash ring; more points spread keys more evenly
+     */
+    public ShardedEPLiteClient(Map<String, EPLiteClient> shards, int replicas) {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("replicas must be at least 1");
+        }
+        this.replicas = replicas;
+        this.setShards(new LinkedHashMap<>(shards));
+    }
+
+    /**
+     * Adds a shard. The pads hashing to it are not moved by this client.
+     *
+     * @param name the name of the shard
+     * @param client the client of the shard
+     */
+    public synchronized void addShard(String name, EPLiteClient client) {
+        Map<String, EPLiteClient> shards = new LinkedHashMap<>(this.topology.shards);
+        shards.put(name, client);
+        this.setShards(shards);
+    }
+
+    /**
+     * Removes a shard. Its pads and groups are not moved by this client.
+     *
+     * @param name the name of the shard
+     * @return the client of the removed shard, or null if there was none
+     */
+    public synchronized EPLiteClient removeShard(String name) {
+        Map<String, EPLiteClient> shards = new LinkedHashMap<>(this.topology.shards);
+        EPLiteClient removed = shards.remove(name);
+        this.setShards(shards);
+        synchronized (this.groupShards) {
+            this.groupShards.values().removeIf(name::equals);
+        }
+        return removed;
+    }
+
+    /**
+     * @return the clients of the shards by name
+     */
+    public Map<String, EPLiteClient> getShards() {
+        return this.topology.shards;
+    }
+
+    /**
+     * Returns the name of the shard a pad or group belongs to.
+     *
+     * @param padOrGroupId a padID or a groupID
+     * @return String
+     */
+    public String shardOf(String padOrGroupId) {
+        return this.owner(this.topology, padOrGroupId);
+    }
+
+    /**
+     * Returns the client of the shard a pad belongs to. Group pads belong to the shard of their group.
+     *
+     * @param padId the pad's id string
+     * @return EPLiteClient
+     */
+    public EPLiteClient forPad(String padId) {
+        Topology topology = this.topology;
+        return topology.shards.get(this.owner(topology, padId));
+    }
+
+    /**
+     * Returns the client of the shard a group belongs to.
+     *
+     * @param groupID the group's id string
+     * @return EPLiteClient
+     */
+    public EPLiteClient forGroup(String groupID) {
+        Topology topology = this.topology;
+        return topology.shards.get(this.owner(topology, groupID));
+    }
+
+    /**
+     * Creates a new group, taking turns over the shards.
+     *
+     * @return Map with groupID
+     */
+    public Map createGroup() {
+        Topology topology = this.topology;
+        List<String> names = new ArrayList<>(topology.shards.keySet());
+        if (names.isEmpty()) {
+            throw new EPLiteException("No shards to create a group on");
+        }
+        String name = names.get(Math.floorMod(this.nextShard.getAndIncrement(), names.size()));
+        return this.placed(name, topology.shards.get(name).createGroup());
+    }
+
+    /**
+     * Creates a new group for groupMapper if one doesn't already exist, on the shard the groupMapper hashes to.
+     *
+     * @param groupMapper your group mapper string
+     * @return Map with groupID
+     */
+    public Map createGroupIfNotExistsFor(String groupMapper) {
+        Topology topology = this.topology;
+        String name = topology.ring.owner(groupMapper);
+        if (name == null) {
+            throw new EPLiteException("No shards to create a group on");
+        }
+        return this.placed(name, topology.shards.get(name).createGroupIfNotExistsFor(groupMapper));
+    }
+
+    /**
+     * Deletes a group and all its pads on its shard.
+     *
+     * @param groupID string
+     */
+    public void deleteGroup(String groupID) {
+        this.forGroup(groupID).deleteGroup(groupID);
+        synchronized (this.groupShards) {
+            this.groupShards.remove(groupID);
+        }
+    }
+
+    /**
+     * Lists all pads on all shards. The padIDs are merged into one array inside "padIDs".
+     *
+     * @return a Map with the padIDs of all shards
+     */
+    public Map listAllPads() {
+        return merged("padIDs", this.fanOut(EPLiteClient::listAllPads));
+    }
+
+    /**
+     * Lists the ids of all pads on all shards.
+     *
+     * @return PadList
+     */
+    public PadList listAllPadIDs() {
+        List<String> padIDs = new ArrayList<>();
+        for (PadList pads : this.fanOut(EPLiteClient::listAllPadIDs).values()) {
+            padIDs.addAll(pads.getPadIDs());
+        }
+        return new PadList(padIDs);
+    }
+
+    /**
+     * Lists all groups on all shards. The groupIDs are merged into one array inside "groupIDs".
+     *
+     * @return a Map with the groupIDs of all shards
+     */
+    public Map listAllGroups() {
+        return merged("groupIDs", this.fanOut(EPLiteClient::listAllGroups));
+    }
+
+    /**
+     * Returns the padID of a read-only id. Read-only ids do not tell their pad, so all shards are asked.
+     *
+     * @param readOnlyPadId the read-only id
+     * @return a Map with the padID, or an empty Map if no shard knows the read-only id
+     */
+    public Map getPadID(String readOnlyPadId) {
+        Map<String, Object> found = this.fanOut(client -> {
+            try {
+                return client.getPadID(readOnlyPadId);
+            } catch (EPLiteException e) {
+                if (e.getCode() == EPLiteConnection.CODE_INVALID_PARAMETERS) {
+                    return null;
+                }
+                throw e;
+            }
+        });
+        for (Object padID : found.values()) {
+            if (padID instanceof Map && ((Map) padID).get("padID") != null) {
+                return (Map) padID;
+            }
+        }
+        return new HashMap();
+    }
+
+    /**
+     * Copies a pad with full history and chat. Both pads must belong to the same shard.
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public void copyPad(String sourcePadId, String destinationPadId, boolean force) {
+        this.sameShard(sourcePadId, destinationPadId).copyPad(sourcePadId, destinationPadId, force);
+    }
+
+    /**
+     * Moves a pad. Both pads must belong to the same shard.
+     *
+     * @param sourcePadId the id of the source pad
+     * @param destinationPadId the id of the destination pad
+     * @param force if force is true and the destination pad exists, it will be overwritten.
+     */
+    public void movePad(String sourcePadId, String destinationPadId, boolean force) {
+        this.sameShard(sourcePadId, destinationPadId).movePad(sourcePadId, destinationPadId, force);
+    }
+
+    /**
+     * Checks the API key on all shards.
+     */
+    public void checkToken() {
+        this.fanOut(client -> {
+            client.checkToken();
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Runs a call on every shard in parallel.
+     *
+     * @param call the call to run with the client of each shard
+     * @return the results by shard name
+     * @throws EPLiteException the first failure as its shard threw it, once all calls are done; the shard's name
+     *             and the failures of other shards are added as suppressed exceptions
+     */
+    public <T> Map<String, T> fanOut(final Function<EPLiteClient, T> call) {
+        Map<String, CompletableFuture<T>> futures = new LinkedHashMap<>();
+        // The calls on the shards' threads share the deadline and priority of the caller
+        final Deadline deadline = Deadline.current();
+        final Priority priority = Priority.current();
+        for (final Map.Entry<String, EPLiteClient> shard : this.topology.shards.entrySet()) {
+            futures.put(shard.getKey(), CompletableFuture.supplyAsync(() -> {
+                Deadline resumed = Deadline.resume(deadline);
+                Priority.Scope scope = priority.apply();
+                try {
+                    return call.apply(shard.getValue());
+                } finally {
+                    scope.close();
+                    if (resumed != null) {
+                        resumed.close();
+                    }
+                }
+            }, this.executor));
+        }
+        Map<String, T> results = new LinkedHashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, CompletableFuture<T>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), future.getValue().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                if (failure == null) {
+                    // Thrown as is, so callers can still tell timeouts and open circuits from other failures
+                    failure = cause instanceof RuntimeException ? (RuntimeException) cause : e;
+                    failure.addSuppressed(new EPLiteException("Failed on shard " + future.getKey()));
+                } else if (cause != failure) {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Stops the threads used for parallel calls. The shard clients are not affected.
+     */
+    public void close() {
+        this.executor.shutdown();
+    }
+
+    /**
+     * Returns the key a pad or group is placed by: the group of a group pad, else the id itself.
+     */
+    static String routingKey(String padOrGroupId) {
+        int separator = padOrGroupId.indexOf('$');
+        if (separator > 0 && padOrGroupId.startsWith("g.")) {
+            return padOrGroupId.substring(0, separator);
+        }
+        return padOrGroupId;
+    }
+
+    private EPLiteClient sameShard(String sourcePadId, String destinationPadId) {
+        Topology topology = this.topology;
+        String source = this.owner(topology, sourcePadId);
+        String destination = this.owner(topology, destinationPadId);
+        if (!source.equals(destination)) {
+            throw new EPLiteException("Unable to copy or move " + sourcePadId + " on shard " + source + " to "
+                    + destinationPadId + " on shard " + destination);
+        }
+        return topology.shards.get(source);
+    }
+
+    /**
+     * Returns the shard of a pad or group: the shard a group was found on, else the one its id hashes to.
+     */
+    private String owner(Topology topology, String padOrGroupId) {
+        String key = routingKey(padOrGroupId);
+        if (key.startsWith("g.")) {
+            String shard;
+            synchronized (this.groupShards) {
+                shard = this.groupShards.get(key);
+            }
+            if (shard == null) {
+                shard = this.lookups.execute(key, () -> this.findGroup(key));
+            }
+            if (shard != null && topology.shards.containsKey(shard)) {
+                return shard;
+            }
+        }
+        return topology.owner(key);
+    }
+
+    /**
+     * Asks all shards for a group that is not in the directory.
+     *
+     * @return the shard knowing the group, or null if none does
+     * @throws EPLiteException if no shard knows the group and a shard could not be asked
+     */
+    private String findGroup(final String groupID) {
+        final List<EPLiteException> failures = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Boolean> known = this.fanOut(client -> {
+            try {
+                client.listPads(groupID);
+                return Boolean.TRUE;
+            } catch (EPLiteException e) {
+                if (e.getCode() != EPLiteConnection.CODE_INVALID_PARAMETERS) {
+                    failures.add(e);
+                }
+                return Boolean.FALSE;
+            }
+        });
+        for (Map.Entry<String, Boolean> shard : known.entrySet()) {
+            if (shard.getValue()) {
+                return this.remember(groupID, shard.getKey());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+        return null;
+    }
+
+    /**
+     * Records the shard of a group returned by a create call.
+     */
+    private Map placed(String shard, Map group) {
+        Object groupID = group.get("groupID");
+        if (groupID instanceof String) {
+            this.remember((String) groupID, shard);
+        }
+        return group;
+    }
+
+    private String remember(String groupID, String shard) {
+        synchronized (this.groupShards) {
+            this.groupShards.put(groupID, shard);
+        }
+        return shard;
+    }
+
+    private void setShards(Map<String, EPLiteClient> shards) {
+        this.topology = new Topology(shards, this.replicas);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map merged(String key, Map<String, Map> responses) {
+        List<Object> values = new ArrayList<>();
+        for (Map response : responses.values()) {
+            Object list = response.get(key);
+            if (list instanceof List) {
+                values.addAll((List<Object>) list);
+            }
+        }
+        Map merged = new HashMap();
+        merged.put(key, values);
+        return merged;
+    }
+
+    private static Map<String, EPLiteClient> clients(Collection<String> urls, String apiKey) {
+        Map<String, EPLiteClient> clients = new LinkedHashMap<>();
+        for (String url : urls) {
+            clients.put(url, new EPLiteClient(url, apiKey));
+        }
+        return clients;
+    }
+
+    /**
+     * The shards and their ring, replaced together when shards are added or removed.
+     */
+    private static final class Topology {
+        final Map<String, EPLiteClient> shards;
+        final HashRing ring;
+
+        Topology(Map<String, EPLiteClient> shards, int replicas) {
+            this.shards = Collections.unmodifiableMap(shards);
+            this.ring = new HashRing(shards.keySet(), replicas);
+        }
+
+        String owner(String key) {
+            String shard = this.ring.owner(key);
+            if (shard == null) {
+                throw new EPLiteException("No shards to route " + key + " to");
+            }
+            return shard;
+        }
+    }
+
+    private static final class ShardThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "etherpad-shard-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
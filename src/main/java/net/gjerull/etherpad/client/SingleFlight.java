@@ -0,0 +1,128 @@
+package net.gjerull.etherpad.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share a single call.<br />
+ * <br />
+ * The first caller for a key runs the call on its own thread; callers arriving while it is in flight wait for it
+ * and receive the same result, or the same exception. Results are not kept once the call completes.<br />
+ * <br />
+ * Each caller's {@link Deadline} only bounds its own wait: a waiting caller gives up when its deadline expires,
+ * leaving the call running, and if the call fails because the deadline of the caller running it expired, the
+ * waiters that still have time call again. Callers only share calls of their own {@link Priority} or a higher one,
+ * so an INTERACTIVE caller never waits for a BATCH call queued behind the batch share of a
+ * {@link ConcurrencyLimiter}.
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentMap<K, Flight<V>> interactive = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Flight<V>> batch = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A call in flight
+     */
+    private static final class Flight<V> extends CompletableFuture<V> {
+        /** Set before completion if the call timed out because the deadline of its caller expired */
+        private volatile boolean outOfTime;
+    }
+
+    /**
+     * Runs the call, or waits for the call already in flight for the key.
+     *
+     * @param key the key identifying identical calls
+     * @param call the call
+     * @return the result of the call
+     * @throws EPLiteTimeoutException if the deadline of the current thread expires while waiting for the call
+     */
+    V execute(K key, Supplier<V> call) {
+        ConcurrentMap<K, Flight<V>> flights = Priority.current() == Priority.BATCH ? this.batch : this.interactive;
+        while (true) {
+            Flight<V> flight = new Flight<>();
+            Flight<V> existing = flights == this.batch ? this.interactive.get(key) : null;
+            if (existing == null) {
+                existing = flights.putIfAbsent(key, flight);
+            }
+            if (existing == null) {
+                return this.run(key, flights, flight, call);
+            }
+            this.coalesced.incrementAndGet();
+            try {
+                return await(existing);
+            } catch (EPLiteTimeoutException e) {
+                Deadline deadline = Deadline.current();
+                if (!existing.outOfTime || (deadline != null && deadline.isExpired())) {
+                    throw e;
+                }
+                // The caller running the call ran out of time, this one has time left to call again
+            }
+        }
+    }
+
+    private V run(K key, ConcurrentMap<K, Flight<V>> flights, Flight<V> flight, Supplier<V> call) {
+        this.calls.incrementAndGet();
+        Deadline deadline = Deadline.current();
+        V result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            flight.outOfTime = e instanceof EPLiteTimeoutException && deadline != null && deadline.isExpired();
+            flights.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        // Removed first, so no caller arriving after completion is handed this result
+        flights.remove(key, flight);
+        flight.complete(result);
+        return result;
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                return flight.get();
+            }
+            return flight.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new EPLiteTimeoutException("The deadline of the call expired while waiting for an identical call");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EPLiteException("Interrupted while waiting for an identical call", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the number of calls actually made
+     */
+    long getCallCount() {
+        return this.calls.get();
+    }
+
+    /**
+     * @return the number of callers that shared a call already in flight
+     */
+    long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+}
@@ -0,0 +1,17 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A request body that is written while the request is sent, e.g. a form body encoded from a {@link java.io.Reader}.
+ * Its length is not known in advance, so transports send it with chunked transfer encoding.
+ */
+public interface StreamingBody {
+    /**
+     * Writes the url-encoded (application/x-www-form-urlencoded) body. It is called at most once.
+     *
+     * @param out the request body stream, not to be closed
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
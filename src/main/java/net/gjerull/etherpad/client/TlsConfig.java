@@ -0,0 +1,281 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyManagementException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
+
+/**
+ * TLS settings for the connections to an Etherpad Lite instance, built once and shared by all requests.<br />
+ * <br />
+ * Reusing the same {@link SSLContext} lets the JSSE session cache resume earlier sessions instead of
+ * performing a full handshake on every new connection. Nothing is installed JVM-wide.<br />
+ * <br />
+ * Example:<br />
+ * <br />
+ * <code>
+ * TlsConfig tls = new TlsConfig(TrustPolicy.SYSTEM_DEFAULT);<br />
+ * EPLiteClient client = new EPLiteClient("https://etherpad.mysite.com", apiKey, new PooledTransport(tls));
+ * </code>
+ */
+public final class TlsConfig {
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 256;
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    private final SSLContext sslContext;
+    private final SSLSocketFactory socketFactory;
+    private final HostnameVerifier hostnameVerifier;
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong resumedHandshakes = new AtomicLong();
+
+    /**
+     * Initializes a new TlsConfig with the default session cache settings.
+     *
+     * @param trustPolicy how server certificates are checked
+     */
+    public TlsConfig(TrustPolicy trustPolicy) {
+        this(trustPolicy, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Initializes a new TlsConfig.
+     *
+     * @param trustPolicy how server certificates are checked
+     * @param sessionCacheSize the number of TLS sessions kept for resumption, 0 for no limit
+     * @param sessionTimeoutSeconds how long a TLS session may be resumed, 0 for no limit
+     */
+    public TlsConfig(TrustPolicy trustPolicy, int sessionCacheSize, int sessionTimeoutSeconds) {
+        this(trustPolicy == TrustPolicy.TRUST_ALL ? trustAllContext() : systemContext(null),
+                trustPolicy == TrustPolicy.TRUST_ALL ? TrustAllHostnameVerifier.INSTANCE : null,
+                sessionCacheSize, sessionTimeoutSeconds);
+    }
+
+    /**
+     * Initializes a new TlsConfig validating server certificates against the given trust store.
+     *
+     * @param trustStore the certificates to trust
+     */
+    public TlsConfig(KeyStore trustStore) {
+        this(systemContext(trustStore), null, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Initializes a new TlsConfig from an existing SSL context.
+     *
+     * @param sslContext an initialized SSL context
+     * @param hostnameVerifier the host name verifier, or null to use standard https host name checking
+     */
+    public TlsConfig(SSLContext sslContext, HostnameVerifier hostnameVerifier) {
+        this(sslContext, hostnameVerifier, DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    private TlsConfig(SSLContext sslContext, HostnameVerifier hostnameVerifier, int sessionCacheSize,
+            int sessionTimeoutSeconds) {
+        SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(sessionCacheSize);
+            sessions.setSessionTimeout(sessionTimeoutSeconds);
+        }
+        this.sslContext = sslContext;
+        this.socketFactory = new HandshakeCountingSocketFactory(sslContext.getSocketFactory());
+        this.hostnameVerifier = hostnameVerifier;
+    }
+
+    /**
+     * @return the SSL context shared by all connections
+     */
+    public SSLContext getSSLContext() {
+        return this.sslContext;
+    }
+
+    /**
+     * @return the socket factory shared by all connections
+     */
+    public SSLSocketFactory getSocketFactory() {
+        return this.socketFactory;
+    }
+
+    /**
+     * @return the host name verifier, or null if standard https host name checking applies
+     */
+    public HostnameVerifier getHostnameVerifier() {
+        return this.hostnameVerifier;
+    }
+
+    /**
+     * The JSSE reports completed handshakes on a separate thread, so the count may briefly lag behind.
+     *
+     * @return the number of completed handshakes on sockets from {@link #getSocketFactory()}
+     */
+    public long getHandshakeCount() {
+        return this.handshakes.get();
+    }
+
+    /**
+     * @return the number of those handshakes that resumed a cached session
+     */
+    public long getResumedHandshakeCount() {
+        return this.resumedHandshakes.get();
+    }
+
+    /**
+     * Prepares a socket created by {@link #getSocketFactory()} and performs the handshake.
+     *
+     * @param socket the socket
+     * @param host the host name the socket is connected to
+     */
+    void handshake(SSLSocket socket, String host) throws IOException {
+        if (this.hostnameVerifier == null) {
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parameters);
+        }
+        socket.startHandshake();
+        if (this.hostnameVerifier != null && !this.hostnameVerifier.verify(host, socket.getSession())) {
+            throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+        }
+    }
+
+    private static SSLContext systemContext(KeyStore trustStore) {
+        try {
+            SSLContext sc = SSLContext.getInstance("TLS");
+            TrustManager[] trustManagers = null;
+            if (trustStore != null) {
+                TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                factory.init(trustStore);
+                trustManagers = factory.getTrustManagers();
+            }
+            sc.init(null, trustManagers, null);
+            return sc;
+        } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
+            throw new EPLiteException("Unable to create SSL context", e);
+        }
+    }
+
+    /**
+     * Creates an SSL context with a trust manager that trusts all certificates
+     */
+    private static SSLContext trustAllContext() {
+        // An extended trust manager, so that the JSSE does not add its own host name check
+        TrustManager[] trustAllCerts = new TrustManager[] { new X509ExtendedTrustManager() {
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+
+                public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                }
+
+                public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                }
+
+                public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                }
+
+                public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                }
+            }
+        };
+
+        try {
+            SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, trustAllCerts, new SecureRandom());
+            return sc;
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new EPLiteException("Unable to create SSL context", e);
+        }
+    }
+
+    private static final class TrustAllHostnameVerifier implements HostnameVerifier {
+        static final TrustAllHostnameVerifier INSTANCE = new TrustAllHostnameVerifier();
+
+        public boolean verify(String hostname, SSLSession session) {
+            return true;
+        }
+    }
+
+    /**
+     * Counts handshakes, and those that resumed a session created before the socket was.
+     */
+    private final class HandshakeCountingSocketFactory extends SSLSocketFactory {
+        private final SSLSocketFactory delegate;
+
+        HandshakeCountingSocketFactory(SSLSocketFactory delegate) {
+            this.delegate = delegate;
+        }
+
+        public String[] getDefaultCipherSuites() {
+            return this.delegate.getDefaultCipherSuites();
+        }
+
+        public String[] getSupportedCipherSuites() {
+            return this.delegate.getSupportedCipherSuites();
+        }
+
+        public Socket createSocket() throws IOException {
+            return this.count(this.delegate.createSocket());
+        }
+
+        public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+            return this.count(this.delegate.createSocket(s, host, port, autoClose));
+        }
+
+        public Socket createSocket(String host, int port) throws IOException {
+            return this.count(this.delegate.createSocket(host, port));
+        }
+
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return this.count(this.delegate.createSocket(host, port, localHost, localPort));
+        }
+
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return this.count(this.delegate.createSocket(host, port));
+        }
+
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return this.count(this.delegate.createSocket(address, port, localAddress, localPort));
+        }
+
+        private Socket count(Socket socket) {
+            if (socket instanceof SSLSocket) {
+                final long createdAt = System.currentTimeMillis();
+                ((SSLSocket) socket).addHandshakeCompletedListener(new HandshakeCompletedListener() {
+                    public void handshakeCompleted(HandshakeCompletedEvent event) {
+                        handshakes.incrementAndGet();
+                        if (event.getSession().getCreationTime() < createdAt) {
+                            resumedHandshakes.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            return socket;
+        }
+    }
+}
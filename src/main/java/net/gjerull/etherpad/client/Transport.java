@@ -0,0 +1,96 @@
+package net.gjerull.etherpad.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Creates the {@link Request} objects used by {@link EPLiteConnection} to talk to the server.<br />
+ * <br />
+ * The default implementation, {@link URLConnectionTransport}, opens a new
+ * {@link java.net.URLConnection} for every request. Use {@link PooledTransport}
+ * to keep persistent connections to the Etherpad Lite instance.
+ */
+public interface Transport {
+    /**
+     * The default time allowed to open a connection, in milliseconds
+     */
+    int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The default time allowed to wait for data from the server, in milliseconds
+     */
+    int DEFAULT_READ_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * Creates a GET request for the given URL.
+     *
+     * @param url the URL object, including the query string
+     * @return Request
+     */
+    Request newGetRequest(URL url);
+
+    /**
+     * Creates a POST request for the given URL.
+     *
+     * @param url the URL object
+     * @param body url-encoded (application/x-www-form-urlencoded) request body
+     * @return Request
+     */
+    Request newPostRequest(URL url, String body);
+
+    /**
+     * Creates a POST request for the given URL from an encoded body.
+     *
+     * @param url the URL object
+     * @param body url-encoded (application/x-www-form-urlencoded) request body, in US-ASCII
+     * @return Request
+     */
+    default Request newPostRequest(URL url, byte[] body) {
+        return this.newPostRequest(url, new String(body, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Creates a POST request whose body is written while it is sent. The default implementation writes the
+     * whole body into memory first; the transports of this library stream it.
+     *
+     * @param url the URL object
+     * @param body the request body
+     * @return Request
+     */
+    default Request newPostRequest(URL url, StreamingBody body) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            body.writeTo(buffer);
+        } catch (IOException e) {
+            throw new EPLiteException("Unable to read the request body (" + e.getClass() + "): " + e.getMessage(), e);
+        }
+        return this.newPostRequest(url, buffer.toByteArray());
+    }
+
+    /**
+     * Returns the time allowed to open a connection. The default implementation returns 0, for no limit.
+     *
+     * @return the timeout in milliseconds, or 0 for no limit
+     */
+    default int getConnectTimeout() {
+        return 0;
+    }
+
+    /**
+     * Returns the time allowed to wait for data from the server. The default implementation returns 0, for no limit.
+     *
+     * @return the timeout in milliseconds, or 0 for no limit
+     */
+    default int getReadTimeout() {
+        return 0;
+    }
+
+    /**
+     * Returns the TLS settings used for https connections.
+     *
+     * @return TlsConfig
+     */
+    TlsConfig getTlsConfig();
+}
@@ -0,0 +1,17 @@
+package net.gjerull.etherpad.client;
+
+/**
+ * How the server's certificate is checked on https connections.
+ */
+public enum TrustPolicy {
+    /**
+     * Accept any certificate and host name. This is the historical behaviour of the client,
+     * meant for Etherpad Lite instances using self-signed certificates.
+     */
+    TRUST_ALL,
+
+    /**
+     * Validate the certificate chain against the JVM's default trust store and check the host name.
+     */
+    SYSTEM_DEFAULT
+}
@@ -0,0 +1,77 @@
+package net.gjerull.etherpad.client;
+
+import java.net.URL;
+
+/**
+ * The default transport, sending each request through {@link GETRequest} or {@link POSTRequest}.
+ */
+public class URLConnectionTransport implements Transport {
+    private final TlsConfig tlsConfig;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT_MILLIS;
+
+    /**
+     * Initializes a new URLConnectionTransport trusting all server certificates.
+     */
+    public URLConnectionTransport() {
+        this(new TlsConfig(TrustPolicy.TRUST_ALL));
+    }
+
+    /**
+     * Initializes a new URLConnectionTransport.
+     *
+     * @param tlsConfig the TLS settings for https connections
+     */
+    public URLConnectionTransport(TlsConfig tlsConfig) {
+        this.tlsConfig = tlsConfig;
+    }
+
+    public Request newGetRequest(URL url) {
+        return new GETRequest(url, this.tlsConfig, this.connectTimeout, this.readTimeout);
+    }
+
+    public Request newPostRequest(URL url, String body) {
+        return new POSTRequest(url, body, this.tlsConfig, this.connectTimeout, this.readTimeout);
+    }
+
+    public Request newPostRequest(URL url, StreamingBody body) {
+        return new POSTRequest(url, body, this.tlsConfig, this.connectTimeout, this.readTimeout);
+    }
+
+    public TlsConfig getTlsConfig() {
+        return this.tlsConfig;
+    }
+
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the time allowed to open a connection. The default is {@link #DEFAULT_CONNECT_TIMEOUT_MILLIS}.
+     *
+     * @param connectTimeout the timeout in milliseconds, or 0 for no limit
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = checkTimeout(connectTimeout);
+    }
+
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Sets the time allowed to wait for data from the server. The default is {@link #DEFAULT_READ_TIMEOUT_MILLIS}.
+     *
+     * @param readTimeout the timeout in milliseconds, or 0 for no limit
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = checkTimeout(readTimeout);
+    }
+
+    static int checkTimeout(int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("A timeout cannot be negative");
+        }
+        return timeout;
+    }
+}
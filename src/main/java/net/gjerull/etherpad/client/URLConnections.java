@@ -0,0 +1,87 @@
+package net.gjerull.etherpad.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * Helpers shared by the requests sent through {@link URLConnection}.
+ */
+final class URLConnections {
+    private URLConnections() {
+    }
+
+    /**
+     * Opens a connection, applying the TLS settings if it is an https connection.
+     *
+     * @param url the URL object
+     * @param tlsConfig the TLS settings, or null for the JVM's defaults
+     * @return URLConnection
+     */
+    static URLConnection open(URL url, TlsConfig tlsConfig) throws IOException {
+        return open(url, tlsConfig, 0, 0);
+    }
+
+    /**
+     * Opens a connection with timeouts, applying the TLS settings if it is an https connection.
+     * Both timeouts are shortened to the time left before the {@link Deadline} of the current thread.
+     *
+     * @param url the URL object
+     * @param tlsConfig the TLS settings, or null for the JVM's defaults
+     * @param connectTimeout the time allowed to connect in milliseconds, or 0 for no limit
+     * @param readTimeout the time allowed to wait for data in milliseconds, or 0 for no limit
+     * @return URLConnection
+     */
+    static URLConnection open(URL url, TlsConfig tlsConfig, int connectTimeout, int readTimeout) throws IOException {
+        URLConnection con = url.openConnection();
+        con.setConnectTimeout(Deadline.timeoutMillis(connectTimeout));
+        con.setReadTimeout(Deadline.timeoutMillis(readTimeout));
+        if (tlsConfig != null && con instanceof HttpsURLConnection) {
+            HttpsURLConnection https = (HttpsURLConnection) con;
+            https.setSSLSocketFactory(tlsConfig.getSocketFactory());
+            if (tlsConfig.getHostnameVerifier() != null) {
+                https.setHostnameVerifier(tlsConfig.getHostnameVerifier());
+            }
+        }
+        return con;
+    }
+
+    /**
+     * Returns the response body, failing once the {@link Deadline} of the current thread has expired.
+     *
+     * @param con the connection
+     * @return InputStream
+     */
+    static InputStream input(URLConnection con) throws IOException {
+        return DeadlineInputStream.of(con.getInputStream());
+    }
+
+    /**
+     * Returns the charset parameter of a Content-Type header.
+     *
+     * @param contentType the header value, may be null
+     * @return the charset, or UTF-8 (the encoding of JSON) if none is given
+     */
+    static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    String name = trimmed.substring("charset=".length()).replace("\"", "").trim();
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+}
@@ -0,0 +1,118 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+public class ApiMetricsTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+    private static final String TEXT_RESPONSE = "{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9009);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9009", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void records_calls_errors_and_sizes_per_method() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("padID", "missing"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200).withBody(TEXT_RESPONSE));
+        mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/setText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+
+        for (int i = 0; i < 3; i++) {
+            client.getText("pad");
+        }
+        try {
+            client.getText("missing");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals(EPLiteConnection.CODE_INVALID_PARAMETERS, e.getCode());
+        }
+        client.setText("pad", "Hello");
+
+        MethodMetrics getText = client.getMetrics().get("getText");
+        assertEquals(4, getText.getCalls());
+        assertEquals(1, getText.getErrors());
+        assertEquals(Long.valueOf(1), getText.getErrorsByCode().get(EPLiteConnection.CODE_INVALID_PARAMETERS));
+        assertTrue(getText.getResponseChars() >= 3 * TEXT_RESPONSE.length());
+        assertTrue(getText.getRequestBytes() > 0);
+        assertEquals(4, getText.getLatency().getCount());
+        assertTrue(getText.getLatency().getPercentile(50) > 0);
+        assertEquals(1, client.getMetrics().get("setText").getCalls());
+        assertNull(client.getMetrics().get("getHTML"));
+        assertEquals(2, client.getMetrics().getAll().size());
+        assertTrue(client.getMetrics().toString().startsWith("getText calls=4 errors=1"));
+    }
+
+    @Test
+    public void connection_failures_have_no_code() {
+        mockServer.stop();
+
+        try {
+            client.checkToken();
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals(EPLiteException.NO_CODE, e.getCode());
+        }
+
+        MethodMetrics checkToken = client.getMetrics().get("checkToken");
+        assertEquals(Long.valueOf(1), checkToken.getErrorsByCode().get(EPLiteException.NO_CODE));
+    }
+
+    @Test
+    public void histogram_percentiles_are_within_bucket_precision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertWithin(500000, histogram.getPercentile(50));
+        assertWithin(990000, histogram.getPercentile(99));
+        assertWithin(999000, histogram.getPercentile(99.9));
+        assertEquals(1000000, histogram.getPercentile(100));
+        assertEquals(500500.0, histogram.getMean(), 0.001);
+    }
+
+    @Test
+    public void histogram_buckets_cover_the_value_range() {
+        long[] values = { 0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE };
+        for (long value : values) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertTrue(value + " <= " + highest, value <= highest);
+            assertTrue(value + " within 6.25% of " + highest, highest - value <= value / 16);
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " not within 6.25% above " + expected,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
@@ -0,0 +1,95 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+public class ChangesetTest {
+    @Test
+    public void insert_keep_and_delete() {
+        assertEquals("hello world\n", Changeset.parse("Z:6>6=5+6$ world").applyTo("hello\n"));
+        assertEquals("hllo\n", Changeset.parse("Z:6<1=1-1$").applyTo("hello\n"));
+        assertEquals("a\nxyb\n", Changeset.parse("Z:4>2|1=2*0+2$xy").applyTo("a\nb\n"));
+    }
+
+    @Test
+    public void base36_lengths() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            text.append('a');
+        }
+        text.append('\n');
+        // 41 is "15" and 40 is "14" in base 36
+        Changeset changeset = Changeset.parse("Z:15<1|1=14-1$");
+
+        assertEquals(41, changeset.getOldLength());
+        assertEquals(40, changeset.getNewLength());
+        assertEquals(text.substring(0, 40), changeset.applyTo(text));
+    }
+
+    @Test
+    public void replay_into_swapped_builders() {
+        String[] changesets = { "Z:1>5+5$Hello", "Z:6>6=5+6$ world", "Z:c<6=5-6$" };
+        StringBuilder current = new StringBuilder("\n");
+        StringBuilder next = new StringBuilder();
+        for (String changeset : changesets) {
+            next.setLength(0);
+            Changeset.parse(changeset).applyTo(current, next);
+            StringBuilder swap = current;
+            current = next;
+            next = swap;
+        }
+
+        assertEquals("Hello\n", current.toString());
+    }
+
+    @Test
+    public void ops_with_attributes() throws Exception {
+        Map response = (Map) new JSONParser().parse("{\"pool\": {\"numToAttrib\": {"
+                + "\"0\": [\"author\", \"a.s8oes9dhwrvt0zif\"], \"1\": [\"bold\", \"true\"]}, \"nextNum\": 2}}");
+        AttributePool pool = new AttributePool(response);
+        Changeset.OpIterator op = Changeset.parse("Z:1>6*0*1+5*0|1+1$Hello\n").ops();
+
+        assertTrue(op.next());
+        assertEquals('+', op.getOpcode());
+        assertEquals(5, op.getChars());
+        assertEquals(0, op.getLines());
+        assertEquals(2, op.getAttributeCount());
+        assertEquals("author", pool.getKey(op.getAttribute(0)));
+        assertEquals("a.s8oes9dhwrvt0zif", pool.getValue(op.getAttribute(0)));
+        assertEquals("bold", pool.getKey(op.getAttribute(1)));
+        assertTrue(op.next());
+        assertEquals(1, op.getLines());
+        assertEquals(1, op.getAttributeCount());
+        assertFalse(op.next());
+    }
+
+    @Test
+    public void wrong_base_length() {
+        try {
+            Changeset.parse("Z:6>6=5+6$ world").applyTo("hi\n");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Changeset applies to a text of length 6"));
+        }
+    }
+
+    @Test
+    public void malformed_changesets() {
+        String[] changesets = { "X:6>6=5+6$ world", "Z:6", "Z:6>6=5+7$ world", "Z:6>6=5?6$ world", "Z:6>0=7$" };
+        for (String changeset : changesets) {
+            try {
+                Changeset.parse(changeset).applyTo("hello\n");
+                fail("Expected '" + EPLiteException.class.getName() + "' to be thrown for " + changeset);
+            } catch (EPLiteException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid changeset"));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class CircuitBreakerTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+    private static final String URL = "http://localhost:9020";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9020);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient(URL, API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void opens_after_failures_and_fails_fast() throws Exception {
+        CircuitBreaker breaker = breaker(60000L);
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText).respond(HttpResponse.response().withStatusCode(500));
+
+        for (int i = 0; i < 4; i++) {
+            callFails("getText");
+        }
+        try {
+            client.getText("pad");
+            fail("Expected an open circuit");
+        } catch (EPLiteCircuitOpenException e) {
+            assertEquals(URL, e.getCircuit());
+        }
+        mockServer.verify(getText, VerificationTimes.exactly(4));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(URL, "getText"));
+        assertEquals(1, breaker.getRejectedCount());
+        assertEquals(Arrays.asList(URL + " CLOSED->OPEN"), events);
+    }
+
+    @Test
+    public void half_open_trial_calls_close_the_circuit() throws Exception {
+        breaker(100L);
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText).respond(HttpResponse.response().withStatusCode(500));
+        for (int i = 0; i < 4; i++) {
+            callFails("getText");
+        }
+
+        Thread.sleep(150);
+        mockServer.clear(getText);
+        mockServer.when(getText).respond(ok("{\"text\":\"back\"}"));
+        assertEquals("back", client.getText("pad").get("text"));
+        assertEquals(Arrays.asList(URL + " CLOSED->OPEN", URL + " OPEN->HALF_OPEN", URL + " HALF_OPEN->CLOSED"), events);
+    }
+
+    @Test
+    public void a_failed_trial_call_opens_the_circuit_again() throws Exception {
+        breaker(100L);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(500));
+        for (int i = 0; i < 4; i++) {
+            callFails("getText");
+        }
+
+        Thread.sleep(150);
+        callFails("getText");
+        assertEquals(Arrays.asList(URL + " CLOSED->OPEN", URL + " OPEN->HALF_OPEN", URL + " HALF_OPEN->OPEN"), events);
+    }
+
+    @Test
+    public void per_method_circuits_keep_other_methods_going() throws Exception {
+        CircuitBreaker breaker = breaker(60000L);
+        breaker.setPerMethod(true);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createDiffHTML"))
+                .respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText")).respond(ok("{\"text\":\"fine\"}"));
+
+        for (int i = 0; i < 4; i++) {
+            callFails("createDiffHTML");
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState(URL, "createDiffHTML"));
+        assertEquals("fine", client.getText("pad").get("text"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(URL, "getText"));
+    }
+
+    @Test
+    public void error_responses_do_not_open_the_circuit() throws Exception {
+        CircuitBreaker breaker = breaker(60000L);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText")).respond(HttpResponse.response()
+                .withStatusCode(200).withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+
+        for (int i = 0; i < 10; i++) {
+            callFails("getText");
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(URL, "getText"));
+    }
+
+    @Test
+    public void expired_deadlines_do_not_open_the_circuit() throws Exception {
+        CircuitBreaker breaker = breaker(60000L);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"slow\"}").withDelay(new Delay(TimeUnit.MILLISECONDS, 300)));
+
+        for (int i = 0; i < 6; i++) {
+            try (Deadline deadline = Deadline.after(50, TimeUnit.MILLISECONDS)) {
+                client.getText("pad");
+                fail("Expected an EPLiteTimeoutException");
+            } catch (EPLiteTimeoutException e) {
+                // expected
+            }
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState(URL, "getText"));
+    }
+
+    private CircuitBreaker breaker(long openMillis) {
+        CircuitBreaker breaker = new CircuitBreaker(0.5, 4, 4, openMillis, 1);
+        breaker.addListener((circuit, from, to) -> events.add(circuit + " " + from + "->" + to));
+        client.setCircuitBreaker(breaker);
+        return breaker;
+    }
+
+    private void callFails(String apiMethod) {
+        try {
+            if ("getText".equals(apiMethod)) {
+                client.getText("pad");
+            } else {
+                client.createDiffHTML("pad", 1, 2);
+            }
+            fail("Expected an EPLiteException");
+        } catch (EPLiteCircuitOpenException e) {
+            throw e;
+        } catch (EPLiteException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class ConcurrencyLimiterTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+    private static final String URL = "http://localhost:9021";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9021);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient(URL, API_KEY);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        mockServer.stop();
+    }
+
+    @Test
+    public void calls_over_the_limit_wait_their_turn() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        client.setConcurrencyLimiter(limiter);
+        slowGetText(300);
+
+        List<Future<Map>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(executor.submit(() -> client.getText("pad")));
+        }
+        Thread.sleep(150);
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(2, limiter.getQueueDepth());
+
+        for (Future<Map> call : calls) {
+            assertEquals("slow", call.get(5, TimeUnit.SECONDS).get("text"));
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+        assertEquals(0, limiter.getRejectedCount());
+    }
+
+    @Test
+    public void a_full_queue_rejects_calls() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        limiter.setMaxQueue(0);
+        client.setConcurrencyLimiter(limiter);
+        HttpRequest getText = slowGetText(300);
+
+        Future<Map> first = executor.submit(() -> client.getText("pad"));
+        Thread.sleep(100);
+        try {
+            client.getText("pad");
+            fail("Expected an EPLiteRejectedException");
+        } catch (EPLiteRejectedException e) {
+            // expected
+        }
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(1, limiter.getRejectedCount());
+        mockServer.verify(getText, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void calls_waiting_too_long_are_rejected() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        limiter.setMaxWait(100L);
+        client.setConcurrencyLimiter(limiter);
+        slowGetText(500);
+
+        Future<Map> first = executor.submit(() -> client.getText("pad"));
+        Thread.sleep(100);
+        try {
+            client.getText("pad");
+            fail("Expected an EPLiteRejectedException");
+        } catch (EPLiteRejectedException e) {
+            // expected
+        }
+        assertEquals(0, limiter.getQueueDepth());
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void the_deadline_bounds_the_wait() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        client.setConcurrencyLimiter(limiter);
+        slowGetText(500);
+
+        Future<Map> first = executor.submit(() -> client.getText("pad"));
+        Thread.sleep(100);
+        try (Deadline deadline = Deadline.after(100, TimeUnit.MILLISECONDS)) {
+            client.getText("pad");
+            fail("Expected an EPLiteTimeoutException");
+        } catch (EPLiteTimeoutException e) {
+            // expected
+        }
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void failures_and_slow_calls_lower_the_limit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20, 100L);
+        client.setConcurrencyLimiter(limiter);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getHTML"))
+                .respond(ok("{\"html\":\"slow\"}").withDelay(new Delay(TimeUnit.MILLISECONDS, 200)));
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.getText("pad");
+                fail("Expected an EPLiteException");
+            } catch (EPLiteException e) {
+                // expected
+            }
+        }
+        assertEquals(7, limiter.getLimit());
+        client.getHTML("pad");
+        assertEquals(6, limiter.getLimit());
+        for (int i = 0; i < 10; i++) {
+            try {
+                client.getText("pad");
+            } catch (EPLiteException e) {
+                // expected
+            }
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void a_burst_of_slow_calls_cuts_the_limit_once() throws Exception {
+        EPLiteAsyncClient asyncClient = new EPLiteAsyncClient(URL, API_KEY);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 2, 40, 100L);
+        asyncClient.setConcurrencyLimiter(limiter);
+        slowGetText(300);
+
+        List<CompletableFuture<Map>> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(asyncClient.getText("pad"));
+        }
+        for (CompletableFuture<Map> call : calls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(18, limiter.getLimit());
+
+        // A call sent after the cut cuts the limit again
+        asyncClient.getText("pad").get(5, TimeUnit.SECONDS);
+        assertEquals(16, limiter.getLimit());
+    }
+
+    @Test
+    public void error_responses_keep_the_limit_and_successes_raise_a_limit_in_use() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 10000L);
+        client.setConcurrencyLimiter(limiter);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText")).respond(HttpResponse.response()
+                .withStatusCode(200).withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getHTML")).respond(ok("{\"html\":\"ok\"}"));
+
+        try {
+            client.getText("pad");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            // expected
+        }
+        assertEquals(2, limiter.getLimit());
+        for (int i = 0; i < 5; i++) {
+            client.getHTML("pad");
+        }
+        // One call at a time stops raising the limit once it uses less than half of it
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void asynchronous_calls_queue_without_blocking() throws Exception {
+        EPLiteAsyncClient asyncClient = new EPLiteAsyncClient(URL, API_KEY);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        asyncClient.setConcurrencyLimiter(limiter);
+        HttpRequest getText = slowGetText(200);
+
+        CompletableFuture<Map> first = asyncClient.getText("pad");
+        CompletableFuture<Map> second = asyncClient.getText("pad");
+        assertEquals(1, limiter.getQueueDepth());
+
+        assertEquals("slow", first.get(5, TimeUnit.SECONDS).get("text"));
+        assertEquals("slow", second.get(5, TimeUnit.SECONDS).get("text"));
+        assertEquals(0, limiter.getInFlight());
+        mockServer.verify(getText, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void interactive_calls_wait_before_batch_calls() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 10000L);
+        client.setConcurrencyLimiter(limiter);
+        slowGetText(200);
+        List<String> done = Collections.synchronizedList(new ArrayList<>());
+
+        Future<?> first = executor.submit(() -> done.add("first " + client.getText("pad").get("text")));
+        Thread.sleep(50);
+        Future<?> batch = executor.submit(() -> {
+            try (Priority.Scope scope = Priority.BATCH.apply()) {
+                done.add("batch " + client.getText("pad").get("text"));
+            }
+        });
+        Thread.sleep(50);
+        Future<?> interactive = executor.submit(() -> done.add("interactive " + client.getText("pad").get("text")));
+        Thread.sleep(50);
+        assertEquals(1, limiter.getQueueDepth(Priority.BATCH));
+        assertEquals(1, limiter.getQueueDepth(Priority.INTERACTIVE));
+
+        first.get(5, TimeUnit.SECONDS);
+        batch.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("first slow", "interactive slow", "batch slow"), done);
+    }
+
+    @Test
+    public void batch_calls_leave_the_reserved_share_to_interactive_calls() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 4, 4, 10000L);
+        limiter.setReservedShare(0.5);
+        client.setConcurrencyLimiter(limiter);
+        slowGetText(300);
+
+        List<Future<Map>> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            batch.add(executor.submit(() -> {
+                try (Priority.Scope scope = Priority.BATCH.apply()) {
+                    return client.getText("pad");
+                }
+            }));
+        }
+        Thread.sleep(100);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(2, limiter.getQueueDepth(Priority.BATCH));
+
+        client.getText("pad");
+        for (Future<Map> call : batch) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        LatencyHistogram interactiveWait = limiter.getWaitTime(Priority.INTERACTIVE);
+        LatencyHistogram batchWait = limiter.getWaitTime(Priority.BATCH);
+        assertEquals(1, interactiveWait.getCount());
+        assertTrue(interactiveWait.getMax() < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(4, batchWait.getCount());
+        assertTrue(batchWait.getMax() >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    public void priority_scopes_nest_and_restore() {
+        assertEquals(Priority.INTERACTIVE, Priority.current());
+        try (Priority.Scope batch = Priority.BATCH.apply()) {
+            assertEquals(Priority.BATCH, Priority.current());
+            try (Priority.Scope interactive = Priority.INTERACTIVE.apply()) {
+                assertEquals(Priority.INTERACTIVE, Priority.current());
+            }
+            assertEquals(Priority.BATCH, Priority.current());
+        }
+        assertEquals(Priority.INTERACTIVE, Priority.current());
+    }
+
+    private HttpRequest slowGetText(long millis) {
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText).respond(ok("{\"text\":\"slow\"}").withDelay(new Delay(TimeUnit.MILLISECONDS, millis)));
+        return getText;
+    }
+}
@@ -0,0 +1,203 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.Parameter;
+import org.mockserver.model.ParameterBody;
+import org.mockserver.model.StringBody;
+
+public class EPLiteAsyncClientTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteAsyncClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9003);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteAsyncClient("http://localhost:9003", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void concurrent_get_text() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+
+        List<CompletableFuture<Map>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.getText("pad-" + i));
+        }
+        for (CompletableFuture<Map> future : futures) {
+            assertEquals("Hello\n", future.get().get("text"));
+        }
+    }
+
+    @Test
+    public void post_with_form_body() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/createGroupIfNotExistsFor")
+                .withBody(new StringBody("apikey=" + API_KEY + "&groupMapper=groupname")))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"groupID\":\"g.s8oes9dhwrvt0zif\"}}"));
+
+        Map response = client.createGroupIfNotExistsFor("groupname").get();
+
+        assertEquals("g.s8oes9dhwrvt0zif", response.get("groupID"));
+    }
+
+    @Test
+    public void void_methods_complete_with_null() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/checkToken"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+
+        assertEquals(null, client.checkToken().get());
+    }
+
+    @Test
+    public void error_code_completes_exceptionally() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/deleteGroup"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"groupID does not exist\",\"data\":null}"));
+
+        try {
+            client.deleteGroup("g.unknown").get();
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EPLiteException);
+            assertEquals("groupID does not exist", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void the_transport_sets_the_read_timeout() throws Exception {
+        respond("getText", "{\"text\":\"Hello\\n\"}", 2000);
+        URLConnectionTransport transport = new URLConnectionTransport();
+        transport.setReadTimeout(300);
+        EPLiteAsyncClient impatient = new EPLiteAsyncClient("http://localhost:9003", API_KEY, transport);
+
+        long start = System.nanoTime();
+        try {
+            impatient.getText("pad").get();
+            fail("Expected '" + EPLiteTimeoutException.class.getName() + "' to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EPLiteTimeoutException);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    @Test
+    public void grant_pad_access_runs_independent_calls_concurrently() throws Exception {
+        respond("createGroupIfNotExistsFor", "{\"groupID\":\"g.1\"}", 300);
+        respond("createAuthorIfNotExistsFor", "{\"authorID\":\"a.1\"}", 300);
+        respond("createGroupPad", "null", 300);
+        respond("createSession", "{\"sessionID\":\"s.1\"}", 300);
+
+        long start = System.nanoTime();
+        PadAccessGrant grant = client.grantPadAccess("team", "alice", "Alice", "notes", 1700000000L).get();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals("s.1", grant.getSessionID());
+        assertEquals("g.1", grant.getGroupID());
+        assertEquals("a.1", grant.getAuthorID());
+        assertEquals("g.1$notes", grant.getPadID());
+        assertEquals(1700000000L, grant.getValidUntil());
+        // Two round-trips rather than four
+        assertTrue("took " + millis + " ms", millis < 1000);
+        mockServer.verify(HttpRequest.request().withPath("/api/1.2.13/createSession")
+                .withBody(ParameterBody.params(Parameter.param("groupID", "g.1"), Parameter.param("authorID", "a.1"),
+                        Parameter.param("validUntil", "1700000000"))));
+    }
+
+    @Test
+    public void grant_pad_access_keeps_an_existing_pad() throws Exception {
+        respond("createGroupIfNotExistsFor", "{\"groupID\":\"g.1\"}", 0);
+        respond("createAuthorIfNotExistsFor", "{\"authorID\":\"a.1\"}", 0);
+        respond("createSession", "{\"sessionID\":\"s.1\"}", 0);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createGroupPad"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padName does already exist\",\"data\":null}"));
+
+        PadAccessGrant grant = client.grantPadAccess("team", "alice", null, "notes", 1700000000L).get();
+        assertEquals("g.1$notes", grant.getPadID());
+
+        PadAccessGrant withoutPad = client.grantPadAccess("team", "alice", null, null, 1700000000L).get();
+        assertEquals(null, withoutPad.getPadID());
+        assertEquals("s.1", withoutPad.getSessionID());
+    }
+
+    @Test
+    public void grant_pad_access_deletes_the_session_if_the_pad_fails() throws Exception {
+        respond("createGroupIfNotExistsFor", "{\"groupID\":\"g.1\"}", 0);
+        respond("createAuthorIfNotExistsFor", "{\"authorID\":\"a.1\"}", 0);
+        respond("createSession", "{\"sessionID\":\"s.1\"}", 0);
+        respond("deleteSession", "null", 0);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createGroupPad"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"groupID does not exist\",\"data\":null}"));
+
+        try {
+            client.grantPadAccess("team", "alice", "Alice", "notes", 1700000000L).get();
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof EPLiteException);
+            assertEquals("groupID does not exist", e.getCause().getMessage());
+        }
+        Thread.sleep(200);
+        mockServer.verify(HttpRequest.request().withPath("/api/1.2.13/deleteSession")
+                .withBody(new StringBody("apikey=" + API_KEY + "&sessionID=s.1")));
+    }
+
+    @Test
+    public void grant_pad_access_reports_a_failed_cleanup() throws Exception {
+        respond("createGroupIfNotExistsFor", "{\"groupID\":\"g.1\"}", 0);
+        respond("createAuthorIfNotExistsFor", "{\"authorID\":\"a.1\"}", 0);
+        respond("createSession", "{\"sessionID\":\"s.1\"}", 0);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/deleteSession"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"sessionID does not exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createGroupPad"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"groupID does not exist\",\"data\":null}"));
+
+        try {
+            client.grantPadAccess("team", "alice", "Alice", "notes", 1700000000L).get();
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (ExecutionException e) {
+            assertEquals("groupID does not exist", e.getCause().getMessage());
+            assertEquals(1, e.getCause().getSuppressed().length);
+            assertEquals("sessionID does not exist", e.getCause().getSuppressed()[0].getMessage());
+        }
+    }
+
+    private void respond(String apiMethod, String data, long delayMillis) {
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/" + apiMethod))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}")
+                        .withDelay(new Delay(TimeUnit.MILLISECONDS, delayMillis)));
+    }
+}
@@ -2,6 +2,10 @@ package net.gjerull.etherpad.client;
 
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -63,6 +67,55 @@ public class EPLiteConnectionTest {
         assertEquals("apikey=apikey&padID=g.oln5fzaE8qfv4gdE%24test-1&text=%C3%A6%C3%B8%C3%A5", queryString);
     }
 
+    @Test
+    public void query_string_does_not_modify_the_arguments() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        Map<String,Object> apiArgs = new TreeMap<>();
+        apiArgs.put("padID", "test-1");
+
+        assertEquals("apikey=apikey&padID=test-1", connection.queryString(apiArgs, true));
+        assertEquals("apikey=apikey&padID=test-1", connection.queryString(apiArgs, false));
+        assertEquals(1, apiArgs.size());
+        assertFalse(apiArgs.containsKey("apikey"));
+    }
+
+    @Test
+    public void url_encoded_query_string_matches_url_encoder() throws Exception {
+        String text = "a b&c=d+e%f/g?h.i-j*k_l~m\u00e6\u20ac\ud83d\ude00\ud83d end\n";
+        String apiKey = "key with spaces&=";
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", apiKey, API_VERSION, ENCODING
+        );
+        Map<String,Object> apiArgs = new TreeMap<>();
+        apiArgs.put("rev", 27L);
+        apiArgs.put("text", text);
+
+        assertEquals("apikey=" + URLEncoder.encode(apiKey, StandardCharsets.UTF_8)
+                + "&rev=27&text=" + URLEncoder.encode(text, StandardCharsets.UTF_8),
+                connection.queryString(apiArgs, true));
+    }
+
+    @Test
+    public void url_encoded_query_string_in_another_encoding() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, "ISO-8859-1"
+        );
+        Map<String,Object> apiArgs = new TreeMap<>();
+        apiArgs.put("text", "\u00e6\u00f8\u00e5 x");
+
+        assertEquals("apikey=apikey&text=%E6%F8%E5+x", connection.queryString(apiArgs, true));
+    }
+
+    @Test(expected = EPLiteException.class)
+    public void url_encoded_query_string_in_an_unknown_encoding() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, "no-such-encoding"
+        );
+        connection.queryString(new TreeMap<String, Object>(), true);
+    }
+
     @Test(expected = EPLiteException.class)
     public void api_url_need_to_be_absolute() throws Exception {
         EPLiteConnection connection = new EPLiteConnection(
@@ -71,6 +124,20 @@ public class EPLiteConnectionTest {
         connection.apiUrl("relative-path", null);
     }
 
+    @Test
+    public void streamed_response_builds_only_the_requested_fields() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        String response = String.format(RESPONSE_TEMPLATE, 0, "ok",
+                "{\"pool\": {\"numToAttrib\": {\"0\": [\"bold\", true]}}, \"text\": \"Hello\", \"rev\": [1, {\"text\": 2}]}");
+
+        Map data = (Map) connection.handleResponse(new StringReader(response), Collections.singleton("text"));
+
+        assertEquals(1, data.size());
+        assertEquals("Hello", data.get("text"));
+    }
+
     @Test
     public void handle_valid_response_from_server() throws Exception {
         EPLiteConnection connection = new EPLiteConnection(
@@ -193,4 +260,55 @@ public class EPLiteConnectionTest {
         Object response = connection.handleResponse(serverResponse);
         assertNull(response);
     }
+
+    @Test
+    public void streamed_response_builds_nested_data() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        String chatHistory = "{\"messages\": [" +
+                "{\"text\": \"foo\", \"userId\": \"a.foo\", \"time\": 1359199533759, \"userName\": null}," +
+                "{\"text\": \"bar\", \"userId\": \"a.foo\", \"time\": 1359199534622, \"userName\": \"test\"}" +
+                "]}";
+        String serverResponse = String.format(RESPONSE_TEMPLATE, 0, "ok", chatHistory);
+
+        Map response = (Map) connection.handleResponse(new StringReader(serverResponse));
+
+        List messages = (List) response.get("messages");
+        assertEquals(2, messages.size());
+        assertEquals("bar", ((Map) messages.get(1)).get("text"));
+        assertEquals(1359199534622L, ((Map) messages.get(1)).get("time"));
+        assertEquals(response, connection.handleResponse(serverResponse));
+    }
+
+    @Test
+    public void streamed_error_stops_before_the_data() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+        // The data is never parsed once the error and its message are known
+        String serverResponse = "{\"code\": 1, \"message\": \"padID does not exist\", \"data\": <truncated";
+
+        try {
+            connection.handleResponse(new StringReader(serverResponse));
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    public void streamed_response_that_is_not_an_object() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(
+                "http://example.com/", "apikey", API_VERSION, ENCODING
+        );
+
+        try {
+            connection.handleResponse(new StringReader("[1, 2, 3]"));
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue("Unexpected Message: " + e.getMessage(),
+                    e.getMessage().startsWith("An unexpected response from the server:"));
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package net.gjerull.etherpad.client;
+
+import org.mockserver.model.HttpResponse;
+
+/**
+ * Responses of the Etherpad Lite HTTP JSON API for the MockServer tests.
+ */
+final class EtherpadResponses {
+    private EtherpadResponses() {
+    }
+
+    /**
+     * @param data the JSON of the data object
+     * @return a successful response carrying the data
+     */
+    static HttpResponse ok(String data) {
+        return HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}");
+    }
+}
@@ -0,0 +1,145 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class FailoverConnectionTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer first;
+    private ClientAndServer second;
+    private FailoverConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        first = startClientAndServer(9014);
+        second = startClientAndServer(9015);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+    }
+
+    @After
+    public void tearDown() {
+        if (connection != null) {
+            connection.close();
+        }
+        first.stop();
+        second.stop();
+    }
+
+    @Test
+    public void reads_fail_over_and_eject_an_endpoint_without_responses() throws Exception {
+        // Nothing listens on 9016
+        connection = connect("http://localhost:9016", "http://localhost:9015");
+        respond(second, "getText", "{\"text\":\"hello\"}");
+        EPLiteClient client = new EPLiteClient(connection);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("hello", client.getText("pad").get("text"));
+        }
+        Endpoint dead = connection.getEndpoints().get(0);
+        assertFalse(dead.isHealthy());
+        assertEquals(1, dead.getEjectionCount());
+        assertTrue(connection.getEndpoints().get(1).isHealthy());
+    }
+
+    @Test
+    public void reads_go_to_the_fastest_endpoint() throws Exception {
+        connection = connect("http://localhost:9014", "http://localhost:9015");
+        first.when(HttpRequest.request().withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"slow\"}").withDelay(new Delay(TimeUnit.MILLISECONDS, 200)));
+        respond(second, "getText", "{\"text\":\"fast\"}");
+        EPLiteClient client = new EPLiteClient(connection);
+
+        // Each endpoint is tried once before its latency is known
+        client.getText("pad");
+        client.getText("pad");
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fast", client.getText("pad").get("text"));
+        }
+        assertTrue(connection.getEndpoints().get(0).getLatencyNanos() > connection.getEndpoints().get(1).getLatencyNanos());
+    }
+
+    @Test
+    public void api_errors_do_not_eject_an_endpoint() throws Exception {
+        connection = connect("http://localhost:9014", "http://localhost:9015");
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        HttpResponse missing = HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}");
+        first.when(getText).respond(missing);
+        second.when(getText).respond(missing);
+        EPLiteClient client = new EPLiteClient(connection);
+
+        for (int i = 0; i < 5; i++) {
+            try {
+                client.getText("missing");
+            } catch (EPLiteException e) {
+                assertEquals(1, e.getCode());
+            }
+        }
+        assertTrue(connection.getEndpoints().get(0).isHealthy());
+        assertTrue(connection.getEndpoints().get(1).isHealthy());
+        // An error response is not repeated on the other endpoint
+        assertEquals(5, first.retrieveRecordedRequests(getText).length + second.retrieveRecordedRequests(getText).length);
+    }
+
+    @Test
+    public void probes_re_admit_a_recovered_endpoint() throws Exception {
+        connection = connect("http://localhost:9014", "http://localhost:9015");
+        first.when(HttpRequest.request().withPath("/api/1.2.13/checkToken"))
+                .respond(HttpResponse.response().withStatusCode(500));
+        respond(second, "checkToken", "null");
+        Endpoint endpoint = connection.getEndpoints().get(0);
+
+        for (int i = 0; i < 3; i++) {
+            connection.probeAll();
+        }
+        assertFalse(endpoint.isHealthy());
+
+        first.reset();
+        respond(first, "checkToken", "null");
+        connection.probeAll();
+        assertTrue(endpoint.isHealthy());
+        assertEquals(0.0, endpoint.getErrorRate(), 0.0);
+    }
+
+    @Test
+    public void writes_go_to_the_first_healthy_endpoint() throws Exception {
+        connection = connect("http://localhost:9014", "http://localhost:9015");
+        HttpRequest setText = HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/setText");
+        first.when(setText).respond(ok("null"));
+        second.when(setText).respond(ok("null"));
+        EPLiteClient client = new EPLiteClient(connection);
+
+        client.setText("pad", "one");
+        client.setText("pad", "two");
+        first.verify(setText, VerificationTimes.exactly(2));
+        second.verify(setText, VerificationTimes.exactly(0));
+    }
+
+    private static FailoverConnection connect(String... urls) {
+        List<String> list = Arrays.asList(urls);
+        // Probes are run by the tests
+        return new FailoverConnection(list, API_KEY, "1.2.13", "UTF-8", new URLConnectionTransport(), 0, TimeUnit.SECONDS);
+    }
+
+    private static void respond(ClientAndServer server, String apiMethod, String data) {
+        server.when(HttpRequest.request().withPath("/api/1.2.13/" + apiMethod)).respond(ok(data));
+    }
+}
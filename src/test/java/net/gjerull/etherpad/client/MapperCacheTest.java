@@ -0,0 +1,251 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class MapperCacheTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private final HttpRequest createGroup = HttpRequest.request().withPath("/api/1.2.13/createGroupIfNotExistsFor");
+    private final HttpRequest createAuthor = HttpRequest.request().withPath("/api/1.2.13/createAuthorIfNotExistsFor");
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9023);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9023", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void repeated_resolutions_are_served_locally() throws Exception {
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+        mockServer.when(createAuthor).respond(ok("{\"authorID\":\"a.1\"}"));
+        MapperCache cache = new MapperCache(100);
+        client.setMapperCache(cache);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("g.1", client.createGroupIfNotExistsFor("team").get("groupID"));
+            assertEquals("a.1", client.createAuthorIfNotExistsFor("team", "Alice").get("authorID"));
+        }
+
+        mockServer.verify(createGroup, VerificationTimes.exactly(1));
+        mockServer.verify(createAuthor, VerificationTimes.exactly(1));
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(6, cache.getHitCount());
+        assertEquals(0.75, cache.getHitRatio(), 0.0001);
+    }
+
+    @Test
+    public void least_recently_used_mappings_are_evicted() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createGroupIfNotExistsFor")
+                    .withBody("apikey=" + API_KEY + "&groupMapper=m" + i))
+                    .respond(ok("{\"groupID\":\"g." + i + "\"}"));
+        }
+        MapperCache cache = new MapperCache(2);
+        client.setMapperCache(cache);
+
+        client.createGroupIfNotExistsFor("m1");
+        client.createGroupIfNotExistsFor("m2");
+        client.createGroupIfNotExistsFor("m1");
+        client.createGroupIfNotExistsFor("m3");
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("g.1", client.createGroupIfNotExistsFor("m1").get("groupID"));
+        assertEquals("g.2", client.createGroupIfNotExistsFor("m2").get("groupID"));
+        mockServer.verify(createGroup, VerificationTimes.exactly(4));
+    }
+
+    @Test
+    public void failed_resolutions_are_not_cached() throws Exception {
+        mockServer.when(createGroup, Times.once()).respond(HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":2,\"message\":\"internal error\",\"data\":null}"));
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+        client.setMapperCache(new MapperCache(10));
+
+        try {
+            client.createGroupIfNotExistsFor("team");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            // expected
+        }
+        assertEquals("g.1", client.createGroupIfNotExistsFor("team").get("groupID"));
+        assertEquals("g.1", client.createGroupIfNotExistsFor("team").get("groupID"));
+        mockServer.verify(createGroup, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void the_store_outlives_a_restart() throws Exception {
+        Path store = folder.getRoot().toPath().resolve("mappers");
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+        mockServer.when(createAuthor).respond(ok("{\"authorID\":\"a.1\"}"));
+        try (MapperCache cache = new MapperCache(10, store)) {
+            client.setMapperCache(cache);
+            client.createGroupIfNotExistsFor("team\tone\n");
+            client.createAuthorIfNotExistsFor("alice");
+            assertEquals(2, cache.getStoreSize());
+        }
+
+        try (MapperCache restarted = new MapperCache(10, store)) {
+            client.setMapperCache(restarted);
+            assertEquals("g.1", client.createGroupIfNotExistsFor("team\tone\n").get("groupID"));
+            assertEquals("a.1", client.createAuthorIfNotExistsFor("alice").get("authorID"));
+            assertEquals(2, restarted.getHitCount());
+        }
+        mockServer.verify(createGroup, VerificationTimes.exactly(1));
+        mockServer.verify(createAuthor, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void deleted_groups_are_resolved_again() throws Exception {
+        Path store = folder.getRoot().toPath().resolve("mappers");
+        mockServer.when(createGroup, Times.once()).respond(ok("{\"groupID\":\"g.1\"}"));
+        mockServer.when(createGroup, Times.once()).respond(ok("{\"groupID\":\"g.2\"}"));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/deleteGroup")).respond(ok("null"));
+        try (MapperCache cache = new MapperCache(10, store)) {
+            client.setMapperCache(cache);
+            assertEquals("g.1", client.createGroupIfNotExistsFor("team").get("groupID"));
+            client.deleteGroup("g.1");
+            assertEquals(0, cache.getEntryCount());
+            assertEquals("g.2", client.createGroupIfNotExistsFor("team").get("groupID"));
+        }
+
+        try (MapperCache restarted = new MapperCache(10, store)) {
+            client.setMapperCache(restarted);
+            assertEquals("g.2", client.createGroupIfNotExistsFor("team").get("groupID"));
+            assertEquals(1, restarted.getHitCount());
+        }
+        mockServer.verify(createGroup, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void dropped_mappings_are_not_loaded() throws Exception {
+        Path store = folder.getRoot().toPath().resolve("mappers");
+        Files.write(store, List.of("G\tm1\tg.1", "G\tm2\tg.2", "G\tm1\t"), StandardCharsets.UTF_8);
+
+        try (MapperCache cache = new MapperCache(10, store)) {
+            assertEquals(1, cache.getEntryCount());
+            client.setMapperCache(cache);
+            assertEquals("g.2", client.createGroupIfNotExistsFor("m2").get("groupID"));
+        }
+        mockServer.verify(createGroup, VerificationTimes.exactly(0));
+    }
+
+    @Test
+    public void mappings_resolved_while_the_store_is_rewritten_are_kept() throws Exception {
+        Path store = folder.getRoot().toPath().resolve("mappers");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1020; i++) {
+            lines.add("G\tm0\tg.0");
+        }
+        Files.write(store, lines, StandardCharsets.UTF_8);
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+
+        try (MapperCache cache = new MapperCache(100, store)) {
+            client.setMapperCache(cache);
+            for (int i = 1; i <= 10; i++) {
+                client.createGroupIfNotExistsFor("m" + i);
+            }
+            assertEquals(11, cache.getStoreSize());
+            assertEquals(11, Files.readAllLines(store, StandardCharsets.UTF_8).size());
+            assertEquals(0, cache.getStoreErrorCount());
+        }
+        try (MapperCache restarted = new MapperCache(100, store)) {
+            assertEquals(11, restarted.getEntryCount());
+        }
+    }
+
+    @Test
+    public void failed_rewrites_are_counted() throws Exception {
+        Path directory = folder.newFolder("store").toPath();
+        Path store = directory.resolve("mappers");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1023; i++) {
+            lines.add("G\tm0\tg.0");
+        }
+        Files.write(store, lines, StandardCharsets.UTF_8);
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+
+        try (MapperCache cache = new MapperCache(100, store)) {
+            client.setMapperCache(cache);
+            // The rewrite cannot create its new file
+            Files.delete(store);
+            Files.delete(directory);
+            client.createGroupIfNotExistsFor("m1");
+            assertEquals(1, cache.getStoreErrorCount());
+            assertEquals("g.1", client.createGroupIfNotExistsFor("m2").get("groupID"));
+            assertEquals(2, cache.getStoreErrorCount());
+            assertEquals(3, cache.getEntryCount());
+        }
+    }
+
+    @Test
+    public void grant_pad_access_resolves_mappers_through_the_cache() throws Exception {
+        mockServer.when(createGroup).respond(ok("{\"groupID\":\"g.1\"}"));
+        mockServer.when(createAuthor).respond(ok("{\"authorID\":\"a.1\"}"));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createGroupPad"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padName does already exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/createSession"))
+                .respond(ok("{\"sessionID\":\"s.1\"}"));
+        client.setMapperCache(new MapperCache(10));
+
+        for (int i = 0; i < 3; i++) {
+            PadAccessGrant grant = client.grantPadAccess("team", "alice", "Alice", "notes", 1700000000L);
+            assertEquals("s.1", grant.getSessionID());
+            assertEquals("a.1", grant.getAuthorID());
+            assertEquals("g.1$notes", grant.getPadID());
+        }
+        mockServer.verify(createGroup, VerificationTimes.exactly(1));
+        mockServer.verify(createAuthor, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void a_large_store_is_compacted_on_load() throws Exception {
+        Path store = folder.getRoot().toPath().resolve("mappers");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            lines.add("G\tm" + (i % 3) + "\tg." + (i % 3));
+        }
+        lines.add("G\tcut");
+        Files.write(store, lines, StandardCharsets.UTF_8);
+
+        try (MapperCache cache = new MapperCache(10, store)) {
+            assertEquals(3, cache.getEntryCount());
+            assertEquals(3, cache.getStoreSize());
+            assertEquals(3, Files.readAllLines(store, StandardCharsets.UTF_8).size());
+            client.setMapperCache(cache);
+            assertEquals("g.2", client.createGroupIfNotExistsFor("m2").get("groupID"));
+        }
+        mockServer.verify(createGroup, VerificationTimes.exactly(0));
+    }
+}
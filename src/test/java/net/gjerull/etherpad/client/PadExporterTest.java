@@ -0,0 +1,181 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+public class PadExporterTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private PooledTransport transport;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9007);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        transport = new PooledTransport();
+        client = new EPLiteClient("http://localhost:9007", API_KEY, transport);
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        mockServer.stop();
+    }
+
+    @Test
+    public void exports_all_pads_and_reports_failures() throws Exception {
+        StringBuilder padIds = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            padIds.append(i == 0 ? "" : ",").append("\"pad").append(i).append('"');
+        }
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/listAllPads"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"padIDs\":[" + padIds + "]}}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("padID", "pad7"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200).withDelay(Delay.milliseconds(20))
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getRevisionsCount"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"revisions\":4}}"));
+        RecordingSink sink = new RecordingSink();
+
+        ExportReport report = new PadExporter(client, 4)
+                .exportAllPads(EnumSet.of(PadExporter.Content.TEXT, PadExporter.Content.REVISIONS_COUNT), sink);
+
+        assertTrue(report.isComplete());
+        assertEquals(30, report.getSubmitted());
+        assertEquals(29, report.getExported());
+        assertEquals(1, report.getFailed());
+        assertEquals(29 * 6, report.getCharacters());
+        assertEquals(29, sink.exported.size());
+        assertEquals("Hello\n", sink.exported.get("pad1").getText());
+        assertEquals(null, sink.exported.get("pad1").getHTML());
+        assertEquals(Long.valueOf(4), sink.exported.get("pad1").getRevisionsCount());
+        assertEquals("padID does not exist", sink.failed.get("pad7").getMessage());
+        assertEquals(30, sink.progress.size());
+        assertEquals(30, sink.progress.get(29).getExported() + sink.progress.get(29).getFailed());
+        assertTrue(sink.maxConcurrentCalls == 1);
+    }
+
+    @Test
+    public void sink_failures_are_reported_as_failed_pads() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+        RecordingSink sink = new RecordingSink();
+        sink.rejectedPadId = "pad2";
+
+        ExportReport report = new PadExporter(client, 2)
+                .exportPads(Arrays.asList("pad1", "pad2", "pad3"), EnumSet.of(PadExporter.Content.TEXT), sink);
+
+        assertEquals(3, report.getSubmitted());
+        assertEquals(2, report.getExported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2 * 6, report.getCharacters());
+        assertEquals("disk full", sink.failed.get("pad2").getMessage());
+        assertEquals(3, sink.progress.size());
+    }
+
+    @Test
+    public void failing_callbacks_do_not_stop_the_run() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("padID", "pad2"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+        RecordingSink sink = new RecordingSink();
+        sink.failingCallbacks = true;
+        final List<Throwable> uncaught = Collections.synchronizedList(new ArrayList<>());
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> uncaught.add(e));
+        ExportReport report;
+        try {
+            report = new PadExporter(client, 2)
+                    .exportPads(Arrays.asList("pad1", "pad2", "pad3"), EnumSet.of(PadExporter.Content.TEXT), sink);
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(3, report.getSubmitted());
+        assertEquals(2, report.getExported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, sink.exported.size());
+        assertEquals("padID does not exist", sink.failed.get("pad2").getMessage());
+        assertEquals(3, sink.progress.size());
+        assertEquals(0, uncaught.size());
+    }
+
+    /**
+     * Records results, and checks that it is never called concurrently.
+     */
+    private static final class RecordingSink implements PadExportSink {
+        private final Map<String, PadExport> exported = new HashMap<>();
+        private final Map<String, Exception> failed = new HashMap<>();
+        private final List<ExportReport> progress = new ArrayList<>();
+        private int concurrentCalls;
+        private int maxConcurrentCalls;
+        private String rejectedPadId;
+        private boolean failingCallbacks;
+
+        public void exported(PadExport export) {
+            this.enter();
+            try {
+                if (export.getPadId().equals(this.rejectedPadId)) {
+                    throw new IllegalStateException("disk full");
+                }
+                this.exported.put(export.getPadId(), export);
+            } finally {
+                this.concurrentCalls--;
+            }
+        }
+
+        public void failed(String padId, Exception cause) {
+            this.enter();
+            this.failed.put(padId, cause);
+            this.leave();
+        }
+
+        public void progress(ExportReport report) {
+            this.enter();
+            this.progress.add(report);
+            this.leave();
+        }
+
+        private void enter() {
+            this.maxConcurrentCalls = Math.max(this.maxConcurrentCalls, ++this.concurrentCalls);
+        }
+
+        private void leave() {
+            this.concurrentCalls--;
+            if (this.failingCallbacks) {
+                throw new IllegalStateException("broken sink");
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class PadMirrorTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private PadMirror mirror;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9008);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        mirror = new PadMirror(new EPLiteClient("http://localhost:9008", API_KEY));
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void syncs_through_changesets() throws Exception {
+        revisions(0);
+        HttpRequest getText = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText");
+        mockServer.when(getText)
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"\\n\"}}"));
+        changeset(1, "Z:1>5+5$Hello");
+        changeset(2, "Z:6>6=5+6$ world");
+
+        assertEquals("\n", mirror.sync("pad"));
+        assertEquals(0, mirror.getRevision("pad"));
+
+        revisions(2);
+        assertEquals("Hello world\n", mirror.sync("pad"));
+        assertEquals(2, mirror.getRevision("pad"));
+        assertEquals(2, mirror.getChangesetsApplied());
+        assertEquals(1, mirror.getTextFetches());
+        mockServer.verify(getText, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void fetches_the_text_when_a_changeset_does_not_apply() throws Exception {
+        revisions(0);
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("rev", "0"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"\\n\"}}"));
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("rev", "1"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hi\\n\"}}"));
+        // Applies to a text of length 2, not 1
+        changeset(1, "Z:2>1=1+1$i");
+
+        mirror.sync("pad");
+        revisions(1);
+
+        assertEquals("Hi\n", mirror.sync("pad"));
+        assertEquals(0, mirror.getChangesetsApplied());
+        assertEquals(2, mirror.getTextFetches());
+    }
+
+    private void revisions(int revisions) {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getRevisionsCount"), Times.once())
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"revisions\":" + revisions + "}}"));
+    }
+
+    private void changeset(int rev, String changeset) {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getRevisionChangeset")
+                .withQueryStringParameter("rev", String.valueOf(rev)))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":\"" + changeset + "\"}"));
+    }
+}
@@ -0,0 +1,310 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.StringBody;
+
+public class PooledTransportTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private PooledTransport transport;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9002);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        transport = new PooledTransport(4, 2, 60000L, 0L);
+        client = new EPLiteClient("http://localhost:9002", API_KEY, transport);
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        mockServer.stop();
+    }
+
+    @Test
+    public void sequential_requests_reuse_one_connection() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+
+        for (int i = 0; i < 5; i++) {
+            Map response = client.getText("pad");
+            assertEquals("Hello\n", response.get("text"));
+        }
+
+        PoolStats stats = transport.getPoolStats();
+        assertEquals(1, stats.getCreated());
+        assertEquals(1, stats.getIdle());
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getPending());
+    }
+
+    @Test
+    public void posts_form_body_over_pooled_connection() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/createGroupIfNotExistsFor")
+                .withBody(new StringBody("apikey=" + API_KEY + "&groupMapper=groupname")))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"groupID\":\"g.s8oes9dhwrvt0zif\"}}"));
+
+        Map response = client.createGroupIfNotExistsFor("groupname");
+        assertEquals("g.s8oes9dhwrvt0zif", response.get("groupID"));
+        response = client.createGroupIfNotExistsFor("groupname");
+        assertEquals("g.s8oes9dhwrvt0zif", response.get("groupID"));
+
+        assertEquals(1, transport.getPoolStats().getCreated());
+    }
+
+    @Test
+    public void idle_connections_are_evicted() throws Exception {
+        transport.close();
+        transport = new PooledTransport(4, 2, 50L, 0L);
+        client = new EPLiteClient("http://localhost:9002", API_KEY, transport);
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/checkToken"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+
+        client.checkToken();
+        assertEquals(1, transport.getPoolStats().getIdle());
+
+        Thread.sleep(100L);
+        transport.evictExpired();
+
+        PoolStats stats = transport.getPoolStats();
+        assertEquals(0, stats.getIdle());
+        assertEquals(1, stats.getEvicted());
+
+        client.checkToken();
+        assertEquals(2, transport.getPoolStats().getCreated());
+    }
+
+    @Test
+    public void idle_connections_are_evicted_without_further_calls() throws Exception {
+        transport.close();
+        transport = new PooledTransport(4, 2, 100L, 0L);
+        client = new EPLiteClient("http://localhost:9002", API_KEY, transport);
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/checkToken"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+
+        client.checkToken();
+        assertEquals(1, transport.getPoolStats().getIdle());
+
+        Thread.sleep(400L);
+        PoolStats stats = transport.getPoolStats();
+        assertEquals(0, stats.getIdle());
+        assertEquals(1, stats.getEvicted());
+    }
+
+    @Test
+    public void http_error_status_releases_connection() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(500).withBody("Internal Server Error"));
+
+        try {
+            client.getText("pad");
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertEquals(0, transport.getPoolStats().getLeased());
+        }
+    }
+
+    @Test
+    public void read_only_gets_are_replayed_when_a_reused_connection_was_closed() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            AtomicInteger requests = new AtomicInteger();
+            startClosingServer(server, requests);
+            EPLiteClient stubClient = new EPLiteClient("http://localhost:" + server.getLocalPort(), API_KEY, transport);
+
+            assertEquals("a.1", stubClient.getAuthorName("a.1"));
+            // The server closes the connection on the second request without answering
+            assertEquals("a.1", stubClient.getAuthorName("a.1"));
+            assertEquals(3, requests.get());
+        }
+    }
+
+    @Test
+    public void writing_gets_are_not_replayed() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            AtomicInteger requests = new AtomicInteger();
+            startClosingServer(server, requests);
+            EPLiteClient stubClient = new EPLiteClient("http://localhost:" + server.getLocalPort(), API_KEY, transport);
+
+            stubClient.getAuthorName("a.1");
+            try {
+                stubClient.createAuthor("Alice");
+                fail("Expected an EPLiteException");
+            } catch (EPLiteException e) {
+                // expected
+            }
+            assertEquals(2, requests.get());
+        }
+    }
+
+    @Test
+    public void timeouts_are_not_replayed() throws Exception {
+        transport.setReadTimeout(300);
+        try (ServerSocket server = new ServerSocket(0)) {
+            AtomicInteger requests = new AtomicInteger();
+            startHangingServer(server, requests);
+            EPLiteClient stubClient = new EPLiteClient("http://localhost:" + server.getLocalPort(), API_KEY, transport);
+
+            stubClient.getAuthorName("a.1");
+            try {
+                stubClient.getAuthorName("a.1");
+                fail("Expected an EPLiteException");
+            } catch (EPLiteException e) {
+                // expected
+            }
+            assertEquals(2, requests.get());
+        }
+    }
+
+    @Test
+    public void connections_with_unsolicited_data_are_not_reused() throws Exception {
+        transport.setReadTimeout(1000);
+        try (ServerSocket server = new ServerSocket(0)) {
+            AtomicInteger connections = new AtomicInteger();
+            startAnsweringOnceServer(server, connections, "HTTP/1.1 408 Request Timeout\r\n\r\n");
+            EPLiteClient stubClient = new EPLiteClient("http://localhost:" + server.getLocalPort(), API_KEY, transport);
+
+            assertEquals("a.1", stubClient.createAuthor("Alice").get("authorID"));
+            Thread.sleep(100L);
+            assertEquals("a.1", stubClient.createAuthor("Bob").get("authorID"));
+            assertEquals(2, connections.get());
+            assertEquals(1, transport.getPoolStats().getEvicted());
+        }
+    }
+
+    @Test
+    public void connections_idle_for_a_while_are_probed_before_reuse() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            AtomicInteger connections = new AtomicInteger();
+            startAnsweringOnceServer(server, connections, null);
+            EPLiteClient stubClient = new EPLiteClient("http://localhost:" + server.getLocalPort(), API_KEY, transport);
+
+            assertEquals("a.1", stubClient.createAuthor("Alice").get("authorID"));
+            Thread.sleep(PooledConnection.PROBE_IDLE_MILLIS + 200L);
+            // Not replayed, so the closed connection must not be used
+            assertEquals("a.1", stubClient.createAuthor("Bob").get("authorID"));
+            assertEquals(2, connections.get());
+        }
+    }
+
+    /**
+     * Answers one request per connection, then writes the trailer and keeps the connection open, or closes it
+     * without a trailer.
+     */
+    private static void startAnsweringOnceServer(final ServerSocket server, final AtomicInteger connections,
+            final String trailer) {
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    connections.incrementAndGet();
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                    OutputStream out = socket.getOutputStream();
+                    if (!readRequest(in)) {
+                        continue;
+                    }
+                    byte[] body = "{\"code\":0,\"message\":\"ok\",\"data\":{\"authorID\":\"a.1\"}}"
+                            .getBytes(StandardCharsets.UTF_8);
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                            + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(body);
+                    out.flush();
+                    if (trailer != null) {
+                        out.write(trailer.getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                        // Left unanswered until the client closes the connection
+                        while (readRequest(in)) {
+                            continue;
+                        }
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Answers the first request of each connection and closes the connection on the second one.
+     */
+    private static void startClosingServer(final ServerSocket server, final AtomicInteger requests) {
+        startServer(server, requests, false);
+    }
+
+    /**
+     * Answers the first request of each connection and never answers the second one.
+     */
+    private static void startHangingServer(final ServerSocket server, final AtomicInteger requests) {
+        startServer(server, requests, true);
+    }
+
+    private static void startServer(final ServerSocket server, final AtomicInteger requests, final boolean hang) {
+        Thread thread = new Thread(() -> {
+            while (!server.isClosed()) {
+                try (Socket socket = server.accept()) {
+                    BufferedReader in = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                    OutputStream out = socket.getOutputStream();
+                    for (int i = 0; readRequest(in); i++) {
+                        requests.incrementAndGet();
+                        if (i == 0) {
+                            byte[] body = "{\"code\":0,\"message\":\"ok\",\"data\":\"a.1\"}"
+                                    .getBytes(StandardCharsets.UTF_8);
+                            out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: "
+                                    + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                            out.write(body);
+                            out.flush();
+                        } else if (hang) {
+                            Thread.sleep(1000L);
+                        } else {
+                            break;
+                        }
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static boolean readRequest(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            return false;
+        }
+        while (line != null && !line.isEmpty()) {
+            line = in.readLine();
+        }
+        return true;
+    }
+}
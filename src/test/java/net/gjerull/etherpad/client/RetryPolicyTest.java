@@ -0,0 +1,138 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class RetryPolicyTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private RetryPolicy retries;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9018);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9018", API_KEY);
+        retries = new RetryPolicy(3, 10L, 50L);
+        client.setRetryPolicy(retries);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void reads_are_retried_after_server_errors() throws Exception {
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText, Times.once()).respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(getText, Times.once()).respond(response(2, "internal error", "null"));
+        mockServer.when(getText).respond(response(0, "ok", "{\"text\":\"hello\"}"));
+
+        assertEquals("hello", client.getText("pad").get("text"));
+        mockServer.verify(getText, VerificationTimes.exactly(3));
+        assertEquals(2, retries.getRetryCount());
+    }
+
+    @Test
+    public void invalid_parameters_are_not_retried() throws Exception {
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText).respond(response(1, "padID does not exist", "null"));
+
+        try {
+            client.getText("missing");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertEquals(1, e.getCode());
+        }
+        mockServer.verify(getText, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void writes_are_retried_only_when_named() throws Exception {
+        HttpRequest appendText = HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/appendText");
+        mockServer.when(appendText).respond(HttpResponse.response().withStatusCode(500));
+
+        try {
+            client.appendText("pad", "once");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            // expected
+        }
+        mockServer.verify(appendText, VerificationTimes.exactly(1));
+
+        mockServer.clear(appendText);
+        mockServer.when(appendText, Times.once()).respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(appendText).respond(response(0, "ok", "null"));
+        retries.setRetriedWrites("appendText");
+        client.appendText("pad", "twice");
+        mockServer.verify(appendText, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void refused_writes_are_retried() throws Exception {
+        // Nothing listens on 9019, so nothing can have been written
+        EPLiteClient refused = new EPLiteClient("http://localhost:9019", API_KEY);
+        refused.setRetryPolicy(retries);
+
+        try {
+            refused.appendText("pad", "text");
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            // expected
+        }
+        assertEquals(2, retries.getRetryCount());
+    }
+
+    @Test
+    public void the_budget_stops_retries_during_an_outage() throws Exception {
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText).respond(HttpResponse.response().withStatusCode(503));
+        retries = new RetryPolicy(5, 1L, 1L);
+        retries.setBudget(4, 0.1);
+        client.setRetryPolicy(retries);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                client.getText("pad");
+                fail("Expected an EPLiteException");
+            } catch (EPLiteException e) {
+                // expected
+            }
+        }
+        // One retry before half of the tokens are gone, then one attempt per call
+        mockServer.verify(getText, VerificationTimes.exactly(4));
+        assertEquals(1, retries.getRetryCount());
+        assertEquals(3, retries.getThrottledCount());
+    }
+
+    @Test
+    public void asynchronous_reads_are_retried() throws Exception {
+        HttpRequest getText = HttpRequest.request().withPath("/api/1.2.13/getText");
+        mockServer.when(getText, Times.once()).respond(HttpResponse.response().withStatusCode(500));
+        mockServer.when(getText).respond(response(0, "ok", "{\"text\":\"hello\"}"));
+        EPLiteAsyncClient async = new EPLiteAsyncClient("http://localhost:9018", API_KEY);
+        async.setRetryPolicy(retries);
+
+        assertEquals("hello", async.getText("pad").get().get("text"));
+        mockServer.verify(getText, VerificationTimes.exactly(2));
+    }
+
+    private static HttpResponse response(int code, String message, String data) {
+        return HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":" + code + ",\"message\":\"" + message + "\",\"data\":" + data + "}");
+    }
+}
@@ -0,0 +1,124 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class RevisionCacheTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9005);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9005", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void repeated_revision_is_served_from_the_cache() throws Exception {
+        HttpRequest getText = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText")
+                .withQueryStringParameter("rev", "3");
+        mockServer.when(getText)
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+        RevisionCache cache = new RevisionCache(1024 * 1024);
+        client.setRevisionCache(cache);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("Hello\n", client.getText("pad", 3).get("text"));
+        }
+
+        mockServer.verify(getText, VerificationTimes.exactly(1));
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void cached_maps_are_unmodifiable() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getHTML"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"html\":\"<p>Hello</p>\"}}"));
+        client.setRevisionCache(new RevisionCache(1024 * 1024));
+
+        Map html = client.getHTML("pad", 1);
+        try {
+            html.put("html", "changed");
+            fail("Expected '" + UnsupportedOperationException.class.getName() + "' to be thrown");
+        } catch (UnsupportedOperationException e) {
+            assertEquals("<p>Hello</p>", client.getHTML("pad", 1).get("html"));
+        }
+    }
+
+    @Test
+    public void deleting_a_pad_invalidates_its_revisions() throws Exception {
+        HttpRequest changeset = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getRevisionChangeset");
+        mockServer.when(changeset)
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":\"Z:1>5*0+5$Hello\"}"));
+        mockServer.when(HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/deletePad"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+        RevisionCache cache = new RevisionCache(1024 * 1024);
+        client.setRevisionCache(cache);
+
+        client.getRevisionChangeset("pad", 1);
+        client.deletePad("pad");
+        assertEquals(0, cache.getEntryCount());
+        assertEquals("Z:1>5*0+5$Hello", client.getRevisionChangeset("pad", 1));
+
+        mockServer.verify(changeset, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void evicts_least_recently_used_by_size() {
+        Map<String, Object> text = new HashMap<>();
+        text.put("text", new String(new char[400]));
+        RevisionCache cache = new RevisionCache(3500);
+
+        cache.put("getText", "pad", 1, 1, text);
+        cache.put("getText", "pad", 2, 2, text);
+        cache.put("getText", "pad", 3, 3, text);
+        assertEquals(0, cache.getEvictionCount());
+        // Revision 1 becomes the most recently used
+        cache.get("getText", "pad", 1, 1);
+        cache.put("getText", "pad", 4, 4, text);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("getText", "pad", 2, 2));
+        assertTrue(cache.get("getText", "pad", 1, 1) != null);
+        assertTrue(cache.getSizeBytes() <= cache.getMaxBytes());
+    }
+
+    @Test
+    public void values_larger_than_the_cache_are_not_stored() {
+        RevisionCache cache = new RevisionCache(100);
+
+        cache.put("getRevisionChangeset", "pad", 1, 1, new String(new char[100]));
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSizeBytes());
+    }
+}
@@ -0,0 +1,145 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.StringBody;
+import org.mockserver.verify.VerificationTimes;
+
+public class SessionManagerTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private SessionManager sessions;
+    private final HttpRequest createSession = HttpRequest.request().withPath("/api/1.2.13/createSession");
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9022);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9022", API_KEY);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/deleteSession"))
+                .respond(ok("null"));
+    }
+
+    @After
+    public void tearDown() {
+        if (sessions != null) {
+            sessions.close();
+        }
+        mockServer.stop();
+    }
+
+    @Test
+    public void hands_out_the_cached_session() throws Exception {
+        sessions = new SessionManager(client);
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.1\"}"));
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.2\"}"));
+
+        SessionInfo first = sessions.getSession("g.1", "a.1");
+        SessionInfo second = sessions.getSession("g.1", "a.1");
+        assertEquals("s.1", first.getSessionID());
+        assertEquals("s.1", second.getSessionID());
+        assertEquals("g.1", second.getGroupID());
+        assertEquals("a.1", second.getAuthorID());
+        assertTrue(first.isValidAt(System.currentTimeMillis() / 1000L + 3500L));
+        assertEquals("s.2", sessions.getSession("g.1", "a.2").getSessionID());
+
+        assertEquals(1, sessions.getHitCount());
+        assertEquals(2, sessions.getCreatedCount());
+        mockServer.verify(createSession, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void renews_in_the_background_ahead_of_the_end() throws Exception {
+        sessions = new SessionManager(client, 6, 4, TimeUnit.SECONDS);
+        sessions.setMinRemaining(1, TimeUnit.SECONDS);
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.1\"}"));
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.2\"}"));
+
+        assertEquals("s.1", sessions.getSession("g.1", "a.1").getSessionID());
+        Thread.sleep(2100);
+        // Still handed out while the next session is created
+        assertEquals("s.1", sessions.getSession("g.1", "a.1").getSessionID());
+        Thread.sleep(300);
+        assertEquals("s.2", sessions.getSession("g.1", "a.1").getSessionID());
+        assertEquals(1, sessions.getRefreshCount());
+
+        // The replaced session is deleted once it ends
+        Thread.sleep(4000);
+        assertEquals(1, sessions.getDeletedCount());
+        mockServer.verify(deleteSession("s.1"), VerificationTimes.exactly(1));
+        mockServer.verify(deleteSession("s.2"), VerificationTimes.exactly(0));
+    }
+
+    @Test
+    public void creates_a_new_session_when_too_little_is_left() throws Exception {
+        sessions = new SessionManager(client, 3, 0, TimeUnit.SECONDS);
+        sessions.setMinRemaining(2, TimeUnit.SECONDS);
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.1\"}"));
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.2\"}"));
+
+        assertEquals("s.1", sessions.getSession("g.1", "a.1").getSessionID());
+        Thread.sleep(1100);
+        assertEquals("s.2", sessions.getSession("g.1", "a.1").getSessionID());
+        assertEquals(0, sessions.getRefreshCount());
+        assertEquals(0, sessions.getHitCount());
+    }
+
+    @Test
+    public void concurrent_callers_share_one_new_session() throws Exception {
+        sessions = new SessionManager(client);
+        mockServer.when(createSession).respond(ok("{\"sessionID\":\"s.1\"}")
+                .withDelay(new Delay(TimeUnit.MILLISECONDS, 200)));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<SessionInfo>> calls = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                calls.add(executor.submit(() -> sessions.getSession("g.1", "a.1")));
+            }
+            for (Future<SessionInfo> call : calls) {
+                assertEquals("s.1", call.get(5, TimeUnit.SECONDS).getSessionID());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        mockServer.verify(createSession, VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void invalidate_deletes_the_session() throws Exception {
+        sessions = new SessionManager(client);
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.1\"}"));
+        mockServer.when(createSession, Times.once()).respond(ok("{\"sessionID\":\"s.2\"}"));
+
+        sessions.getSession("g.1", "a.1");
+        sessions.invalidate("g.1", "a.1");
+        assertEquals(0, sessions.size());
+        Thread.sleep(300);
+        mockServer.verify(deleteSession("s.1"), VerificationTimes.exactly(1));
+        assertEquals("s.2", sessions.getSession("g.1", "a.1").getSessionID());
+    }
+
+    private static HttpRequest deleteSession(String sessionID) {
+        return HttpRequest.request().withPath("/api/1.2.13/deleteSession")
+                .withBody(new StringBody("apikey=" + API_KEY + "&sessionID=" + sessionID));
+    }
+}
@@ -0,0 +1,190 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class ShardedEPLiteClientTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer first;
+    private ClientAndServer second;
+    private ShardedEPLiteClient sharded;
+
+    @Before
+    public void setUp() throws Exception {
+        first = startClientAndServer(9012);
+        second = startClientAndServer(9013);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        Map<String, EPLiteClient> shards = new LinkedHashMap<>();
+        shards.put("first", new EPLiteClient("http://localhost:9012", API_KEY));
+        shards.put("second", new EPLiteClient("http://localhost:9013", API_KEY));
+        sharded = new ShardedEPLiteClient(shards);
+    }
+
+    @After
+    public void tearDown() {
+        sharded.close();
+        first.stop();
+        second.stop();
+    }
+
+    @Test
+    public void group_pads_belong_to_the_shard_of_their_group() throws Exception {
+        // No shard knows the groups, so they belong to the shard their id hashes to
+        unknownGroups(first);
+        unknownGroups(second);
+        for (int i = 0; i < 20; i++) {
+            String groupID = "g.group" + i;
+            assertEquals(sharded.shardOf(groupID), sharded.shardOf(groupID + "$pad" + i));
+            assertTrue(sharded.forPad(groupID + "$pad") == sharded.forGroup(groupID));
+        }
+        assertEquals("pad$name", ShardedEPLiteClient.routingKey("pad$name"));
+    }
+
+    @Test
+    public void adding_a_shard_moves_only_keys_to_it() throws Exception {
+        HashRing three = new HashRing(Arrays.asList("a", "b", "c"), ShardedEPLiteClient.DEFAULT_REPLICAS);
+        HashRing four = new HashRing(Arrays.asList("a", "b", "c", "d"), ShardedEPLiteClient.DEFAULT_REPLICAS);
+        int keys = 20000;
+        int moved = 0;
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            String key = "pad-" + i;
+            String before = three.owner(key);
+            String after = four.owner(key);
+            counts.merge(after, 1, Integer::sum);
+            if (!before.equals(after)) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        // About a quarter of the keys move, and each shard has about a quarter of them
+        assertTrue("moved " + moved, moved > keys * 0.18 && moved < keys * 0.32);
+        for (int count : counts.values()) {
+            assertTrue("owns " + count, count > keys * 0.18 && count < keys * 0.32);
+        }
+    }
+
+    @Test
+    public void list_all_pads_merges_all_shards() throws Exception {
+        respond(first, "listAllPads", "{\"padIDs\":[\"a\",\"b\"]}");
+        respond(second, "listAllPads", "{\"padIDs\":[\"c\"]}");
+
+        List padIDs = (List) sharded.listAllPads().get("padIDs");
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), new HashSet<Object>(padIDs));
+        assertEquals(3, sharded.listAllPadIDs().size());
+    }
+
+    @Test(expected = EPLiteException.class)
+    public void fan_out_fails_when_a_shard_fails() throws Exception {
+        respond(first, "listAllGroups", "{\"groupIDs\":[\"g.a\"]}");
+        second.when(HttpRequest.request().withPath("/api/1.2.13/listAllGroups"))
+                .respond(HttpResponse.response().withStatusCode(500));
+
+        sharded.listAllGroups();
+    }
+
+    @Test
+    public void fan_out_keeps_the_type_of_the_failure() throws Exception {
+        final EPLiteClient slow = sharded.getShards().get("second");
+        try {
+            sharded.fanOut(client -> {
+                if (client == slow) {
+                    throw new EPLiteTimeoutException("The deadline of the call expired");
+                }
+                return Boolean.TRUE;
+            });
+            fail("Expected an EPLiteTimeoutException");
+        } catch (EPLiteTimeoutException e) {
+            assertEquals("Failed on shard second", e.getSuppressed()[0].getMessage());
+        }
+    }
+
+    @Test
+    public void created_groups_are_routed_to_the_shard_that_created_them() throws Exception {
+        HttpRequest createGroup = HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/createGroup");
+        first.when(createGroup).respond(ok("{\"groupID\":\"g.first\"}"));
+        second.when(createGroup).respond(ok("{\"groupID\":\"g.second\"}"));
+
+        assertEquals("g.first", sharded.createGroup().get("groupID"));
+        assertEquals("g.second", sharded.createGroup().get("groupID"));
+        assertEquals("first", sharded.shardOf("g.first$notes"));
+        assertEquals("second", sharded.shardOf("g.second"));
+        first.verify(createGroup, VerificationTimes.exactly(1));
+        second.verify(createGroup, VerificationTimes.exactly(1));
+        first.verify(listPads(), VerificationTimes.exactly(0));
+        second.verify(listPads(), VerificationTimes.exactly(0));
+    }
+
+    @Test
+    public void mapped_groups_are_created_on_the_shard_of_their_mapper() throws Exception {
+        respond(first, "createGroupIfNotExistsFor", "{\"groupID\":\"g.first\"}");
+        respond(second, "createGroupIfNotExistsFor", "{\"groupID\":\"g.second\"}");
+
+        for (int i = 0; i < 10; i++) {
+            String mapper = "team" + i;
+            String shard = sharded.shardOf(mapper);
+            assertEquals("g." + shard, sharded.createGroupIfNotExistsFor(mapper).get("groupID"));
+            assertEquals(shard, sharded.shardOf("g." + shard));
+        }
+    }
+
+    @Test
+    public void unknown_groups_are_looked_up_once() throws Exception {
+        unknownGroups(first);
+        respond(second, "listPads", "{\"padIDs\":[]}");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(sharded.forGroup("g.elsewhere") == sharded.getShards().get("second"));
+        }
+        first.verify(listPads(), VerificationTimes.exactly(1));
+        second.verify(listPads(), VerificationTimes.exactly(1));
+    }
+
+    @Test
+    public void deleted_groups_are_dropped_from_the_directory() throws Exception {
+        HttpRequest deleteGroup = HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/deleteGroup");
+        first.when(HttpRequest.request().withPath("/api/1.2.13/createGroup")).respond(ok("{\"groupID\":\"g.gone\"}"));
+        first.when(deleteGroup).respond(ok("null"));
+        unknownGroups(first);
+        unknownGroups(second);
+
+        sharded.createGroup();
+        sharded.deleteGroup("g.gone");
+        first.verify(deleteGroup, VerificationTimes.exactly(1));
+        sharded.shardOf("g.gone");
+        first.verify(listPads(), VerificationTimes.exactly(1));
+    }
+
+    private static HttpRequest listPads() {
+        return HttpRequest.request().withPath("/api/1.2.13/listPads");
+    }
+
+    private static void unknownGroups(ClientAndServer server) {
+        server.when(listPads()).respond(HttpResponse.response().withStatusCode(200)
+                .withBody("{\"code\":1,\"message\":\"groupID does not exist\",\"data\":null}"));
+    }
+
+    private static void respond(ClientAndServer server, String apiMethod, String data) {
+        server.when(HttpRequest.request().withPath("/api/1.2.13/" + apiMethod)).respond(ok(data));
+    }
+}
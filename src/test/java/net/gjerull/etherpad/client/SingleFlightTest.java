@@ -0,0 +1,271 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+public class SingleFlightTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+    private static final int CALLERS = 8;
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9006);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9006", API_KEY);
+        client.setCoalescing(true);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        mockServer.stop();
+    }
+
+    @Test
+    public void identical_reads_share_one_request() throws Exception {
+        HttpRequest getText = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText");
+        mockServer.when(getText)
+                .respond(HttpResponse.response().withStatusCode(200).withDelay(Delay.milliseconds(500))
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+
+        List<Map> results = this.concurrently(new Callable<Map>() {
+            public Map call() {
+                return client.getText("pad");
+            }
+        });
+
+        long requests = CALLERS - client.getCoalescedCount();
+        assertTrue("Expected coalesced calls, got " + requests + " requests", requests < CALLERS);
+        mockServer.verify(getText, VerificationTimes.exactly((int) requests));
+        for (Map result : results) {
+            assertEquals("Hello\n", result.get("text"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shared_results_cannot_be_changed() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+
+        Map result = client.getText("pad");
+        try {
+            result.put("text", "changed");
+            fail("Expected an UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals("Hello\n", result.get("text"));
+    }
+
+    @Test
+    public void errors_are_shared() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200).withDelay(Delay.milliseconds(500))
+                        .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+
+        List<String> messages = this.concurrently(new Callable<String>() {
+            public String call() {
+                try {
+                    client.getText("missing");
+                    return null;
+                } catch (EPLiteException e) {
+                    return e.getMessage();
+                }
+            }
+        });
+
+        for (String message : messages) {
+            assertEquals("padID does not exist", message);
+        }
+    }
+
+    @Test
+    public void calls_with_side_effects_are_not_shared() throws Exception {
+        HttpRequest createAuthor = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/createAuthor");
+        mockServer.when(createAuthor)
+                .respond(HttpResponse.response().withStatusCode(200).withDelay(Delay.milliseconds(200))
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"authorID\":\"a.s8oes9dhwrvt0zif\"}}"));
+
+        this.concurrently(new Callable<Map>() {
+            public Map call() {
+                return client.createAuthor();
+            }
+        });
+
+        assertEquals(0, client.getCoalescedCount());
+        mockServer.verify(createAuthor, VerificationTimes.exactly(CALLERS));
+    }
+
+    @Test
+    public void completed_calls_are_not_reused() {
+        SingleFlight<String, Object> flights = new SingleFlight<>();
+        Object first = new Object();
+        Object second = new Object();
+
+        assertSame(first, flights.execute("key", () -> first));
+        assertSame(second, flights.execute("key", () -> second));
+        assertEquals(2, flights.getCallCount());
+        assertEquals(0, flights.getCoalescedCount());
+    }
+
+    @Test
+    public void waiting_callers_keep_their_deadline() throws Exception {
+        final SingleFlight<String, Object> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object result = new Object();
+        Future<Object> leader = executor.submit(() -> flights.execute("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }));
+        started.await();
+
+        long start = System.nanoTime();
+        try (Deadline deadline = Deadline.after(100, TimeUnit.MILLISECONDS)) {
+            flights.execute("key", () -> result);
+            fail("Expected an EPLiteTimeoutException");
+        } catch (EPLiteTimeoutException e) {
+            // expected
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+        release.countDown();
+        assertSame(result, leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flights.getCallCount());
+    }
+
+    @Test
+    public void a_caller_running_out_of_time_does_not_fail_the_waiters() throws Exception {
+        HttpRequest getText = HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText");
+        mockServer.when(getText)
+                .respond(HttpResponse.response().withStatusCode(200).withDelay(Delay.milliseconds(500))
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":{\"text\":\"Hello\\n\"}}"));
+        Future<Object> hurried = executor.submit(() -> {
+            try (Deadline deadline = Deadline.after(200, TimeUnit.MILLISECONDS)) {
+                return client.getText("pad");
+            } catch (EPLiteTimeoutException e) {
+                return e;
+            }
+        });
+        Thread.sleep(50L);
+
+        try (Deadline deadline = Deadline.after(5, TimeUnit.SECONDS)) {
+            assertEquals("Hello\n", client.getText("pad").get("text"));
+        }
+        assertTrue(hurried.get(5, TimeUnit.SECONDS) instanceof EPLiteTimeoutException);
+        assertEquals(1, client.getCoalescedCount());
+        mockServer.verify(getText, VerificationTimes.exactly(2));
+    }
+
+    @Test
+    public void interactive_callers_do_not_wait_for_batch_calls() throws Exception {
+        final SingleFlight<String, Object> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object batchResult = new Object();
+        final Object interactiveResult = new Object();
+        Future<Object> batch = executor.submit(() -> {
+            try (Priority.Scope scope = Priority.BATCH.apply()) {
+                return flights.execute("key", () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return batchResult;
+                });
+            }
+        });
+        started.await();
+
+        assertSame(interactiveResult, flights.execute("key", () -> interactiveResult));
+        release.countDown();
+        assertSame(batchResult, batch.get(5, TimeUnit.SECONDS));
+        assertEquals(2, flights.getCallCount());
+        assertEquals(0, flights.getCoalescedCount());
+    }
+
+    @Test
+    public void batch_callers_share_interactive_calls() throws Exception {
+        final SingleFlight<String, Object> flights = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object result = new Object();
+        Future<Object> interactive = executor.submit(() -> flights.execute("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }));
+        started.await();
+
+        Future<Object> batch = executor.submit(() -> {
+            try (Priority.Scope scope = Priority.BATCH.apply()) {
+                return flights.execute("key", () -> new Object());
+            }
+        });
+        Thread.sleep(100L);
+        release.countDown();
+        assertSame(result, interactive.get(5, TimeUnit.SECONDS));
+        assertSame(result, batch.get(5, TimeUnit.SECONDS));
+        assertEquals(1, flights.getCallCount());
+    }
+
+    private <T> List<T> concurrently(final Callable<T> call) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    start.await();
+                    return call.call();
+                }
+            }));
+        }
+        start.countDown();
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            results.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return results;
+    }
+}
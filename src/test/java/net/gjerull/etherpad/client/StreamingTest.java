@@ -0,0 +1,183 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+public class StreamingTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9011);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9011", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void field_streamer_decodes_escapes_and_skips_other_values() throws Exception {
+        String response = "{\"code\": 0, \"message\": \"ok\", \"data\": {\"pool\": {\"numToAttrib\": [[\"bold\", true], "
+                + "null, 1.5e3]}, \"text\": \"a\\\"b\\\\c\\/d\\n\\u00e6\\ud83d\\ude00\", \"rev\": 3}}";
+        StringWriter out = new StringWriter();
+
+        FieldStreamer streamer = new FieldStreamer(new StringReader(response));
+        streamer.stream("text", out);
+
+        assertEquals("a\"b\\c/d\næ😀", out.toString());
+        assertEquals(out.toString().length(), streamer.getWritten());
+        assertEquals(0L, streamer.getCode());
+    }
+
+    @Test
+    public void field_streamer_stops_at_an_error() throws Exception {
+        String response = "{\"code\":1,\"message\":\"padID does not exist\",\"data\":{\"text\":\"not written\"}}";
+        StringWriter out = new StringWriter();
+
+        FieldStreamer streamer = new FieldStreamer(new StringReader(response));
+        streamer.stream("text", out);
+
+        assertEquals("", out.toString());
+        assertEquals("padID does not exist", streamer.getMessage());
+        assertFalse(streamer.isFound());
+    }
+
+    @Test
+    public void get_text_to_a_writer() throws Exception {
+        String text = largeText();
+        respond("getText", "{\"text\":\"" + json(text) + "\"}");
+        StringWriter out = new StringWriter();
+
+        long written = client.getText("pad", out);
+
+        assertEquals(text, out.toString());
+        assertEquals(text.length(), written);
+    }
+
+    @Test
+    public void get_html_to_a_stream() throws Exception {
+        respond("getHTML", "{\"html\":\"<p>\\u00e6\\u00f8\\u00e5</p>\"}");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        client.getHTML("pad", out);
+
+        assertEquals("<p>æøå</p>", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void get_text_to_a_writer_with_an_error() throws Exception {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/getText"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":1,\"message\":\"padID does not exist\",\"data\":null}"));
+        try {
+            client.getText("pad", new StringWriter());
+            fail("Expected an EPLiteException");
+        } catch (EPLiteException e) {
+            assertEquals("padID does not exist", e.getMessage());
+            assertEquals(1, e.getCode());
+        }
+    }
+
+    @Test
+    public void set_text_from_a_reader() throws Exception {
+        assertStreamedText(client);
+    }
+
+    @Test
+    public void set_text_from_a_reader_on_a_pooled_transport() throws Exception {
+        PooledTransport transport = new PooledTransport();
+        try {
+            assertStreamedText(new EPLiteClient("http://localhost:9011", API_KEY, transport));
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void create_pad_from_a_stream() throws Exception {
+        respond("createPad", "null");
+
+        client.createPad("pad", new ByteArrayInputStream("æ & =".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("apikey=" + API_KEY + "&padID=pad&text=%C3%A6+%26+%3D", recordedBody("createPad"));
+    }
+
+    private void assertStreamedText(EPLiteClient client) throws Exception {
+        respond("setText", "null");
+        String text = largeText();
+
+        client.setText("pad", new StringReader(text));
+
+        String body = recordedBody("setText");
+        assertEquals("apikey=" + API_KEY + "&padID=pad&text=", body.substring(0, body.indexOf("&text=") + 6));
+        assertEquals(text, URLDecoder.decode(body.substring(body.indexOf("&text=") + 6), "UTF-8"));
+    }
+
+    /**
+     * Returns a text over several buffers, with a surrogate pair across the first buffer boundary.
+     */
+    private static String largeText() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 8191) {
+            text.append('a');
+        }
+        text.append("😀");
+        while (text.length() < 40000) {
+            text.append("Hello wörld & friends = €\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Escapes a text as a JSON string, with unicode escapes outside ASCII.
+     */
+    private static String json(String text) {
+        StringBuilder json = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '\n') {
+                json.append("\\n");
+            } else if (c >= 0x80) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.toString();
+    }
+
+    private String recordedBody(String apiMethod) {
+        HttpRequest[] requests = mockServer.retrieveRecordedRequests(
+                HttpRequest.request().withMethod("POST").withPath("/api/1.2.13/" + apiMethod));
+        assertEquals(1, requests.length);
+        return requests[0].getBodyAsString();
+    }
+
+    private void respond(String apiMethod, String data) {
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/" + apiMethod))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}"));
+    }
+}
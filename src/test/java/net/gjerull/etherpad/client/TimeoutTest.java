@@ -0,0 +1,159 @@
+package net.gjerull.etherpad.client;
+
+import static net.gjerull.etherpad.client.EtherpadResponses.ok;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.verify.VerificationTimes;
+
+public class TimeoutTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+    private static final String URL = "http://localhost:9017";
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9017);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/getText"))
+                .respond(ok("{\"text\":\"slow\"}").withDelay(new Delay(TimeUnit.SECONDS, 2)));
+        mockServer.when(HttpRequest.request().withPath("/api/1.2.13/listAllPads"))
+                .respond(ok("{\"padIDs\":[]}"));
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void read_timeout_of_the_default_transport() throws Exception {
+        URLConnectionTransport transport = new URLConnectionTransport();
+        transport.setReadTimeout(200);
+        EPLiteClient client = new EPLiteClient(URL, API_KEY, transport);
+
+        assertTimesOut(client, 1000);
+    }
+
+    @Test
+    public void read_timeout_of_the_pooled_transport() throws Exception {
+        PooledTransport transport = new PooledTransport();
+        transport.setReadTimeout(200);
+        EPLiteClient client = new EPLiteClient(URL, API_KEY, transport);
+        try {
+            assertTimesOut(client, 1000);
+            // The connection of the timed out call is not reused
+            assertEquals(0, transport.getPoolStats().getIdle());
+            client.listAllPads();
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void deadline_bounds_the_call() throws Exception {
+        EPLiteClient client = new EPLiteClient(URL, API_KEY);
+
+        try (Deadline deadline = Deadline.after(300, TimeUnit.MILLISECONDS)) {
+            assertTimesOut(client, 1000);
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void deadline_bounds_the_wait_for_a_pooled_connection() throws Exception {
+        final PooledTransport transport = new PooledTransport(1, 1, 4000L, 0L);
+        final EPLiteClient client = new EPLiteClient(URL, API_KEY, transport);
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            started.countDown();
+            client.getText("pad");
+        });
+        holder.start();
+        try {
+            started.await();
+            Thread.sleep(200);
+            try (Deadline deadline = Deadline.after(200, TimeUnit.MILLISECONDS)) {
+                long start = System.nanoTime();
+                try {
+                    client.listAllPads();
+                    fail("Expected a timeout");
+                } catch (EPLiteTimeoutException e) {
+                    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+                }
+            }
+        } finally {
+            holder.join();
+            transport.close();
+        }
+    }
+
+    @Test
+    public void expired_deadline_sends_nothing() throws Exception {
+        EPLiteClient client = new EPLiteClient(URL, API_KEY);
+
+        try (Deadline deadline = Deadline.after(0, TimeUnit.MILLISECONDS)) {
+            client.listAllPads();
+            fail("Expected a timeout");
+        } catch (EPLiteTimeoutException e) {
+            // expected
+        }
+        mockServer.verify(HttpRequest.request().withPath("/api/1.2.13/listAllPads"), VerificationTimes.exactly(0));
+    }
+
+    @Test
+    public void nested_deadline_cannot_extend_the_outer_one() throws Exception {
+        try (Deadline outer = Deadline.after(100, TimeUnit.MILLISECONDS)) {
+            try (Deadline inner = Deadline.after(10, TimeUnit.SECONDS)) {
+                assertTrue(inner.remaining(TimeUnit.MILLISECONDS) <= 100);
+                assertTrue(Deadline.current() == inner);
+            }
+            assertTrue(Deadline.current() == outer);
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void deadline_bounds_asynchronous_calls() throws Exception {
+        EPLiteConnection connection = new EPLiteConnection(URL, API_KEY, "1.2.13", "UTF-8");
+        CompletableFuture<Object> text;
+        try (Deadline deadline = Deadline.after(200, TimeUnit.MILLISECONDS)) {
+            text = connection.getObjectAsync("getText", new HashMap<String, Object>());
+        }
+        try {
+            text.join();
+            fail("Expected a timeout");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof EPLiteTimeoutException);
+        }
+    }
+
+    private static void assertTimesOut(EPLiteClient client, long withinMillis) {
+        long start = System.nanoTime();
+        try {
+            client.getText("pad");
+            fail("Expected a timeout");
+        } catch (EPLiteTimeoutException e) {
+            assertEquals(EPLiteException.NO_CODE, e.getCode());
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("took " + elapsed + "ms", elapsed < withinMillis);
+    }
+}
@@ -0,0 +1,78 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+public class TlsConfigTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+
+    @Before
+    public void setUp() throws Exception {
+        // MockServer answers https on the same port, with a certificate signed by its own CA
+        mockServer = startClientAndServer(9004);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/checkToken"))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":null}"));
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void trust_all_accepts_self_signed_certificate() throws Exception {
+        TlsConfig tls = new TlsConfig(TrustPolicy.TRUST_ALL);
+        EPLiteClient client = new EPLiteClient("https://localhost:9004", API_KEY, new URLConnectionTransport(tls));
+
+        client.checkToken();
+
+        assertTrue(tls.getHandshakeCount() >= 1);
+    }
+
+    @Test
+    public void system_default_rejects_untrusted_certificate() throws Exception {
+        TlsConfig tls = new TlsConfig(TrustPolicy.SYSTEM_DEFAULT);
+        EPLiteClient client = new EPLiteClient("https://localhost:9004", API_KEY, new PooledTransport(tls));
+
+        try {
+            client.checkToken();
+            fail("Expected '" + EPLiteException.class.getName() + "' to be thrown");
+        } catch (EPLiteException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to connect to Etherpad Lite instance"));
+        }
+    }
+
+    @Test
+    public void sessions_are_cached_for_resumption() throws Exception {
+        TlsConfig tls = new TlsConfig(TrustPolicy.TRUST_ALL);
+        for (int i = 0; i < 3; i++) {
+            // A fresh pool per call forces a new connection, and so a new handshake
+            PooledTransport transport = new PooledTransport(tls);
+            new EPLiteClient("https://localhost:9004", API_KEY, transport).checkToken();
+            transport.close();
+        }
+
+        // Handshake completion is reported on a separate thread
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (tls.getHandshakeCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(3, tls.getHandshakeCount());
+        // MockServer does not resume sessions itself, but the client must have kept them
+        assertTrue(tls.getSSLContext().getClientSessionContext().getIds().hasMoreElements());
+    }
+}
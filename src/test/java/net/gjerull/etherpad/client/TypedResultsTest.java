@@ -0,0 +1,100 @@
+package net.gjerull.etherpad.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+
+public class TypedResultsTest {
+    private static final String API_KEY = "a04f17343b51afaa036a7428171dd873469cd85911ab43be0503d29d2acbbd58";
+
+    private ClientAndServer mockServer;
+    private EPLiteClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        mockServer = startClientAndServer(9010);
+        ((ch.qos.logback.classic.Logger) org.slf4j.LoggerFactory.getLogger("org.mockserver.mock"))
+                .setLevel(ch.qos.logback.classic.Level.OFF);
+        client = new EPLiteClient("http://localhost:9010", API_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    public void get_pad_text() throws Exception {
+        respond("getText", "{\"text\":\"Hello world\\n\",\"attribs\":{\"numToAttrib\":{\"0\":[\"bold\",true]}}}");
+
+        PadText text = client.getPadText("g.s8oes9dhwrvt0zif$my_pad");
+
+        assertEquals("Hello world\n", text.getText());
+    }
+
+    @Test
+    public void list_pad_ids() throws Exception {
+        respond("listAllPads", "{\"padIDs\":[\"pad1\",\"g.s8oes9dhwrvt0zif$pad2\"]}");
+
+        PadList pads = client.listAllPadIDs();
+
+        assertEquals(Arrays.asList("pad1", "g.s8oes9dhwrvt0zif$pad2"), pads.getPadIDs());
+        assertEquals(2, pads.size());
+    }
+
+    @Test
+    public void get_session() throws Exception {
+        respond("getSessionInfo",
+                "{\"authorID\":\"a.s8oes9dhwrvt0zif\",\"groupID\":\"g.s8oes9dhwrvt0zif\",\"validUntil\":1312201246}");
+
+        SessionInfo session = client.getSession("s.s8oes9dhwrvt0zif");
+
+        assertEquals("s.s8oes9dhwrvt0zif", session.getSessionID());
+        assertEquals("a.s8oes9dhwrvt0zif", session.getAuthorID());
+        assertEquals("g.s8oes9dhwrvt0zif", session.getGroupID());
+        assertEquals(1312201246L, session.getValidUntil());
+        assertTrue(session.isValidAt(1312201245L));
+    }
+
+    @Test
+    public void get_chat_messages() throws Exception {
+        respond("getChatHistory", "{\"messages\":["
+                + "{\"text\":\"foo\",\"userId\":\"a.foo\",\"time\":1359199533759,\"userName\":\"test\"},"
+                + "{\"text\":\"bar\",\"userId\":\"a.foo\",\"time\":1359199534622,\"userName\":null}]}");
+
+        ChatHistory history = client.getChatMessages("pad");
+
+        assertEquals(2, history.size());
+        ChatMessage first = history.getMessages().get(0);
+        assertEquals("foo", first.getText());
+        assertEquals("a.foo", first.getUserId());
+        assertEquals(1359199533759L, first.getTime());
+        assertEquals("test", first.getUserName());
+        assertNull(history.getMessages().get(1).getUserName());
+    }
+
+    @Test
+    public void count_revisions() throws Exception {
+        respond("getRevisionsCount", "{\"revisions\":56}");
+        respond("getSavedRevisionsCount", "{\"savedRevisions\":2}");
+
+        assertEquals(56L, client.countRevisions("pad").getRevisions());
+        assertEquals(2L, client.countSavedRevisions("pad").getRevisions());
+    }
+
+    private void respond(String apiMethod, String data) {
+        mockServer.when(HttpRequest.request().withMethod("GET").withPath("/api/1.2.13/" + apiMethod))
+                .respond(HttpResponse.response().withStatusCode(200)
+                        .withBody("{\"code\":0,\"message\":\"ok\",\"data\":" + data + "}"));
+    }
+}